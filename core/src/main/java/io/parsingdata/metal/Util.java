@@ -16,17 +16,15 @@
 
 package io.parsingdata.metal;
 
-import java.io.ByteArrayOutputStream;
 import java.util.Optional;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 import io.parsingdata.metal.data.ConstantSource;
 import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.InflateSource;
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.Slice;
 import io.parsingdata.metal.encoding.Encoding;
-import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.Transform;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
 
@@ -36,6 +34,18 @@ public final class Util {
 
     final private static char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray(); // Private because array content is mutable.
 
+    // The class that declares the eval(ParseGraph, Encoding) method of each class, or null if it has none.
+    private static final ClassValue<Class<?>> EVAL_DECLARING_CLASS = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(final Class<?> type) {
+            try {
+                return type.getMethod("eval", ParseGraph.class, Encoding.class).getDeclaringClass();
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
     public static <T>T checkNotNull(final T argument, final String name) {
         if (argument == null) { throw new IllegalArgumentException("Argument " + name + " may not be null."); }
         return argument;
@@ -54,6 +64,15 @@ public final class Util {
             && object.getClass() == other.getClass();
     }
 
+    /**
+     * @param expression An expression
+     * @param baseClass A base class of the expression that implements <code>eval(ParseGraph, Encoding)</code>
+     * @return Whether the expression does not override <code>eval(ParseGraph, Encoding)</code> of <code>baseClass</code>, so that it has the list semantics implemented there
+     */
+    public static boolean hasListSemanticsOf(final Object expression, final Class<?> baseClass) {
+        return EVAL_DECLARING_CLASS.get(expression.getClass()) == baseClass;
+    }
+
     public static String bytesToHexString(final byte[] bytes) {
         checkNotNull(bytes, "bytes");
         final char[] hexChars = new char[bytes.length * 2];
@@ -66,28 +85,16 @@ public final class Util {
     }
 
     public static Slice createFromBytes(final byte[] data) {
-        return new Slice(new ConstantSource(data), 0, data);
+        return new Slice(new ConstantSource(data), 0, data.length);
     }
 
     public static ValueExpression inflate(final ValueExpression target) {
-        return new UnaryValueExpression(target) {
-            @Override
-            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
-                final Inflater inf = new Inflater(true);
-                inf.setInput(value.getValue());
-                final byte[] dataReceiver = new byte[512];
-                final ByteArrayOutputStream out = new ByteArrayOutputStream();
-                while(!inf.finished()) {
-                    try {
-                        final int processed = inf.inflate(dataReceiver);
-                        out.write(dataReceiver, 0, processed);
-                    } catch (final DataFormatException e) {
-                        return Optional.empty();
-                    }
-                }
-                return Optional.of(new Value(createFromBytes(out.toByteArray()), encoding));
-            }
-        };
+        return new Transform(target, (value, encoding) -> {
+            final InflateSource source = new InflateSource(value.slice);
+            return source.getSize()
+                .filter(size -> size <= Integer.MAX_VALUE)
+                .map(size -> new Value(new Slice(source, 0, size.intValue()), encoding));
+        });
     }
 
     public static Optional<Environment> success(final Environment environment) {
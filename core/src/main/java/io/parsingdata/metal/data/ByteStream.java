@@ -22,4 +22,30 @@ public interface ByteStream {
 
     int read(long offset, byte[] data) throws IOException;
 
+    /**
+     * Values read from a stream for which this method returns true are read
+     * lazily, so a stream should only return true if it can determine this
+     * without reading the data.
+     *
+     * @param offset The offset of the first byte
+     * @param length The amount of bytes
+     * @return Whether <code>length</code> bytes can be read at <code>offset</code>, or false if this is unknown
+     * @throws IOException If reading fails
+     */
+    default boolean isAvailable(final long offset, final int length) throws IOException {
+        return false;
+    }
+
+    /**
+     * Values that are not kept in memory, such as the values in a
+     * {@link ColumnarGraph}, are read again from their stream when their data
+     * is requested. A stream that is not able to provide data again once it
+     * has been read, such as a {@link StreamingByteStream}, must return false.
+     *
+     * @return Whether data that has been read can be read again
+     */
+    default boolean isRereadable() {
+        return true;
+    }
+
 }
@@ -41,6 +41,16 @@ public class ByteStreamSource extends Source {
         return resizedData;
     }
 
+    @Override
+    protected boolean isAvailable(final long offset, final int size) throws IOException {
+        return input.isAvailable(offset, size);
+    }
+
+    @Override
+    protected boolean isRereadable() {
+        return input.isRereadable();
+    }
+
     @Override
     public String toString() {
         return input.toString();
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that caches the data of another ByteStream.
+ * <p>
+ * The wrapped <code>input</code> is read in aligned pages of
+ * <code>pageSize</code> bytes. At most <code>maxPages</code> pages are
+ * retained, evicting the least recently used page when a new one is read. All
+ * reads are served from these pages, so that small adjacent reads (such as
+ * the fields of a header) and repeated reads (such as those caused by
+ * backtracking) result in a single read on the wrapped ByteStream.
+ * <p>
+ * The amount of page lookups that could be served from the cache and the
+ * amount that required a read on <code>input</code> are available through
+ * {@link #getHits()} and {@link #getMisses()}.
+ */
+public class CachingByteStream implements ByteStream {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_MAX_PAGES = 1024;
+
+    public final ByteStream input;
+    public final int pageSize;
+    public final int maxPages;
+
+    private final Map<Long, byte[]> pages;
+    private long hits;
+    private long misses;
+
+    public CachingByteStream(final ByteStream input, final int pageSize, final int maxPages) {
+        this.input = checkNotNull(input, "input");
+        if (pageSize <= 0) { throw new IllegalArgumentException("Argument pageSize must be positive."); }
+        if (maxPages <= 0) { throw new IllegalArgumentException("Argument maxPages must be positive."); }
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        pages = new LinkedHashMap<Long, byte[]>(maxPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > CachingByteStream.this.maxPages;
+            }
+        };
+    }
+
+    public CachingByteStream(final ByteStream input) {
+        this(input, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    @Override
+    public int read(final long offset, final byte[] data) throws IOException {
+        if (offset < 0) { return input.read(offset, data); }
+        int done = 0;
+        while (done < data.length) {
+            final long position = offset + done;
+            final byte[] page = getPage(position / pageSize);
+            final int pageOffset = (int)(position % pageSize);
+            if (pageOffset >= page.length) { break; }
+            final int chunk = Math.min(data.length - done, page.length - pageOffset);
+            System.arraycopy(page, pageOffset, data, done, chunk);
+            done += chunk;
+        }
+        return done;
+    }
+
+    /**
+     * Forwards to the wrapped <code>input</code>, so that slices on a cached
+     * stream are lazy exactly when they would be on the stream itself.
+     *
+     * @param offset The offset of the first byte
+     * @param length The amount of bytes
+     * @return Whether <code>input</code> has <code>length</code> bytes available at <code>offset</code>
+     * @throws IOException If <code>input</code> fails to determine availability
+     */
+    @Override
+    public boolean isAvailable(final long offset, final int length) throws IOException {
+        return input.isAvailable(offset, length);
+    }
+
+    @Override
+    public boolean isRereadable() {
+        return input.isRereadable();
+    }
+
+    private byte[] getPage(final long index) throws IOException {
+        final byte[] page = pages.get(index);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        misses++;
+        final byte[] data = new byte[pageSize];
+        final int readSize = input.read(index * pageSize, data);
+        final byte[] newPage = readSize == pageSize ? data : copyOf(data, readSize);
+        pages.put(index, newPage);
+        return newPage;
+    }
+
+    private static byte[] copyOf(final byte[] data, final int size) {
+        final byte[] output = new byte[Math.max(0, size)];
+        System.arraycopy(data, 0, output, 0, output.length);
+        return output;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + input + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(input, ((CachingByteStream)obj).input);
+            // The page fields are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(input);
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.parsingdata.metal.data;
+
+/**
+ * Storage for the rows of a {@link ColumnarGraph}.
+ * <p>
+ * Each row has a kind, an offset and a number of int columns. Rows are
+ * written once, in order, while the graph is created.
+ */
+public abstract class ColumnStore {
+
+    static final int PARENT = 0;
+    static final int DEFINITION = 1;
+    static final int NAME = 2;
+    static final int SOURCE = 3;
+    static final int ENCODING = 4;
+    static final int SIZE = 5;
+    static final int PREVIOUS_NAME = 6;
+    static final int PREVIOUS_DEFINITION = 7;
+    static final int INT_COLUMNS = 8;
+
+    ColumnStore() {}
+
+    /**
+     * @param rows The number of rows that must fit in this store
+     */
+    abstract void ensureCapacity(int rows);
+
+    /**
+     * @param rows The final number of rows, after which no more rows are written
+     */
+    void trim(final int rows) {}
+
+    abstract byte getKind(int row);
+    abstract void setKind(int row, byte kind);
+
+    abstract long getOffset(int row);
+    abstract void setOffset(int row, long offset);
+
+    abstract int getInt(int row, int column);
+    abstract void setInt(int row, int column, int value);
+
+}
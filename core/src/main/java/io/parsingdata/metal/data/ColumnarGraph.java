@@ -0,0 +1,897 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.parsingdata.metal.data;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.ColumnStore.DEFINITION;
+import static io.parsingdata.metal.data.ColumnStore.ENCODING;
+import static io.parsingdata.metal.data.ColumnStore.INT_COLUMNS;
+import static io.parsingdata.metal.data.ColumnStore.NAME;
+import static io.parsingdata.metal.data.ColumnStore.PARENT;
+import static io.parsingdata.metal.data.ColumnStore.PREVIOUS_DEFINITION;
+import static io.parsingdata.metal.data.ColumnStore.PREVIOUS_NAME;
+import static io.parsingdata.metal.data.ColumnStore.SIZE;
+import static io.parsingdata.metal.data.ColumnStore.SOURCE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import io.parsingdata.metal.encoding.ByteOrder;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+
+/**
+ * A compact, read-only copy of a {@link ParseGraph}, stored as a set of
+ * primitive columns in a {@link ColumnStore}.
+ * <p>
+ * Every item in the graph (including the graph itself) is a row, numbered in
+ * pre-order with the items of each graph in the order in which they were
+ * parsed (bottom-up). Rows store the kind of item, the index of its
+ * definition, name, source and encoding in a table of distinct objects, its
+ * offset and size and the row of the graph containing it. For rows of graphs,
+ * the offset column holds the row following the last item in the graph, the
+ * name column holds the definition of its terminator and the size column
+ * holds the row of its value with the lowest offset (see
+ * {@link ParseGraph#getLowestOffsetValue()}).
+ * <p>
+ * Each row also holds the previous row with the same definition and each
+ * value the previous value with the same name, which together with the last
+ * row of each definition and name form an index. So selecting values by name
+ * or definition and finding roots only visits the rows with a matching name
+ * or definition, without keeping an index on the heap per row.
+ * <p>
+ * {@link ParseValue}s, {@link ParseReference}s and {@link ParseGraph}s are
+ * only created when they are requested. Values are read again from their
+ * {@link Source} when their data is requested, except for values of a
+ * source that is not able to read their data again (see
+ * {@link Source#isRereadable()}, such as those read from a
+ * {@link StreamingByteStream}), of which only the data is retained.
+ * <p>
+ * A graph is either copied from a {@link ParseGraph} with
+ * {@link #create(ParseGraph, ColumnStore)} or written while parsing by a
+ * {@link ColumnarRecorder}, in which case the parse state does not need to
+ * hold all items.
+ * <p>
+ * A graph can be saved to a file with {@link #save(Path, Token, Function)} and
+ * loaded again with {@link #load(Path, Token, Function)}, which maps the rows into memory
+ * so that they are only read when they are queried.
+ */
+public class ColumnarGraph {
+
+    public static final byte VALUE = 0;
+    public static final byte GRAPH = 1;
+    public static final byte BRANCH = 2; // A graph that is an open branch of the graph containing it.
+    public static final byte REFERENCE = 3;
+
+    public static final int NO_ROW = -1;
+
+    private static final int MAGIC = 0x4d43470a; // "MCG\n"
+    private static final int VERSION = 4;
+    private static final int NO_DEFINITION = -1;
+
+    // The public instance fields of each class, in a fixed order so that definitions are listed in the same order by every JVM.
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(final Class<?> type) {
+            final List<Field> fields = new ArrayList<>();
+            for (final Field field : type.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) { fields.add(field); }
+            }
+            fields.sort(Comparator.comparing(Field::getName).thenComparing(field -> field.getDeclaringClass().getName()));
+            return fields.toArray(new Field[0]);
+        }
+    };
+    // The first instance field of each class outside of this library that is not public, which may refer to tokens the traversal cannot see.
+    private static final ClassValue<Optional<Field>> HIDDEN_FIELDS = new ClassValue<Optional<Field>>() {
+        @Override
+        protected Optional<Field> computeValue(final Class<?> type) {
+            for (Class<?> current = type; current != null && !Pruner.isPartOfLibrary(current); current = current.getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isPublic(field.getModifiers())) { return Optional.of(field); }
+                }
+            }
+            return Optional.empty();
+        }
+    };
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final ColumnStore store;
+    private final Token[] definitionTable;
+    private final String[] nameTable;
+    private final Source[] sourceTable;
+    private final Encoding[] encodingTable;
+    private final RetainedData retainedData;
+    private final int[] lastDefinitionRows;
+    private final int[] lastNameRows;
+
+    public final int size;
+
+    private ColumnarGraph(final ColumnStore store, final int size, final Token[] definitionTable, final String[] nameTable, final Source[] sourceTable, final Encoding[] encodingTable, final RetainedData retainedData, final int[] lastDefinitionRows, final int[] lastNameRows) {
+        this.store = store;
+        this.size = size;
+        this.definitionTable = definitionTable;
+        this.nameTable = nameTable;
+        this.sourceTable = sourceTable;
+        this.encodingTable = encodingTable;
+        this.retainedData = retainedData;
+        this.lastDefinitionRows = lastRows(lastDefinitionRows, definitionTable.length);
+        this.lastNameRows = lastRows(lastNameRows, nameTable.length);
+    }
+
+    ColumnarGraph(final Builder builder) {
+        this(builder.store, builder.size, builder.definitionTable.toArray(Token.class), builder.nameTable.toArray(String.class), builder.sourceTable.toArray(Source.class), builder.encodingTable.toArray(Encoding.class), builder.retainedData, builder.lastDefinitionRows, builder.lastNameRows);
+    }
+
+    /**
+     * @param graph The graph to copy
+     * @return A columnar copy of the provided graph on the heap, with the graph itself at row 0
+     */
+    public static ColumnarGraph create(final ParseGraph graph) {
+        return create(graph, new HeapColumnStore());
+    }
+
+    /**
+     * @param graph The graph to copy
+     * @param store An empty store to write the rows to
+     * @return A columnar copy of the provided graph in the provided store, with the graph itself at row 0
+     */
+    public static ColumnarGraph create(final ParseGraph graph, final ColumnStore store) {
+        checkNotNull(graph, "graph");
+        final Builder builder = new Builder(checkNotNull(store, "store"));
+        final Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(addGraph(builder, graph, GRAPH, NO_ROW), graph));
+        while (!frames.isEmpty()) {
+            final Frame frame = frames.peek();
+            if (!frame.items.hasNext()) {
+                frames.pop();
+                builder.closeGraph(frame.row, frame.lowest);
+                if (!frames.isEmpty() && frame.local) {
+                    frames.peek().updateLowest(frame.lowest, builder);
+                }
+                continue;
+            }
+            final ParseGraph current = frame.items.next();
+            final ParseItem head = current.head;
+            if (head.isGraph()) {
+                frames.push(new Frame(addGraph(builder, head.asGraph(), current.branched ? BRANCH : GRAPH, frame.row), head.asGraph()));
+            } else if (head.isValue()) {
+                frame.updateLowest(builder.addValue(head.asValue(), frame.row), builder);
+            } else if (head.isReference()) {
+                builder.addReference(head.asReference(), frame.row);
+            }
+        }
+        store.trim(builder.size);
+        return new ColumnarGraph(builder);
+    }
+
+    private static int addGraph(final Builder builder, final ParseGraph graph, final byte kind, final int parent) {
+        ParseGraph terminator = graph;
+        while (!terminator.isEmpty()) {
+            terminator = terminator.tail;
+        }
+        return builder.addGraph(graph.definition, terminator.definition, kind, parent);
+    }
+
+    /**
+     * Writes this graph to a file, which can be loaded again with
+     * {@link #load(Path, Token, Function)}.
+     * <p>
+     * The file contains the rows in the layout of an
+     * {@link OffHeapColumnStore}, followed by the names and the definitions,
+     * each with their last row, the sources and the encodings. A definition
+     * is written as its index in a depth-first traversal of the tokens that
+     * are reachable from <code>format</code> through public fields, which
+     * remains the same as long as the format does. The classes of these
+     * tokens are written in the same order, so that loading with a different
+     * format, or with a version of this library that traverses the tokens
+     * differently, fails instead of resolving the wrong definitions. A format
+     * with tokens or expressions from outside this library that have fields
+     * that are not public is rejected, since tokens in those fields could not
+     * be numbered. A source is written as the
+     * key returned by <code>sourceKeys</code>, except for a
+     * {@link DataExpressionSource}, such as that of a
+     * {@link io.parsingdata.metal.token.Tie}. Its data is derived from other
+     * values, so it is not saved and cannot be read after loading. The data
+     * of values is not written, not even that of values retained from a
+     * source that is no longer able to provide it.
+     *
+     * @param file The file to write to, which is replaced if it exists
+     * @param format The token that the graph was parsed with
+     * @param sourceKeys Returns a key by which each source of the graph can be found again when it is loaded
+     * @throws IOException If the file could not be written
+     */
+    public void save(final Path file, final Token format, final Function<Source, String> sourceKeys) throws IOException {
+        checkNotNull(file, "file");
+        checkNotNull(sourceKeys, "sourceKeys");
+        final Map<Token, Integer> indexes = new IdentityHashMap<>();
+        final List<Token> definitions = listDefinitions(checkNotNull(format, "format"));
+        for (int index = 0; index < definitions.size(); index++) {
+            indexes.putIfAbsent(definitions.get(index), index);
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(size);
+            output.writeLong(HEADER_SIZE + (long)size * OffHeapColumnStore.ROW_SIZE);
+            for (int row = 0; row < size; row++) {
+                output.writeByte(store.getKind(row));
+                output.writeLong(store.getOffset(row));
+                for (int column = 0; column < INT_COLUMNS; column++) {
+                    output.writeInt(store.getInt(row, column));
+                }
+            }
+            writeStrings(output, nameTable);
+            writeInts(output, lastNameRows);
+            writeStrings(output, getClassNames(definitions));
+            output.writeInt(definitionTable.length);
+            for (final Token definition : definitionTable) {
+                final Integer index = definition == ParseGraph.NONE ? Integer.valueOf(NO_DEFINITION) : indexes.get(definition);
+                if (index == null) { throw new IllegalArgumentException("Argument format must contain definition " + definition + "."); }
+                output.writeInt(index);
+            }
+            writeInts(output, lastDefinitionRows);
+            output.writeInt(sourceTable.length);
+            for (final Source source : sourceTable) {
+                final boolean derived = source instanceof DataExpressionSource || source instanceof UnsavedSource;
+                // The description of a DataExpressionSource itself includes the graph it is evaluated on.
+                final String key = source instanceof DataExpressionSource ? describe((DataExpressionSource)source) : derived ? source.toString() : sourceKeys.apply(source);
+                if (key == null) { throw new IllegalArgumentException("Argument sourceKeys must return a key for source " + source + "."); }
+                output.writeBoolean(derived);
+                writeString(output, key);
+            }
+            output.writeInt(encodingTable.length);
+            for (final Encoding encoding : encodingTable) {
+                writeString(output, encoding.sign.name());
+                writeString(output, encoding.charset.name());
+                writeString(output, encoding.byteOrder.name());
+            }
+        }
+    }
+
+    private static String describe(final DataExpressionSource source) {
+        return source.getClass().getSimpleName() + "(" + source.dataExpression + "[" + source.index + "])";
+    }
+
+    /**
+     * Loads a graph written by {@link #save(Path, Token, Function)}. The rows
+     * are mapped into memory instead of read, so that loading takes time
+     * proportional to the number of tokens in the format and the number of
+     * distinct names, definitions, sources and encodings only.
+     * <p>
+     * Definitions are resolved by their index among the tokens that are
+     * reachable from <code>format</code>, which must therefore be the same
+     * format as the one the graph was saved with, and are checked to be of
+     * the same classes. Sources are resolved by
+     * their key through <code>sources</code>. Values and references of a
+     * source of which the data was not saved can still be queried, but
+     * reading their data throws an {@link IllegalStateException}.
+     *
+     * @param file The file to load
+     * @param format The token that the graph was parsed with
+     * @param sources Returns the source for each key passed to {@link #save(Path, Token, Function)}, or null if there is none
+     * @return A graph that reads its rows from the file
+     * @throws IOException If the file could not be read
+     */
+    public static ColumnarGraph load(final Path file, final Token format, final Function<String, Source> sources) throws IOException {
+        checkNotNull(file, "file");
+        checkNotNull(format, "format");
+        checkNotNull(sources, "sources");
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (input.readInt() != MAGIC) { throw new IOException("File " + file + " does not contain a saved ColumnarGraph."); }
+            if (input.readInt() != VERSION) { throw new IOException("File " + file + " contains a ColumnarGraph saved by another version."); }
+            final int size = input.readInt();
+            final long tablesPosition = input.readLong();
+            final ColumnStore store = OffHeapColumnStore.map(file, channel, HEADER_SIZE, size);
+            channel.position(tablesPosition);
+            final DataInputStream tables = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            final String[] nameTable = readStrings(tables);
+            final int[] lastNameRows = readInts(tables, nameTable.length);
+            final List<Token> definitions = listDefinitions(format);
+            final String[] savedClassNames = readStrings(tables);
+            final String[] classNames = getClassNames(definitions);
+            if (classNames.length != savedClassNames.length) { throw new IllegalArgumentException("Argument format must contain " + savedClassNames.length + " tokens, like the format the graph was saved with."); }
+            for (int index = 0; index < classNames.length; index++) {
+                if (!classNames[index].equals(savedClassNames[index])) { throw new IllegalArgumentException("Argument format must contain a " + savedClassNames[index] + " as token " + index + ", like the format the graph was saved with."); }
+            }
+            final Token[] definitionTable = new Token[tables.readInt()];
+            for (int index = 0; index < definitionTable.length; index++) {
+                final int definition = tables.readInt();
+                definitionTable[index] = definition == NO_DEFINITION ? ParseGraph.NONE : definitions.get(definition);
+            }
+            final int[] lastDefinitionRows = readInts(tables, definitionTable.length);
+            final Source[] sourceTable = new Source[tables.readInt()];
+            for (int index = 0; index < sourceTable.length; index++) {
+                final boolean derived = tables.readBoolean();
+                final String key = readString(tables);
+                sourceTable[index] = derived ? new UnsavedSource(key) : sources.apply(key);
+                if (sourceTable[index] == null) { throw new IllegalArgumentException("Argument sources must return a source for key " + key + "."); }
+            }
+            final Encoding[] encodingTable = new Encoding[tables.readInt()];
+            for (int index = 0; index < encodingTable.length; index++) {
+                encodingTable[index] = new Encoding(Sign.valueOf(readString(tables)), Charset.forName(readString(tables)), ByteOrder.valueOf(readString(tables)));
+            }
+            return new ColumnarGraph(store, size, definitionTable, nameTable, sourceTable, encodingTable, new RetainedData(), lastDefinitionRows, lastNameRows);
+        }
+    }
+
+    /**
+     * @param format The token to start from
+     * @return The tokens that are reachable from <code>format</code> through public fields, in depth-first order
+     */
+    private static List<Token> listDefinitions(final Token format) {
+        final List<Token> definitions = new ArrayList<>();
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<Object> objects = new ArrayDeque<>();
+        objects.push(format);
+        while (!objects.isEmpty()) {
+            final Object object = objects.pop();
+            if (!visited.add(object)) { continue; }
+            final List<Object> children = new ArrayList<>();
+            if (object instanceof ImmutableList) {
+                for (ImmutableList<?> list = (ImmutableList<?>)object; !list.isEmpty(); list = list.tail) {
+                    if (list.head != null) { children.add(list.head); }
+                }
+            } else if (object instanceof Token || object instanceof Expression || object instanceof ValueExpression) {
+                if (object instanceof Token) { definitions.add((Token)object); }
+                final Optional<Field> hiddenField = HIDDEN_FIELDS.get(object.getClass());
+                if (hiddenField.isPresent()) { throw new IllegalArgumentException("Argument format must refer to tokens through public fields only, but field " + hiddenField.get() + " is not public."); }
+                // Tokens are only reachable through the fields of tokens and expressions, such as those of a TokenRef.
+                for (final Field field : FIELDS.get(object.getClass())) {
+                    try {
+                        final Object value = field.get(object);
+                        if (value != null) { children.add(value); }
+                    } catch (final IllegalAccessException e) {
+                        throw new IllegalArgumentException("Argument format must refer to tokens through public fields only, but field " + field + " is declared by a class that is not public.", e);
+                    }
+                }
+            }
+            // Pushed in reverse, so that the children are visited in order.
+            for (int index = children.size() - 1; index >= 0; index--) {
+                objects.push(children.get(index));
+            }
+        }
+        return definitions;
+    }
+
+    private static String[] getClassNames(final List<Token> definitions) {
+        final String[] classNames = new String[definitions.size()];
+        for (int index = 0; index < classNames.length; index++) {
+            classNames[index] = definitions.get(index).getClass().getName();
+        }
+        return classNames;
+    }
+
+    private static void writeStrings(final DataOutputStream output, final String[] strings) throws IOException {
+        output.writeInt(strings.length);
+        for (final String string : strings) {
+            writeString(output, string);
+        }
+    }
+
+    private static void writeString(final DataOutputStream output, final String string) throws IOException {
+        // DataOutputStream.writeUTF() is limited to 65535 bytes, which the description of a large token may exceed.
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeInts(final DataOutputStream output, final int[] ints) throws IOException {
+        for (final int value : ints) {
+            output.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(final DataInputStream input, final int length) throws IOException {
+        final int[] ints = new int[length];
+        for (int index = 0; index < length; index++) {
+            ints[index] = input.readInt();
+        }
+        return ints;
+    }
+
+    private static String[] readStrings(final DataInputStream input) throws IOException {
+        final String[] strings = new String[input.readInt()];
+        for (int index = 0; index < strings.length; index++) {
+            strings[index] = readString(input);
+        }
+        return strings;
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public byte getKind(final int row) { return store.getKind(checkRow(row)); }
+
+    /**
+     * @param row The row of the item
+     * @return The row of the graph containing the item, or {@link #NO_ROW} for row 0
+     */
+    public int getParent(final int row) { return store.getInt(checkRow(row), PARENT); }
+
+    public Token getDefinition(final int row) { return definitionTable[store.getInt(checkRow(row), DEFINITION)]; }
+
+    /**
+     * @param row The row of a value
+     * @return The name of the value
+     */
+    public String getName(final int row) { return nameTable[store.getInt(checkRow(row, VALUE), NAME)]; }
+
+    /**
+     * @param row The row of a value or reference
+     * @return The offset of the value or the location of the reference
+     */
+    public long getOffset(final int row) {
+        if (!isValue(checkRow(row)) && store.getKind(row) != REFERENCE) { throw new IllegalArgumentException("Argument row must refer to a value or reference."); }
+        return store.getOffset(row);
+    }
+
+    /**
+     * @param row The row of a value
+     * @return The size of the value
+     */
+    public int getSize(final int row) { return store.getInt(checkRow(row, VALUE), SIZE); }
+
+    /**
+     * @param row The row of a graph
+     * @return The row following the last item in the graph
+     */
+    public int getEnd(final int row) {
+        if (!isGraph(checkRow(row))) { throw new IllegalArgumentException("Argument row must refer to a graph."); }
+        return (int)store.getOffset(row);
+    }
+
+    public ParseItem get(final int row) {
+        switch (getKind(row)) {
+            case VALUE: return getValue(row);
+            case REFERENCE: return getReference(row);
+            default: return getGraph(row);
+        }
+    }
+
+    public ParseValue getValue(final int row) {
+        checkRow(row, VALUE);
+        final Source source = sourceTable[store.getInt(row, SOURCE)];
+        final byte[] data = retainedData.get(row);
+        final Slice slice = data == null ? new Slice(source, store.getOffset(row), store.getInt(row, SIZE)) : new Slice(source, store.getOffset(row), data);
+        return new ParseValue(nameTable[store.getInt(row, NAME)], definitionTable[store.getInt(row, DEFINITION)], slice, encodingTable[store.getInt(row, ENCODING)]);
+    }
+
+    public ParseReference getReference(final int row) {
+        checkRow(row, REFERENCE);
+        return new ParseReference(store.getOffset(row), sourceTable[store.getInt(row, SOURCE)], definitionTable[store.getInt(row, DEFINITION)]);
+    }
+
+    /**
+     * @param row The row of a graph
+     * @return A {@link ParseGraph} with all items in the graph, which are all created from their rows, so the
+     *         selection methods of this class should be preferred for querying large graphs
+     */
+    public ParseGraph getGraph(final int row) {
+        final int end = getEnd(row);
+        final Token definition = definitionTable[store.getInt(row, DEFINITION)];
+        final Token terminator = definitionTable[store.getInt(row, NAME)];
+        ParseGraph graph = terminator.equals(ParseGraph.NONE) ? ParseGraph.EMPTY : ParseGraph.terminator(terminator);
+        for (int item = row + 1; item < end; item = next(item)) {
+            graph = new ParseGraph(get(item), graph, definition, store.getKind(item) == BRANCH);
+        }
+        return graph;
+    }
+
+    /**
+     * @return A {@link ParseGraph} with all items in this graph
+     */
+    public ParseGraph toGraph() {
+        return getGraph(0);
+    }
+
+    /**
+     * @param row The row of an item
+     * @return The row of the next item in the same graph, or the end of the graph if there is none
+     */
+    public int next(final int row) {
+        return isGraph(checkRow(row)) ? (int)store.getOffset(row) : row + 1;
+    }
+
+    /**
+     * @param name Full or partial name of the values
+     * @return All values that match the provided name, in the order of {@link io.parsingdata.metal.data.selection.ByName#getAllValues(ParseGraph, String)}
+     */
+    public ImmutableList<ParseValue> getAllValues(final String name) {
+        checkNotNull(name, "name");
+        final boolean[] matches = new boolean[nameTable.length];
+        for (int index = 0; index < nameTable.length; index++) {
+            matches[index] = ParseValue.matches(nameTable[index], name);
+        }
+        return getValues(findRows(matches, lastNameRows, PREVIOUS_NAME));
+    }
+
+    /**
+     * @param definition The definition of the values
+     * @return All values with the provided definition, in the order of {@link io.parsingdata.metal.data.selection.ByToken#getAllValues(ParseGraph, Token)}
+     */
+    public ImmutableList<ParseValue> getAllValues(final Token definition) {
+        return getValues(findRows(matchDefinition(definition), lastDefinitionRows, PREVIOUS_DEFINITION));
+    }
+
+    private ImmutableList<ParseValue> getValues(final int[] rows) {
+        ImmutableList<ParseValue> values = new ImmutableList<>();
+        for (final int row : rows) {
+            if (isValue(row)) {
+                values = values.add(getValue(row));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param definition The definition of the root
+     * @param offset The offset of the root
+     * @param source The source of the root
+     * @return The row of the most recently completed root with the provided definition at the provided location, as in {@link OffsetIndex#get(Token, long, Source)}, or {@link #NO_ROW} if there is none
+     */
+    public int findRootAtOffset(final Token definition, final long offset, final Source source) {
+        checkNotNull(source, "source");
+        final boolean[] matches = matchDefinition(definition);
+        int result = NO_ROW;
+        long resultCompletion = Long.MIN_VALUE;
+        for (final int row : findRows(matches, lastDefinitionRows, PREVIOUS_DEFINITION)) {
+            final byte kind = store.getKind(row);
+            if (row == 0 || kind == BRANCH || kind == REFERENCE || !matches[store.getInt(row, DEFINITION)] || matches[store.getInt(store.getInt(row, PARENT), DEFINITION)]) { continue; }
+            final int location = kind == VALUE ? row : store.getInt(row, SIZE);
+            if (location == NO_ROW || store.getOffset(location) != offset || !sourceTable[store.getInt(location, SOURCE)].equals(source)) { continue; }
+            // A value completes when it is added, a graph when all its items have been added. Of nested graphs that end at the same row, the innermost completes first.
+            final long completion = kind == VALUE ? ((long)row << 32) + Integer.MIN_VALUE : ((long)(store.getOffset(row) - 1) << 32) - row;
+            if (completion > resultCompletion) {
+                result = row;
+                resultCompletion = completion;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param matches Whether each index of the table matches
+     * @param lastRows The last row of each index of the table
+     * @param previousColumn The column holding the previous row with the same index
+     * @return The rows with a matching index, in ascending order
+     */
+    private int[] findRows(final boolean[] matches, final int[] lastRows, final int previousColumn) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (int index = 0; index < matches.length; index++) {
+            if (!matches[index]) { continue; }
+            for (int row = lastRows[index]; row != NO_ROW; row = store.getInt(row, previousColumn)) {
+                if (count == rows.length) { rows = Arrays.copyOf(rows, count * 2); }
+                rows[count++] = row;
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        // Each list of rows is in descending order and rows with several matching indexes are merged.
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static int[] lastRows(final int[] lastRows, final int length) {
+        final int[] result = Arrays.copyOf(lastRows, length);
+        if (lastRows.length < length) { Arrays.fill(result, lastRows.length, length, NO_ROW); }
+        return result;
+    }
+
+    private boolean[] matchDefinition(final Token definition) {
+        checkNotNull(definition, "definition");
+        final boolean[] matches = new boolean[definitionTable.length];
+        for (int index = 0; index < definitionTable.length; index++) {
+            matches[index] = definitionTable[index].equals(definition);
+        }
+        return matches;
+    }
+
+    private boolean isValue(final int row) {
+        return store.getKind(row) == VALUE;
+    }
+
+    private boolean isGraph(final int row) {
+        final byte kind = store.getKind(row);
+        return kind == GRAPH || kind == BRANCH;
+    }
+
+    private int checkRow(final int row) {
+        if (row < 0 || row >= size) { throw new IllegalArgumentException("Argument row must be at least 0 and less than " + size + "."); }
+        return row;
+    }
+
+    private int checkRow(final int row, final byte kind) {
+        if (store.getKind(checkRow(row)) != kind) { throw new IllegalArgumentException("Argument row must refer to a " + (kind == VALUE ? "value" : "reference") + "."); }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + size + " items," + store + ")";
+    }
+
+    /**
+     * A graph of which the items are being added.
+     */
+    private static class Frame {
+
+        final int row;
+        final Iterator<ParseGraph> items;
+        final boolean local;
+        int lowest = NO_ROW;
+
+        Frame(final int row, final ParseGraph graph) {
+            this.row = row;
+            final Deque<ParseGraph> graphs = new ArrayDeque<>();
+            for (ParseGraph current = graph; !current.isEmpty(); current = current.tail) {
+                graphs.push(current);
+            }
+            items = graphs.iterator();
+            local = graph.definition.isLocal();
+        }
+
+        void updateLowest(final int candidate, final Builder builder) {
+            if (local) {
+                lowest = builder.lowest(lowest, candidate);
+            }
+        }
+
+    }
+
+    /**
+     * Writes rows to a store, which are numbered in the order in which they are added.
+     */
+    static class Builder {
+
+        final ColumnStore store;
+        int size;
+
+        // Tokens, sources and encodings are compared by identity, since their equals() may traverse all of their fields.
+        final Table<Token> definitionTable = new Table<>(new IdentityHashMap<>());
+        final Table<String> nameTable = new Table<>(new HashMap<>());
+        final Table<Source> sourceTable = new Table<>(new IdentityHashMap<>());
+        final Table<Encoding> encodingTable = new Table<>(new IdentityHashMap<>());
+        final RetainedData retainedData = new RetainedData();
+        int[] lastDefinitionRows = new int[0];
+        int[] lastNameRows = new int[0];
+
+        Builder(final ColumnStore store) {
+            this.store = store;
+        }
+
+        int addGraph(final Token definition, final Token terminator, final byte kind, final int parent) {
+            final int row = add(kind, parent, definition);
+            store.setInt(row, NAME, definitionTable.get(terminator));
+            return row;
+        }
+
+        /**
+         * @param row The row of the graph, which ends at the current size
+         * @param lowest The row of its value with the lowest offset, or {@link #NO_ROW}
+         */
+        void closeGraph(final int row, final int lowest) {
+            store.setOffset(row, size);
+            store.setInt(row, SIZE, lowest);
+        }
+
+        /**
+         * @param lowest The row of a value, or {@link #NO_ROW}
+         * @param candidate The row of a later value, or {@link #NO_ROW}
+         * @return The row of the value with the lowest offset, where later values take precedence on equal offsets
+         */
+        int lowest(final int lowest, final int candidate) {
+            // Later items take precedence on equal offsets, like the head of a ParseGraph.
+            if (candidate != NO_ROW && (lowest == NO_ROW || store.getOffset(candidate) <= store.getOffset(lowest))) {
+                return candidate;
+            }
+            return lowest;
+        }
+
+        /**
+         * Removes the rows from the provided row onwards, so that they are written again.
+         *
+         * @param rows The number of rows to keep
+         */
+        void truncate(final int rows) {
+            if (rows >= size) { return; }
+            // The removed rows are removed from the index from the last one, which is the last row of its definition and name.
+            for (int row = size - 1; row >= rows; row--) {
+                lastDefinitionRows[store.getInt(row, DEFINITION)] = store.getInt(row, PREVIOUS_DEFINITION);
+                if (store.getKind(row) == VALUE) { lastNameRows[store.getInt(row, NAME)] = store.getInt(row, PREVIOUS_NAME); }
+            }
+            size = rows;
+            retainedData.truncate(rows);
+        }
+
+        int addValue(final ParseValue value, final int parent) {
+            final int row = add(VALUE, parent, value.definition);
+            final int name = nameTable.get(value.name);
+            lastNameRows = ensureLastRow(lastNameRows, name);
+            store.setInt(row, NAME, name);
+            store.setInt(row, PREVIOUS_NAME, lastNameRows[name]);
+            lastNameRows[name] = row;
+            store.setInt(row, SOURCE, sourceTable.get(value.slice.source));
+            store.setInt(row, ENCODING, encodingTable.get(value.encoding));
+            store.setOffset(row, value.slice.offset);
+            store.setInt(row, SIZE, value.slice.size);
+            if (!value.slice.source.isRereadable()) {
+                retainedData.add(row, value.slice.getData());
+            }
+            return row;
+        }
+
+        void addReference(final ParseReference reference, final int parent) {
+            final int row = add(REFERENCE, parent, reference.definition);
+            store.setInt(row, SOURCE, sourceTable.get(reference.source));
+            store.setOffset(row, reference.location);
+        }
+
+        private int add(final byte kind, final int parent, final Token definition) {
+            store.ensureCapacity(Math.addExact(size, 1));
+            store.setKind(size, kind);
+            store.setInt(size, PARENT, parent);
+            final int index = definitionTable.get(definition);
+            lastDefinitionRows = ensureLastRow(lastDefinitionRows, index);
+            store.setInt(size, DEFINITION, index);
+            store.setInt(size, PREVIOUS_DEFINITION, lastDefinitionRows[index]);
+            store.setInt(size, PREVIOUS_NAME, NO_ROW);
+            lastDefinitionRows[index] = size;
+            return size++;
+        }
+
+        private static int[] ensureLastRow(final int[] lastRows, final int index) {
+            if (index < lastRows.length) { return lastRows; }
+            return lastRows(lastRows, Math.max(index + 1, lastRows.length * 2));
+        }
+
+    }
+
+    /**
+     * The data of values of which the source is not able to read it again,
+     * stored consecutively in a single array in the order of their rows.
+     */
+    static class RetainedData {
+
+        private int[] rows = new int[0];
+        private int[] ends = new int[0];
+        private byte[] data = new byte[0];
+        private int count;
+
+        void add(final int row, final byte[] value) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(16, count * 2));
+                ends = Arrays.copyOf(ends, rows.length);
+            }
+            final int start = getStart(count);
+            final int end = Math.addExact(start, value.length);
+            if (end > data.length) { data = Arrays.copyOf(data, (int)Math.max(end, Math.min(Integer.MAX_VALUE - 8, data.length * 2L))); }
+            System.arraycopy(value, 0, data, start, value.length);
+            rows[count] = row;
+            ends[count] = end;
+            count++;
+        }
+
+        /**
+         * @param row The row of a value
+         * @return A copy of the data retained for the value, or null if its data is not retained
+         */
+        byte[] get(final int row) {
+            final int index = Arrays.binarySearch(rows, 0, count, row);
+            return index < 0 ? null : Arrays.copyOfRange(data, getStart(index), ends[index]);
+        }
+
+        /**
+         * @param rows The number of rows to keep
+         */
+        void truncate(final int rows) {
+            final int index = Arrays.binarySearch(this.rows, 0, count, rows);
+            count = index < 0 ? -index - 1 : index;
+        }
+
+        private int getStart(final int index) {
+            return index == 0 ? 0 : ends[index - 1];
+        }
+
+    }
+
+    /**
+     * A source of which the data was not saved, because it is derived from other values.
+     */
+    private static class UnsavedSource extends Source {
+
+        private final String description;
+
+        UnsavedSource(final String description) {
+            this.description = description;
+        }
+
+        @Override
+        protected byte[] getData(final long offset, final int size) {
+            throw new IllegalStateException("Data of source " + description + " was not saved.");
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+
+    }
+
+    /**
+     * Assigns consecutive indexes to distinct objects.
+     */
+    private static class Table<T> {
+
+        private final Map<T, Integer> indexes;
+
+        Table(final Map<T, Integer> indexes) {
+            this.indexes = indexes;
+        }
+
+        int get(final T object) {
+            final Integer index = indexes.get(object);
+            if (index != null) { return index; }
+            indexes.put(object, indexes.size());
+            return indexes.size() - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] toArray(final Class<T> type) {
+            final T[] array = (T[])Array.newInstance(type, indexes.size());
+            for (final Map.Entry<T, Integer> entry : indexes.entrySet()) {
+                array[entry.getValue()] = entry.getKey();
+            }
+            return array;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.ColumnarGraph.BRANCH;
+import static io.parsingdata.metal.data.ColumnarGraph.GRAPH;
+import static io.parsingdata.metal.data.ColumnarGraph.NO_ROW;
+
+import io.parsingdata.metal.token.Token;
+
+/**
+ * Writes the rows of a {@link ColumnarGraph} while parsing, as items are
+ * added to the parse state of an {@link Environment}.
+ * <p>
+ * Rows are written in the same order as by
+ * {@link ColumnarGraph#create(ParseGraph, ColumnStore)}, so that the graph of
+ * a completed parse is the same as a columnar copy of its
+ * {@link Environment#order}. Since the rows are written when the items are
+ * added, the graph does not need to be kept on the heap in full: combined
+ * with an enabled {@link Pruner}, the parse state only holds the branches
+ * that can still be observed, while the recorder holds all of them in its
+ * {@link ColumnStore}, which may be an {@link OffHeapColumnStore}.
+ * <p>
+ * Like the parse state, a recorder is immutable. Each state knows the number
+ * of rows written up to that point and its open graphs. When parsing
+ * backtracks and continues from an earlier state, the rows written after it
+ * are written again. The rows themselves are shared by all states, so a
+ * recorder can only be used by a single parse at a time.
+ */
+public class ColumnarRecorder {
+
+    public static final ColumnarRecorder NONE = new ColumnarRecorder(null, 0, null);
+
+    public final boolean enabled;
+
+    private final ColumnarGraph.Builder builder;
+    private final int size;
+    private final ImmutableList<Frame> frames; // The open graphs, the innermost first.
+
+    private ColumnarRecorder(final ColumnarGraph.Builder builder, final int size, final ImmutableList<Frame> frames) {
+        this.builder = builder;
+        this.size = size;
+        this.frames = frames;
+        enabled = builder != null;
+    }
+
+    /**
+     * @return A recorder that writes its rows to the heap, for a parse that starts with an empty graph
+     */
+    public static ColumnarRecorder create() {
+        return create(new HeapColumnStore());
+    }
+
+    /**
+     * @param store An empty store to write the rows to
+     * @return A recorder that writes its rows to the provided store, for a parse that starts with an empty graph
+     */
+    public static ColumnarRecorder create(final ColumnStore store) {
+        final ColumnarGraph.Builder builder = new ColumnarGraph.Builder(checkNotNull(store, "store"));
+        final int row = builder.addGraph(ParseGraph.NONE, ParseGraph.NONE, GRAPH, NO_ROW);
+        return new ColumnarRecorder(builder, builder.size, ImmutableList.create(new Frame(row, ParseGraph.NONE.isLocal(), NO_ROW)));
+    }
+
+    ColumnarRecorder addBranch(final Token definition) {
+        if (!enabled) { return this; }
+        builder.truncate(size);
+        final int row = builder.addGraph(definition, definition, BRANCH, frames.head.row);
+        return new ColumnarRecorder(builder, builder.size, frames.add(new Frame(row, definition.isLocal(), NO_ROW)));
+    }
+
+    ColumnarRecorder closeBranch() {
+        if (!enabled) { return this; }
+        if (frames.tail.isEmpty()) { throw new IllegalStateException("Cannot close branch that is not open."); }
+        builder.truncate(size);
+        final Frame frame = frames.head;
+        builder.closeGraph(frame.row, frame.lowest);
+        builder.store.setKind(frame.row, GRAPH);
+        final ImmutableList<Frame> parents = frames.tail;
+        return new ColumnarRecorder(builder, size, frame.local ? parents.tail.add(parents.head.update(frame.lowest, builder)) : parents);
+    }
+
+    ColumnarRecorder add(final ParseValue value) {
+        if (!enabled) { return this; }
+        builder.truncate(size);
+        final int row = builder.addValue(value, frames.head.row);
+        return new ColumnarRecorder(builder, builder.size, frames.tail.add(frames.head.update(row, builder)));
+    }
+
+    ColumnarRecorder add(final ParseReference reference) {
+        if (!enabled) { return this; }
+        builder.truncate(size);
+        builder.addReference(reference, frames.head.row);
+        return new ColumnarRecorder(builder, builder.size, frames);
+    }
+
+    /**
+     * Returns the rows written up to this state as a graph that reads them
+     * from the store, without copying them. The graph includes the graphs that
+     * are still open, with the items added to them so far, as in a columnar
+     * copy of a parse state with open branches.
+     * <p>
+     * The rows of the open graphs change when they are closed, and all rows
+     * after a state that parsing backtracks to are written again. So the
+     * returned graph only remains valid for as long as parsing continues from
+     * this state.
+     *
+     * @return A graph of the rows written up to this state
+     */
+    public ColumnarGraph getGraph() {
+        if (!enabled) { throw new IllegalStateException("Recorder is not enabled."); }
+        builder.truncate(size);
+        int lowest = NO_ROW;
+        for (ImmutableList<Frame> current = frames; !current.isEmpty(); current = current.tail) {
+            // The open graph nested in this one is its most recent item.
+            lowest = current.head.local ? builder.lowest(current.head.lowest, lowest) : NO_ROW;
+            builder.closeGraph(current.head.row, lowest);
+        }
+        return new ColumnarGraph(builder);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + (enabled ? size + " rows," + builder.store : "disabled") + ")";
+    }
+
+    /**
+     * A graph of which the items are being recorded.
+     */
+    private static class Frame {
+
+        final int row;
+        final boolean local;
+        final int lowest;
+
+        Frame(final int row, final boolean local, final int lowest) {
+            this.row = row;
+            this.local = local;
+            this.lowest = lowest;
+        }
+
+        Frame update(final int candidate, final ColumnarGraph.Builder builder) {
+            if (!local) { return this; }
+            final int newLowest = builder.lowest(lowest, candidate);
+            return newLowest == lowest ? this : new Frame(row, true, newLowest);
+        }
+
+    }
+
+}
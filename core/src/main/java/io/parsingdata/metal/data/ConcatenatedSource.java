@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link Source} that consists of the data of a number of {@link Slice}s,
+ * one after the other, without copying it.
+ * <p>
+ * Reads within a single segment are served by the slice of that segment.
+ * Only reads that span multiple segments copy the requested range. Through
+ * {@link Slice#getBuffers()}, the data of a slice of this source is
+ * available as views of the parts of each segment, without copying it at
+ * all.
+ * <p>
+ * Concatenating a slice that covers a whole ConcatenatedSource adds the
+ * segments of that source instead of the slice itself, so that repeated
+ * concatenation does not nest sources.
+ */
+public class ConcatenatedSource extends Source {
+
+    private final Slice[] segments; // Private because array content is mutable.
+    private final long[] offsets; // The offset of each segment in this source, followed by the total size.
+
+    private ConcatenatedSource(final Slice[] segments) {
+        this.segments = segments;
+        offsets = new long[segments.length + 1];
+        for (int index = 0; index < segments.length; index++) {
+            offsets[index + 1] = offsets[index] + segments[index].size;
+        }
+    }
+
+    /**
+     * @param left The slice to start with
+     * @param right The slice to append
+     * @return A slice of the data of both slices, which refers to their data rather than copying it
+     */
+    public static Slice concatenate(final Slice left, final Slice right) {
+        checkNotNull(left, "left");
+        checkNotNull(right, "right");
+        final int size = Math.addExact(left.size, right.size);
+        final List<Slice> segments = new ArrayList<>();
+        addSegments(segments, left);
+        addSegments(segments, right);
+        return new Slice(new ConcatenatedSource(segments.toArray(new Slice[0])), 0, size);
+    }
+
+    private static void addSegments(final List<Slice> segments, final Slice slice) {
+        if (slice.size == 0) { return; }
+        if (slice.source instanceof ConcatenatedSource && slice.offset == 0 && slice.size == ((ConcatenatedSource)slice.source).size()) {
+            segments.addAll(Arrays.asList(((ConcatenatedSource)slice.source).segments));
+            return;
+        }
+        segments.add(slice);
+    }
+
+    private long size() {
+        return offsets[segments.length];
+    }
+
+    @Override
+    protected byte[] getData(final long offset, final int size) throws IOException {
+        final ByteBuffer buffer = getBuffer(offset, size);
+        final byte[] outputData = new byte[buffer.remaining()];
+        buffer.get(outputData);
+        return outputData;
+    }
+
+    @Override
+    protected boolean isAvailable(final long offset, final int size) {
+        return offset >= 0 && size >= 0 && offset + size <= size();
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(final long offset, final int size) throws IOException {
+        final ByteBuffer[] buffers = getBuffers(offset, size);
+        if (buffers.length == 1) { return buffers[0]; }
+        int total = 0;
+        for (final ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        final ByteBuffer result = ByteBuffer.allocate(total);
+        for (final ByteBuffer buffer : buffers) {
+            result.put(buffer);
+        }
+        ((Buffer)result).flip(); // Through Buffer, since ByteBuffer only overrides flip() from Java 9 on.
+        return result.asReadOnlyBuffer();
+    }
+
+    @Override
+    protected ByteBuffer[] getBuffers(final long offset, final int size) throws IOException {
+        if (offset >= size()) { return new ByteBuffer[] { ByteBuffer.allocate(0).asReadOnlyBuffer() }; }
+        final long end = Math.min(offset + size, size());
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        // The offsets are sorted, so the first segment is found by binary search.
+        final int first = Arrays.binarySearch(offsets, offset);
+        for (int index = first >= 0 ? first : -first - 2; index < segments.length && offsets[index] < end; index++) {
+            final long start = Math.max(offset, offsets[index]) - offsets[index];
+            final int length = (int)(Math.min(end, offsets[index + 1]) - offsets[index] - start);
+            if (length > 0) {
+                buffers.addAll(Arrays.asList(segments[index].getBuffers(start, length)));
+            }
+        }
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + Arrays.toString(segments);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Arrays.equals(segments, ((ConcatenatedSource)obj).segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(segments);
+    }
+
+}
@@ -20,6 +20,7 @@ import static io.parsingdata.metal.Util.bytesToHexString;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import io.parsingdata.metal.Util;
@@ -41,6 +42,18 @@ public class ConstantSource extends Source {
         return outputData;
     }
 
+    @Override
+    protected boolean isAvailable(final long offset, final int size) {
+        return offset >= 0 && size >= 0 && offset + size <= data.length;
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(final long offset, final int size) {
+        if (offset >= data.length) { return ByteBuffer.allocate(0).asReadOnlyBuffer(); }
+        final int toCopy = (int)offset + size > data.length ? data.length - (int)offset : size;
+        return ByteBuffer.wrap(data, (int)offset, toCopy).slice().asReadOnlyBuffer();
+    }
+
     @Override
     public String toString() {
         return bytesToHexString(data);
@@ -19,6 +19,7 @@ package io.parsingdata.metal.data;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -27,6 +28,17 @@ import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
 
+/**
+ * A {@link Source} that reads from the value produced by evaluating a
+ * {@link ValueExpression} on a {@link ParseGraph}.
+ * <p>
+ * The <code>dataExpression</code> is evaluated on the first read only. The
+ * resulting value is retained and shared by all slices and environments that
+ * use this source, so that the (possibly expensive) expression, such as an
+ * inflate, is not re-evaluated for every read. Reads are served from the
+ * slice of the value, so a value that is itself read lazily is not
+ * materialized as a whole.
+ */
 public class DataExpressionSource extends Source {
 
     public final ValueExpression dataExpression;
@@ -34,6 +46,8 @@ public class DataExpressionSource extends Source {
     public final ParseGraph graph;
     public final Encoding encoding;
 
+    private Value value;
+
     public DataExpressionSource(final ValueExpression dataExpression, final int index, final ParseGraph graph, final Encoding encoding) {
         this.dataExpression = checkNotNull(dataExpression, "dataExpression");
         this.index = index;
@@ -43,19 +57,48 @@ public class DataExpressionSource extends Source {
 
     @Override
     protected byte[] getData(final long offset, final int size) throws IOException {
-        final ImmutableList<Optional<Value>> results = dataExpression.eval(graph, encoding);
-        if (results.size <= index) { throw new IllegalStateException("ValueExpression dataExpression yields " + results.size + " result(s) (expected at least " + (index + 1) + ")."); }
-        final byte[] inputData = getValueAtIndex(results, index, 0).get().getValue();
-        if (offset >= inputData.length) { return new byte[0]; }
-        final int toCopy = (int)offset + size > inputData.length ? inputData.length - (int)offset : size;
-        final byte[] outputData = new byte[toCopy];
-        System.arraycopy(inputData, (int)offset, outputData, 0, toCopy);
+        final ByteBuffer buffer = getBuffer(offset, size);
+        final byte[] outputData = new byte[buffer.remaining()];
+        buffer.get(outputData);
         return outputData;
     }
 
+    @Override
+    protected boolean isAvailable(final long offset, final int size) throws IOException {
+        return offset >= 0 && size >= 0 && offset + size <= getValue().slice.size;
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(final long offset, final int size) throws IOException {
+        final Slice slice = getValue().slice;
+        if (offset >= slice.size) { return ByteBuffer.allocate(0).asReadOnlyBuffer(); }
+        final int toCopy = (int)offset + size > slice.size ? slice.size - (int)offset : size;
+        return slice.getBuffer(offset, toCopy);
+    }
+
+    @Override
+    protected ByteBuffer[] getBuffers(final long offset, final int size) throws IOException {
+        final Slice slice = getValue().slice;
+        if (offset >= slice.size) { return new ByteBuffer[] { ByteBuffer.allocate(0).asReadOnlyBuffer() }; }
+        final int toCopy = (int)offset + size > slice.size ? slice.size - (int)offset : size;
+        return slice.getBuffers(offset, toCopy);
+    }
+
+    private Value getValue() {
+        if (value == null) {
+            final ImmutableList<Optional<Value>> results = dataExpression.eval(graph, encoding);
+            if (results.size <= index) { throw new IllegalStateException("ValueExpression dataExpression yields " + results.size + " result(s) (expected at least " + (index + 1) + ")."); }
+            value = getValueAtIndex(results, index, 0).get();
+        }
+        return value;
+    }
+
     private Optional<Value> getValueAtIndex(final ImmutableList<Optional<Value>> results, final int index, final int current) {
-        if (index == current) { return results.head; }
-        return getValueAtIndex(results.tail, index, current + 1);
+        ImmutableList<Optional<Value>> list = results;
+        for (int position = current; position < index; position++) {
+            list = list.tail;
+        }
+        return list.head;
     }
 
     @Override
@@ -70,6 +113,7 @@ public class DataExpressionSource extends Source {
             && Objects.equals(index, ((DataExpressionSource)obj).index)
             && Objects.equals(graph, ((DataExpressionSource)obj).graph)
             && Objects.equals(encoding, ((DataExpressionSource)obj).encoding);
+            // The value field is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
@@ -31,16 +31,46 @@ public class Environment {
     public final long offset;
     public final Source source;
     public final Callbacks callbacks;
+    public final Pruner pruner;
+    public final EvaluationCache cache;
+    public final ColumnarRecorder recorder;
 
-    public Environment(final ParseGraph order, final Source source, final long offset, final Callbacks callbacks) {
+    public Environment(final ParseGraph order, final Source source, final long offset, final Callbacks callbacks, final Pruner pruner, final EvaluationCache cache, final ColumnarRecorder recorder) {
         this.order = checkNotNull(order, "order");
         this.source = checkNotNull(source, "source");
         this.offset = offset;
         this.callbacks = checkNotNull(callbacks, "callbacks");
+        this.pruner = checkNotNull(pruner, "pruner");
+        this.cache = checkNotNull(cache, "cache");
+        this.recorder = checkNotNull(recorder, "recorder");
+    }
+
+    public Environment(final ParseGraph order, final Source source, final long offset, final Callbacks callbacks, final Pruner pruner, final EvaluationCache cache) {
+        this(order, source, offset, callbacks, pruner, cache, ColumnarRecorder.NONE);
+    }
+
+    public Environment(final ParseGraph order, final Source source, final long offset, final Callbacks callbacks, final Pruner pruner) {
+        this(order, source, offset, callbacks, pruner, EvaluationCache.NONE);
+    }
+
+    public Environment(final ParseGraph order, final Source source, final long offset, final Callbacks callbacks) {
+        this(order, source, offset, callbacks, Pruner.NONE);
+    }
+
+    public Environment(final ByteStream input, final long offset, final Callbacks callbacks, final Pruner pruner, final EvaluationCache cache, final ColumnarRecorder recorder) {
+        this(ParseGraph.EMPTY, new ByteStreamSource(input), offset, callbacks, pruner, cache, recorder);
+    }
+
+    public Environment(final ByteStream input, final long offset, final Callbacks callbacks, final Pruner pruner, final EvaluationCache cache) {
+        this(input, offset, callbacks, pruner, cache, ColumnarRecorder.NONE);
+    }
+
+    public Environment(final ByteStream input, final long offset, final Callbacks callbacks, final Pruner pruner) {
+        this(input, offset, callbacks, pruner, EvaluationCache.NONE);
     }
 
     public Environment(final ByteStream input, final long offset, final Callbacks callbacks) {
-        this(ParseGraph.EMPTY, new ByteStreamSource(input), offset, callbacks);
+        this(input, offset, callbacks, Pruner.NONE);
     }
 
     public Environment(final ByteStream input, final long offset) {
@@ -55,28 +85,40 @@ public class Environment {
         this(input, 0L);
     }
 
+    public Environment(final ByteStream input, final Pruner pruner) {
+        this(input, 0L, Callbacks.NONE, pruner);
+    }
+
+    public Environment(final ByteStream input, final EvaluationCache cache) {
+        this(input, 0L, Callbacks.NONE, Pruner.NONE, cache);
+    }
+
+    public Environment(final ByteStream input, final Pruner pruner, final ColumnarRecorder recorder) {
+        this(input, 0L, Callbacks.NONE, pruner, EvaluationCache.NONE, recorder);
+    }
+
     public Environment addBranch(final Token token) {
-        return new Environment(order.addBranch(token), source, offset, callbacks);
+        return new Environment(order.addBranch(token), source, offset, callbacks, pruner, cache, recorder.addBranch(token));
     }
 
     public Environment closeBranch() {
-        return new Environment(order.closeBranch(), source, offset, callbacks);
+        return new Environment(pruner.closeBranch(order), source, offset, callbacks, pruner, cache, recorder.closeBranch());
     }
 
     public Environment add(final ParseValue parseValue) {
-        return new Environment(order.add(parseValue), source, offset, callbacks);
+        return new Environment(order.add(parseValue), source, offset, callbacks, pruner, cache, recorder.add(parseValue));
     }
 
     public Environment add(final ParseReference parseReference) {
-        return new Environment(order.add(parseReference), source, offset, callbacks);
+        return new Environment(order.add(parseReference), source, offset, callbacks, pruner, cache, recorder.add(parseReference));
     }
 
     public Environment seek(final long newOffset) {
-        return new Environment(order, source, newOffset, callbacks);
+        return new Environment(order, source, newOffset, callbacks, pruner, cache, recorder);
     }
 
     public Environment source(final ValueExpression dataExpression, final int index, final Environment environment, final Encoding encoding) {
-        return new Environment(order, new DataExpressionSource(dataExpression, index, environment.order, encoding), 0L, callbacks);
+        return new Environment(order, new DataExpressionSource(dataExpression, index, environment.order, encoding), 0L, callbacks, pruner, cache, recorder);
     }
 
     public Slice slice(final int size) throws IOException {
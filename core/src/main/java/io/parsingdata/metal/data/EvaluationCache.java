@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.Optional;
+
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+/**
+ * A bounded cache of the results of evaluating {@link ValueExpression}s
+ * during a parse.
+ * <p>
+ * Results are keyed by the identity of the expression and of the
+ * {@link ParseGraph} it is evaluated on, and by the {@link Encoding}. Since a
+ * graph is immutable, a result remains valid for as long as the graph is
+ * used. This is the case when the same subexpression occurs in several
+ * expressions that are evaluated on the same parse state, or when parsing
+ * backtracks and evaluates an expression again. Since keys are identities,
+ * structurally equal expressions that are separate instances (such as two
+ * occurrences of <code>last(ref("x"))</code> that are each constructed
+ * separately) do not share results.
+ * <p>
+ * Graphs are referenced weakly, so the cache does not keep a parse state
+ * alive that is no longer used, such as a branch that is removed by a
+ * {@link Pruner}. The slot of a graph that is collected is cleared on the
+ * next access to the cache, releasing its result.
+ * <p>
+ * The cache holds at most <code>size</code> results, in a table that is
+ * indexed by the hash of the key. A new result replaces the result in its
+ * slot, so memory use does not grow with the size of the input.
+ * <p>
+ * A cache is enabled for a parse by passing it to its {@link Environment}.
+ * It is not thread-safe, so a cache must not be shared by parses that run
+ * concurrently. The expressions in tokens are evaluated through the cache by
+ * {@link io.parsingdata.metal.expression.ExpressionCompiler}.
+ */
+public class EvaluationCache {
+
+    public static final int MAX_SIZE = 1 << 20;
+
+    public static final EvaluationCache NONE = new EvaluationCache(0);
+
+    public final int size;
+    public final boolean enabled;
+
+    private final ValueExpression[] expressions;
+    private final GraphReference[] graphs;
+    private final Encoding[] encodings;
+    private final Optional<Value>[] results;
+    private final ReferenceQueue<ParseGraph> collected = new ReferenceQueue<>();
+
+    @SuppressWarnings("unchecked")
+    private EvaluationCache(final int size) {
+        this.size = size;
+        enabled = size > 0;
+        expressions = new ValueExpression[size];
+        graphs = new GraphReference[size];
+        encodings = new Encoding[size];
+        results = new Optional[size];
+    }
+
+    /**
+     * @param size The minimum number of results to hold, which is rounded up to a power of two
+     * @return An empty cache
+     */
+    public static EvaluationCache create(final int size) {
+        if (size <= 0 || size > MAX_SIZE) { throw new IllegalArgumentException("Argument size must be positive and at most " + MAX_SIZE + "."); }
+        return new EvaluationCache(size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1);
+    }
+
+    /**
+     * @param expression The evaluated expression
+     * @param graph The parse state the expression is evaluated on
+     * @param encoding The encoding the expression is evaluated with
+     * @return The stored result, or null if it is not in the cache
+     */
+    public Optional<Value> get(final ValueExpression expression, final ParseGraph graph, final Encoding encoding) {
+        if (!enabled) { return null; }
+        clearCollected();
+        final int index = index(expression, graph);
+        if (expressions[index] == expression && graphs[index] != null && graphs[index].get() == graph && Objects.equals(encodings[index], encoding)) {
+            return results[index];
+        }
+        return null;
+    }
+
+    /**
+     * @param expression The evaluated expression
+     * @param graph The parse state the expression is evaluated on
+     * @param encoding The encoding the expression is evaluated with
+     * @param result The result of evaluating the expression, which replaces the result in its slot
+     */
+    public void put(final ValueExpression expression, final ParseGraph graph, final Encoding encoding, final Optional<Value> result) {
+        if (!enabled) { return; }
+        clearCollected();
+        final int index = index(checkNotNull(expression, "expression"), checkNotNull(graph, "graph"));
+        expressions[index] = expression;
+        graphs[index] = new GraphReference(graph, index, collected);
+        encodings[index] = encoding;
+        results[index] = checkNotNull(result, "result");
+    }
+
+    private void clearCollected() {
+        for (GraphReference reference = (GraphReference)collected.poll(); reference != null; reference = (GraphReference)collected.poll()) {
+            // A slot may have been reused for a graph that is still alive.
+            if (graphs[reference.index] == reference) {
+                expressions[reference.index] = null;
+                graphs[reference.index] = null;
+                encodings[reference.index] = null;
+                results[reference.index] = null;
+            }
+        }
+    }
+
+    private int index(final ValueExpression expression, final ParseGraph graph) {
+        final int hash = System.identityHashCode(expression) * 31 + System.identityHashCode(graph);
+        return (hash ^ (hash >>> 16)) & (size - 1);
+    }
+
+    private static class GraphReference extends WeakReference<ParseGraph> {
+
+        final int index;
+
+        GraphReference(final ParseGraph graph, final int index, final ReferenceQueue<ParseGraph> queue) {
+            super(graph, queue);
+            this.index = index;
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + size + ")";
+    }
+
+}
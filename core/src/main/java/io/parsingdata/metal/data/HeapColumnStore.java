@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.parsingdata.metal.data;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColumnStore} that keeps each column in an array.
+ */
+class HeapColumnStore extends ColumnStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private final int[][] ints = new int[INT_COLUMNS][INITIAL_CAPACITY];
+
+    @Override
+    void ensureCapacity(final int rows) {
+        if (rows > kinds.length) {
+            resize(Math.max(rows, kinds.length + (kinds.length >> 1)));
+        }
+    }
+
+    @Override
+    void trim(final int rows) {
+        resize(rows);
+    }
+
+    private void resize(final int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column] = Arrays.copyOf(ints[column], capacity);
+        }
+    }
+
+    @Override byte getKind(final int row) { return kinds[row]; }
+    @Override void setKind(final int row, final byte kind) { kinds[row] = kind; }
+
+    @Override long getOffset(final int row) { return offsets[row]; }
+    @Override void setOffset(final int row, final long offset) { offsets[row] = offset; }
+
+    @Override int getInt(final int row, final int column) { return ints[column][row]; }
+    @Override void setInt(final int row, final int column, final int value) { ints[column][row] = value; }
+
+}
@@ -45,43 +45,72 @@ public class ImmutableList<T> {
     }
 
     public static <T> ImmutableList<T> create(final T[] array) {
-        return createFromArray(new ImmutableList<>(), checkNotNull(array, "array"), array.length - 1);
-    }
-
-    private static <T> ImmutableList<T> createFromArray(final ImmutableList<T> list, final T[] array, final int index) {
-        if (index < 0) { return list; }
-        return createFromArray(list.add(array[index]), array, index - 1);
+        checkNotNull(array, "array");
+        ImmutableList<T> list = new ImmutableList<>();
+        for (int index = array.length - 1; index >= 0; index--) {
+            list = list.add(array[index]);
+        }
+        return list;
     }
 
     public ImmutableList<T> add(final T head) {
         return new ImmutableList<>(checkNotNull(head, "head"), this);
     }
 
+    @SuppressWarnings("unchecked")
     public ImmutableList<T> add(final ImmutableList<T> list) {
         checkNotNull(list, "list");
         if (list.isEmpty()) { return this; }
         if (isEmpty()) { return list; }
-        return add(list.tail).add(list.head);
+        final Object[] elements = list.toArray();
+        ImmutableList<T> result = this;
+        for (int index = elements.length - 1; index >= 0; index--) {
+            result = new ImmutableList<>((T)elements[index], result);
+        }
+        return result;
+    }
+
+    private Object[] toArray() {
+        final Object[] elements = new Object[Math.toIntExact(size)];
+        int index = 0;
+        for (ImmutableList<T> current = this; !current.isEmpty(); current = current.tail) {
+            elements[index++] = current.head;
+        }
+        return elements;
     }
 
     public boolean isEmpty() { return size == 0; }
 
     @Override
     public String toString() {
-        return isEmpty() ? "" : ">" + head + tail.toString();
+        final StringBuilder builder = new StringBuilder();
+        for (ImmutableList<T> current = this; !current.isEmpty(); current = current.tail) {
+            builder.append('>').append(current.head);
+        }
+        return builder.toString();
     }
 
     @Override
     public boolean equals(final Object obj) {
-        return Util.notNullAndSameClass(this, obj)
-            && Objects.equals(head, ((ImmutableList)obj).head)
-            && Objects.equals(tail, ((ImmutableList)obj).tail);
+        if (!Util.notNullAndSameClass(this, obj)) { return false; }
+        ImmutableList current = this;
+        ImmutableList other = (ImmutableList)obj;
+        for (; current != other; current = current.tail, other = other.tail) {
+            if (current.isEmpty() || other.isEmpty()) { return current.isEmpty() && other.isEmpty(); }
+            if (!Objects.equals(current.head, other.head)) { return false; }
+        }
+        return true;
         // The size field is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(head, tail);
+        // Equal to Objects.hash(head, tail), unrolled along the tail.
+        int hash = Objects.hash(null, null);
+        for (ImmutableList<T> current = this; !current.isEmpty(); current = current.tail) {
+            hash += 31 * (31 + Objects.hashCode(current.head));
+        }
+        return hash;
     }
 
 }
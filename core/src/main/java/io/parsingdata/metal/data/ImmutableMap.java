@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * An immutable map, implemented as a hash array mapped trie.
+ * <p>
+ * Putting a key copies only the path to its entry, so that a map and the
+ * map it was created from share most of their structure.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+class ImmutableMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+
+    ImmutableMap() {
+        this(new Node(0, new Object[0]));
+    }
+
+    private ImmutableMap(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param key The key to look up
+     * @return The value of the key, or null if the map does not contain the key
+     */
+    @SuppressWarnings("unchecked")
+    V get(final K key) {
+        final Entry entry = root.get(hash(checkNotNull(key, "key")), key, 0);
+        return entry == null ? null : (V)entry.value;
+    }
+
+    ImmutableMap<K, V> put(final K key, final V value) {
+        return new ImmutableMap<>(root.put(hash(checkNotNull(key, "key")), key, checkNotNull(value, "value"), 0));
+    }
+
+    /**
+     * @param map The map to add the entries of
+     * @param merge Computes the value of a key that is in both maps, from the value in this map and the value in <code>map</code>
+     * @return A map containing the entries of both maps
+     */
+    @SuppressWarnings("unchecked")
+    ImmutableMap<K, V> putAll(final ImmutableMap<K, V> map, final BinaryOperator<V> merge) {
+        if (map.root.children.length == 0) { return this; }
+        if (root.children.length == 0) { return map; }
+        return new ImmutableMap<>(putAll(root, map.root, (BinaryOperator<Object>)merge));
+    }
+
+    private static Node putAll(final Node target, final Node source, final BinaryOperator<Object> merge) {
+        Node result = target;
+        for (final Object child : source.children) {
+            if (child instanceof Node) {
+                result = putAll(result, (Node)child, merge);
+            } else {
+                for (Entry entry = (Entry)child; entry != null; entry = entry.next) {
+                    final Entry existing = result.get(entry.hash, entry.key, 0);
+                    result = result.put(entry.hash, entry.key, existing == null ? entry.value : merge.apply(existing.value, entry.value), 0);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int hash(final Object key) {
+        final int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A leaf of the trie. Entries with keys that have the same hash are
+     * chained through <code>next</code>.
+     */
+    private static class Entry {
+
+        final int hash;
+        final Object key;
+        final Object value;
+        final Entry next;
+
+        Entry(final int hash, final Object key, final Object value, final Entry next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        Entry get(final Object key) {
+            for (Entry entry = this; entry != null; entry = entry.next) {
+                if (entry.key.equals(key)) { return entry; }
+            }
+            return null;
+        }
+
+        Entry put(final Object key, final Object value) {
+            if (this.key.equals(key)) { return new Entry(hash, key, value, next); }
+            return new Entry(hash, this.key, this.value, next == null ? new Entry(hash, key, value, null) : next.put(key, value));
+        }
+
+    }
+
+    /**
+     * An inner node of the trie. Each bit set in <code>bitmap</code>
+     * corresponds to an element of <code>children</code>, which is either a
+     * {@link Node} or an {@link Entry}.
+     */
+    private static class Node {
+
+        final int bitmap;
+        final Object[] children;
+
+        Node(final int bitmap, final Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        Entry get(final int hash, final Object key, final int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) { return null; }
+            final Object child = children[Integer.bitCount(bitmap & (bit - 1))];
+            if (child instanceof Node) { return ((Node)child).get(hash, key, shift + BITS); }
+            final Entry entry = (Entry)child;
+            return entry.hash == hash ? entry.get(key) : null;
+        }
+
+        Node put(final int hash, final Object key, final Object value, final int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int position = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                final Object[] newChildren = new Object[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, position);
+                newChildren[position] = new Entry(hash, key, value, null);
+                System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+                return new Node(bitmap | bit, newChildren);
+            }
+            final Object child = children[position];
+            final Object newChild;
+            if (child instanceof Node) {
+                newChild = ((Node)child).put(hash, key, value, shift + BITS);
+            } else if (((Entry)child).hash == hash) {
+                newChild = ((Entry)child).put(key, value);
+            } else {
+                // Hashes that differ always differ in the bits used up to and including a shift of 30.
+                final Entry entry = (Entry)child;
+                newChild = new Node(1 << ((entry.hash >>> (shift + BITS)) & MASK), new Object[] { entry }).put(hash, key, value, shift + BITS);
+            }
+            final Object[] newChildren = children.clone();
+            newChildren[position] = newChild;
+            return new Node(bitmap, newChildren);
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * An immutable, persistent vector.
+ * <p>
+ * Elements are appended at the end and looked up by their index, where index
+ * 0 is the element that was added first. The elements are stored in a trie of
+ * nodes that each hold up to 32 elements or children, so a lookup visits
+ * at most log32(size) nodes. The last (partial) node is kept apart from the
+ * trie, so that most appends only copy that node. Like {@link ImmutableList},
+ * a vector shares all unchanged nodes with the vector it was created from.
+ * <p>
+ * Where an {@link ImmutableList} is built by adding the most recent element
+ * as its head, a vector has the most recent element at index
+ * <code>size - 1</code>. {@link #toList()} converts between the two.
+ *
+ * @param <T> The type of the elements
+ */
+public class ImmutableVector<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] NO_ELEMENTS = new Object[0];
+
+    public final long size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    public ImmutableVector() {
+        this(0, BITS, new Object[WIDTH], NO_ELEMENTS);
+    }
+
+    private ImmutableVector(final long size, final int shift, final Object[] root, final Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * @param element The element to append
+     * @return A vector with the elements of this vector followed by <code>element</code>
+     */
+    public ImmutableVector<T> add(final T element) {
+        checkNotNull(element, "element");
+        final int tailSize = (int)(size - tailOffset());
+        if (tailSize < WIDTH) {
+            final Object[] newTail = Arrays.copyOf(tail, tailSize + 1);
+            newTail[tailSize] = element;
+            return new ImmutableVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full, so it is moved into the trie, which gains a level when it is full as well.
+        if ((size >>> BITS) > (1L << shift)) {
+            final Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            return new ImmutableVector<>(size + 1, shift + BITS, newRoot, new Object[] { element });
+        }
+        return new ImmutableVector<>(size + 1, shift, pushTail(shift, root, tail), new Object[] { element });
+    }
+
+    /**
+     * @param vector The elements to append
+     * @return A vector with the elements of this vector followed by the elements of <code>vector</code>
+     */
+    @SuppressWarnings("unchecked")
+    public ImmutableVector<T> add(final ImmutableVector<T> vector) {
+        checkNotNull(vector, "vector");
+        if (vector.isEmpty()) { return this; }
+        if (isEmpty()) { return vector; }
+        ImmutableVector<T> result = this;
+        for (long index = 0; index < vector.size; index += WIDTH) {
+            final Object[] node = vector.nodeFor(index);
+            for (int element = 0; element < node.length && index + element < vector.size; element++) {
+                result = result.add((T)node[element]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param index The index of the element, where 0 is the element that was added first
+     * @return The element at the provided index
+     */
+    @SuppressWarnings("unchecked")
+    public T get(final long index) {
+        if (index < 0 || index >= size) { throw new IllegalArgumentException("Argument index must be at least 0 and less than " + size + "."); }
+        return (T)nodeFor(index)[(int)(index & MASK)];
+    }
+
+    /**
+     * @return A list of the elements of this vector, with the element that was added last as its head
+     */
+    @SuppressWarnings("unchecked")
+    public ImmutableList<T> toList() {
+        ImmutableList<T> result = new ImmutableList<>();
+        for (long index = 0; index < size; index += WIDTH) {
+            final Object[] node = nodeFor(index);
+            for (int element = 0; element < node.length && index + element < size; element++) {
+                result = result.add((T)node[element]);
+            }
+        }
+        return result;
+    }
+
+    public boolean isEmpty() { return size == 0; }
+
+    private long tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] nodeFor(final long index) {
+        if (index >= tailOffset()) { return tail; }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[])node[(int)((index >>> level) & MASK)];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(final int level, final Object[] parent, final Object[] tailNode) {
+        final int child = (int)(((size - 1) >>> level) & MASK);
+        final Object[] newParent = parent.clone();
+        if (level == BITS) {
+            newParent[child] = tailNode;
+        }
+        else {
+            newParent[child] = parent[child] == null ? newPath(level - BITS, tailNode) : pushTail(level - BITS, (Object[])parent[child], tailNode);
+        }
+        return newParent;
+    }
+
+    private static Object[] newPath(final int level, final Object[] node) {
+        if (level == 0) { return node; }
+        final Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (long index = 0; index < size; index++) {
+            builder.append('>').append(get(index));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        // The layout of the trie only depends on the size, so only the elements are compared.
+        if (!Util.notNullAndSameClass(this, obj)) { return false; }
+        final ImmutableVector other = (ImmutableVector)obj;
+        if (size != other.size) { return false; }
+        for (long index = 0; index < size; index++) {
+            if (!Objects.equals(get(index), other.get(index))) { return false; }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (long index = 0; index < size; index++) {
+            hash = 31 * hash + Objects.hashCode(get(index));
+        }
+        return hash;
+    }
+
+}
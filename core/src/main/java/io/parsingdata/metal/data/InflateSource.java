@@ -0,0 +1,381 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link Source} that contains the inflated (decompressed) data of a
+ * {@link Slice} of raw deflate compressed data.
+ * <p>
+ * The data is inflated on demand, in pages of <code>pageSize</code> bytes. At
+ * most <code>maxPages</code> pages are retained, evicting the least recently
+ * used page when a new one is inflated, so that the heap used is bounded
+ * regardless of the size of the inflated data. Reads that advance through the
+ * data continue inflating where the previous read stopped.
+ * <p>
+ * The size of the inflated data is determined by {@link #getSize()}, which
+ * inflates the input once without retaining more than <code>maxPages</code>
+ * pages. This also validates the input, since the size of a {@link Slice} on
+ * this source must be known in advance. The size is recorded, so the input is
+ * only inflated completely once more if all pages are read.
+ * <p>
+ * Since the state of an {@link Inflater} can not be copied, a read of an
+ * evicted page before the current position restarts inflating at an earlier
+ * point. While determining the size, restart points are recorded where the
+ * compressed data contains a flush point: the empty stored block that a
+ * compressor writes on a full or sync flush, after which a new
+ * {@link Inflater} can continue with the preceding 32 KiB of output as its
+ * dictionary. Restart points are at least <code>pageSize * maxPages</code>
+ * (and at least 256 KiB) of output apart, so that their dictionaries use at
+ * most an eighth of the size of the inflated data. A restart point is only
+ * recorded after inflating from it reproduced the first 32 KiB that follow it.
+ * <p>
+ * Data compressed without flush points, which includes the output of most
+ * archivers, has a single restart point at its start. For such data, every
+ * read of an evicted page before the current position inflates from the start
+ * again, so that reading pages in random order takes time quadratic in the
+ * size of the inflated data.
+ */
+public class InflateSource extends Source {
+
+    public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_PAGES = 64;
+
+    private static final int INPUT_CHUNK_SIZE = 8192;
+    private static final int WINDOW_SIZE = 32 * 1024; // The maximum distance of a back-reference in deflate data.
+    private static final int MIN_RESTART_INTERVAL = 8 * WINDOW_SIZE;
+    private static final byte[] FLUSH_MARKER = { 0, 0, -1, -1 }; // The length fields of an empty stored block.
+    private static final RestartPoint START = new RestartPoint(0, 0, new byte[0]);
+    private static final long UNKNOWN = -2;
+    private static final long INVALID = -1;
+
+    public final Slice input;
+    public final int pageSize;
+    public final int maxPages;
+
+    private final Map<Long, byte[]> pages;
+    private final NavigableMap<Long, RestartPoint> restartPoints = new TreeMap<>();
+    private final long restartInterval;
+    private final byte[] inputChunk = new byte[INPUT_CHUNK_SIZE];
+    private long size = UNKNOWN;
+    private Inflater inflater;
+    private long inputOffset;
+    private long outputOffset;
+
+    // State that is only used while determining the size. The window holds the most recent output, from which the
+    // dictionary of a restart point is copied. A candidate restart point is added once the output that follows it
+    // matches the output that was inflated from it.
+    private byte[] window;
+    private boolean atFlushPoint;
+    private RestartPoint candidate;
+    private byte[] candidateOutput;
+    private int verified;
+
+    public InflateSource(final Slice input, final int pageSize, final int maxPages) {
+        this.input = checkNotNull(input, "input");
+        if (pageSize <= 0) { throw new IllegalArgumentException("Argument pageSize must be positive."); }
+        if (maxPages <= 0) { throw new IllegalArgumentException("Argument maxPages must be positive."); }
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        pages = new LinkedHashMap<Long, byte[]>(maxPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > InflateSource.this.maxPages;
+            }
+        };
+        restartInterval = Math.max((long)pageSize * maxPages, MIN_RESTART_INTERVAL);
+        restartPoints.put(START.outputOffset, START);
+    }
+
+    public InflateSource(final Slice input) {
+        this(input, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Returns the size of the inflated data.
+     * <p>
+     * The first call inflates the complete input and records the restart
+     * points. The first <code>maxPages</code> pages are retained, since
+     * parsing usually starts at the beginning of the data.
+     *
+     * @return the size of the inflated data, or empty if <code>input</code>
+     * is not a complete raw deflate stream
+     */
+    public Optional<Long> getSize() {
+        if (size == UNKNOWN) {
+            restart(START);
+            window = new byte[WINDOW_SIZE];
+            try {
+                long index = 0;
+                while (!inflater.finished()) {
+                    final byte[] page = inflatePage();
+                    if (pages.size() < maxPages) { pages.put(index, page); }
+                    index++;
+                }
+                size = outputOffset;
+            } catch (final DataFormatException e) {
+                size = INVALID;
+            } finally {
+                window = null;
+                candidate = null;
+                candidateOutput = null;
+                end();
+            }
+        }
+        return size == INVALID ? Optional.empty() : Optional.of(size);
+    }
+
+    @Override
+    protected byte[] getData(final long offset, final int size) throws IOException {
+        final long available = getSize().orElse(0L);
+        if (offset < 0 || offset >= available) { return new byte[0]; }
+        final int toCopy = (int)Math.min(size, available - offset);
+        final byte[] outputData = new byte[toCopy];
+        int done = 0;
+        while (done < toCopy) {
+            final long position = offset + done;
+            final byte[] page = getPage(position / pageSize);
+            final int pageOffset = (int)(position % pageSize);
+            final int chunk = Math.min(toCopy - done, page.length - pageOffset);
+            System.arraycopy(page, pageOffset, outputData, done, chunk);
+            done += chunk;
+        }
+        return outputData;
+    }
+
+    @Override
+    protected boolean isAvailable(final long offset, final int size) {
+        return offset >= 0 && size >= 0 && offset + size <= getSize().orElse(0L);
+    }
+
+    private byte[] getPage(final long index) throws IOException {
+        final byte[] page = pages.get(index);
+        if (page != null) { return page; }
+        final long pageOffset = index * pageSize;
+        final RestartPoint restartPoint = restartPoints.floorEntry(pageOffset).getValue();
+        if (inflater == null || outputOffset > pageOffset || outputOffset < restartPoint.outputOffset) { restart(restartPoint); }
+        try {
+            skip(pageOffset - outputOffset);
+            final byte[] newPage = inflatePage();
+            pages.put(index, newPage);
+            if (inflater.finished()) { end(); }
+            return newPage;
+        } catch (final DataFormatException e) {
+            end();
+            throw new IOException("Inflating data that was previously inflated successfully failed.", e);
+        }
+    }
+
+    private void skip(final long length) throws DataFormatException {
+        final byte[] skipped = new byte[(int)Math.min(length, pageSize)];
+        for (long remaining = length; remaining > 0; ) {
+            final int done = inflate(skipped, (int)Math.min(remaining, skipped.length));
+            if (done == 0) { throw new DataFormatException("Deflate stream ended before requested offset."); }
+            remaining -= done;
+        }
+    }
+
+    private byte[] inflatePage() throws DataFormatException {
+        final byte[] page = new byte[pageSize];
+        final int done = inflate(page, pageSize);
+        if (done == pageSize) { return page; }
+        final byte[] lastPage = new byte[done];
+        System.arraycopy(page, 0, lastPage, 0, done);
+        return lastPage;
+    }
+
+    private int inflate(final byte[] output, final int length) throws DataFormatException {
+        int done = 0;
+        while (done < length && !inflater.finished()) {
+            if (inflater.needsInput() && !atFlushPoint) { readInput(); }
+            final int inflated = inflater.inflate(output, done, length - done);
+            if (atFlushPoint && inflated == 0 && inflater.needsInput()) {
+                // All input up to the flush point is consumed and all output that it results in is written.
+                addCandidate();
+                atFlushPoint = false;
+            }
+            if (window != null) { record(output, done, inflated); }
+            outputOffset += inflated;
+            done += inflated;
+        }
+        return done;
+    }
+
+    private void readInput() throws DataFormatException {
+        if (inputOffset >= input.size) { throw new DataFormatException("Input ended before end of deflate stream."); }
+        int chunkSize = (int)Math.min(inputChunk.length, input.size - inputOffset);
+        input.getBuffer(inputOffset, chunkSize).get(inputChunk, 0, chunkSize);
+        if (window != null) {
+            // End the input after a flush marker, so that the state of the inflater is known once it needs input.
+            final int flushPoint = findFlushPoint(chunkSize);
+            if (flushPoint > 0) {
+                chunkSize = flushPoint;
+                atFlushPoint = true;
+            }
+        }
+        inflater.setInput(inputChunk, 0, chunkSize);
+        inputOffset += chunkSize;
+    }
+
+    private int findFlushPoint(final int chunkSize) {
+        for (int index = 0; index <= chunkSize - FLUSH_MARKER.length; index++) {
+            if (inputChunk[index] == FLUSH_MARKER[0] && inputChunk[index + 1] == FLUSH_MARKER[1]
+                && inputChunk[index + 2] == FLUSH_MARKER[2] && inputChunk[index + 3] == FLUSH_MARKER[3]) {
+                return index + FLUSH_MARKER.length;
+            }
+        }
+        return -1;
+    }
+
+    private void addCandidate() {
+        // The marker may also occur inside a compressed block, so a candidate is verified before it is used.
+        if (candidate != null || outputOffset < restartPoints.lastKey() + restartInterval) { return; }
+        final RestartPoint restartPoint = new RestartPoint(inputOffset, outputOffset, copyWindow());
+        final byte[] output = inflateFrom(restartPoint);
+        if (output == null || output.length == 0) { return; }
+        candidate = restartPoint;
+        candidateOutput = output;
+        verified = 0;
+    }
+
+    private byte[] inflateFrom(final RestartPoint restartPoint) {
+        final Inflater probe = new Inflater(true);
+        try {
+            if (restartPoint.dictionary.length > 0) { probe.setDictionary(restartPoint.dictionary); }
+            final byte[] output = new byte[WINDOW_SIZE];
+            final byte[] probeInput = new byte[INPUT_CHUNK_SIZE];
+            long probeOffset = restartPoint.inputOffset;
+            int done = 0;
+            while (done < output.length && !probe.finished()) {
+                if (probe.needsInput()) {
+                    if (probeOffset >= input.size) { return null; }
+                    final int chunkSize = (int)Math.min(probeInput.length, input.size - probeOffset);
+                    input.getBuffer(probeOffset, chunkSize).get(probeInput, 0, chunkSize);
+                    probe.setInput(probeInput, 0, chunkSize);
+                    probeOffset += chunkSize;
+                }
+                done += probe.inflate(output, done, output.length - done);
+            }
+            return done == output.length ? output : Arrays.copyOf(output, done);
+        } catch (final DataFormatException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            probe.end();
+        }
+    }
+
+    private void record(final byte[] output, final int offset, final int length) {
+        if (candidate != null) { verify(output, offset, length); }
+        for (int done = Math.max(0, length - WINDOW_SIZE); done < length; ) {
+            final int position = (int)((outputOffset + done) % WINDOW_SIZE);
+            final int chunk = Math.min(length - done, WINDOW_SIZE - position);
+            System.arraycopy(output, offset + done, window, position, chunk);
+            done += chunk;
+        }
+    }
+
+    private void verify(final byte[] output, final int offset, final int length) {
+        final int count = Math.min(length, candidateOutput.length - verified);
+        for (int index = 0; index < count; index++) {
+            if (output[offset + index] != candidateOutput[verified + index]) {
+                candidate = null;
+                candidateOutput = null;
+                return;
+            }
+        }
+        verified += count;
+        if (verified == candidateOutput.length) {
+            restartPoints.put(candidate.outputOffset, candidate);
+            candidate = null;
+            candidateOutput = null;
+        }
+    }
+
+    private byte[] copyWindow() {
+        final int length = (int)Math.min(WINDOW_SIZE, outputOffset);
+        final byte[] dictionary = new byte[length];
+        for (int done = 0; done < length; ) {
+            final int position = (int)((outputOffset - length + done) % WINDOW_SIZE);
+            final int chunk = Math.min(length - done, WINDOW_SIZE - position);
+            System.arraycopy(window, position, dictionary, done, chunk);
+            done += chunk;
+        }
+        return dictionary;
+    }
+
+    private void restart(final RestartPoint restartPoint) {
+        end();
+        inflater = new Inflater(true);
+        if (restartPoint.dictionary.length > 0) { inflater.setDictionary(restartPoint.dictionary); }
+        inputOffset = restartPoint.inputOffset;
+        outputOffset = restartPoint.outputOffset;
+        atFlushPoint = false;
+    }
+
+    private void end() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    private static class RestartPoint {
+
+        final long inputOffset;
+        final long outputOffset;
+        final byte[] dictionary;
+
+        RestartPoint(final long inputOffset, final long outputOffset, final byte[] dictionary) {
+            this.inputOffset = inputOffset;
+            this.outputOffset = outputOffset;
+            this.dictionary = dictionary;
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + input + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(input, ((InflateSource)obj).input);
+            // The page, restart point and inflater fields are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(input);
+    }
+
+}
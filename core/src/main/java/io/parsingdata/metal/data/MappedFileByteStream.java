@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that reads from a file through memory-mapped windows.
+ * <p>
+ * The file is divided into aligned windows of <code>windowSize</code> bytes,
+ * each of which is mapped using {@link FileChannel#map} on first access. At
+ * most <code>maxWindows</code> mappings are retained, evicting the least
+ * recently used one when a new window is needed. This allows files larger
+ * than the 2 GB limit of a single {@link MappedByteBuffer} to be read and
+ * serves reads directly from the page cache, without a system call per read.
+ */
+public class MappedFileByteStream implements ByteStream, Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_WINDOWS = 16;
+
+    public final Path path;
+    public final int windowSize;
+    public final int maxWindows;
+    public final long size;
+
+    private final FileChannel channel;
+    private final Map<Long, MappedByteBuffer> windows;
+
+    public MappedFileByteStream(final Path path, final int windowSize, final int maxWindows) throws IOException {
+        this.path = checkNotNull(path, "path");
+        if (windowSize <= 0) { throw new IllegalArgumentException("Argument windowSize must be positive."); }
+        if (maxWindows <= 0) { throw new IllegalArgumentException("Argument maxWindows must be positive."); }
+        this.windowSize = windowSize;
+        this.maxWindows = maxWindows;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        windows = new LinkedHashMap<Long, MappedByteBuffer>(maxWindows + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, MappedByteBuffer> eldest) {
+                return size() > MappedFileByteStream.this.maxWindows;
+            }
+        };
+    }
+
+    public MappedFileByteStream(final Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS);
+    }
+
+    @Override
+    public int read(final long offset, final byte[] data) throws IOException {
+        if (offset < 0 || offset >= size) { return 0; }
+        final int toRead = (int)Math.min(data.length, size - offset);
+        int done = 0;
+        while (done < toRead) {
+            final long position = offset + done;
+            // Through ByteBuffer and Buffer, since MappedByteBuffer and ByteBuffer only override these methods from
+            // Java 9 on, and classes compiled against those overrides do not run on Java 8.
+            final ByteBuffer mapped = getWindow(position / windowSize);
+            final ByteBuffer window = mapped.duplicate();
+            ((Buffer)window).position((int)(position % windowSize));
+            final int chunk = Math.min(toRead - done, window.remaining());
+            window.get(data, done, chunk);
+            done += chunk;
+        }
+        return done;
+    }
+
+    @Override
+    public boolean isAvailable(final long offset, final int length) {
+        return offset >= 0 && length >= 0 && offset + length <= size;
+    }
+
+    private MappedByteBuffer getWindow(final long index) throws IOException {
+        final MappedByteBuffer window = windows.get(index);
+        if (window != null) { return window; }
+        final long start = index * windowSize;
+        final MappedByteBuffer newWindow = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+        windows.put(index, newWindow);
+        return newWindow;
+    }
+
+    @Override
+    public void close() throws IOException {
+        windows.clear();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + path + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(path, ((MappedFileByteStream)obj).path);
+            // The window fields are excluded from equals() and hashCode() because they do not affect the data read.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.Optional;
+
+import io.parsingdata.metal.expression.value.Value;
+
+/**
+ * An immutable index of the {@link ParseValue}s in a {@link ParseGraph} by
+ * name.
+ * <p>
+ * Every value is stored under its full name and under each partial name that
+ * results from omitting a leading part of its scope (see
+ * {@link ParseValue#matches(String)}). So the value "foo.bar.baz" can be
+ * found through "foo.bar.baz", "bar.baz" and "baz". For each name, the values
+ * are kept in the order in which they occur in the graph (bottom-up), wrapped
+ * as they are returned by a {@link io.parsingdata.metal.expression.value.ValueExpression}.
+ * <p>
+ * The index is an {@link ImmutableMap} that keeps the values of each name
+ * both in an {@link ImmutableVector} and in an {@link ImmutableList}. Adding
+ * a value copies only the path to the entries of its names, the last node of
+ * each of their vectors and prepends it to each of their lists. This allows
+ * every {@link ParseGraph} to keep its own index, sharing most of its
+ * structure with the index of the graph it was created from. The vectors give
+ * the number of values of a name and each value by its position without
+ * traversing the others, while the lists are returned by {@link #get(String)}
+ * as they are, without converting the vectors.
+ */
+public class NameIndex {
+
+    public static final NameIndex EMPTY = new NameIndex(new ImmutableMap<>());
+
+    private static final Values NO_VALUES = new Values(new ImmutableVector<>(), new ImmutableList<>());
+
+    private final ImmutableMap<String, Values> values;
+
+    private NameIndex(final ImmutableMap<String, Values> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param name Full or partial name of the values
+     * @return All values that match the provided name, bottom-up
+     */
+    public ImmutableList<Optional<Value>> get(final String name) {
+        return getValues(name).list;
+    }
+
+    /**
+     * @param name Full or partial name of the values
+     * @return All values that match the provided name, in the order in which they occur in the graph
+     */
+    public ImmutableVector<Optional<Value>> getVector(final String name) {
+        return getValues(name).vector;
+    }
+
+    private Values getValues(final String name) {
+        final Values result = values.get(checkNotNull(name, "name"));
+        return result == null ? NO_VALUES : result;
+    }
+
+    NameIndex add(final ParseValue value) {
+        final Optional<Value> wrapped = Optional.of(value);
+        ImmutableMap<String, Values> newValues = values.put(value.name, getValues(value.name).add(wrapped));
+        // The definition caches the partial names of the names it creates, so they are shared by all its values.
+        for (ImmutableList<String> names = value.definition.getPartialNames(value.name); !names.isEmpty(); names = names.tail) {
+            newValues = newValues.put(names.head, getValues(names.head).add(wrapped));
+        }
+        return new NameIndex(newValues);
+    }
+
+    /**
+     * @param index The index of the values to add, which occur after the values in this index
+     * @return An index containing the values of both indexes
+     */
+    NameIndex add(final NameIndex index) {
+        return new NameIndex(values.putAll(index.values, Values::add));
+    }
+
+    /**
+     * The values of a name, in the order in which they occur in the graph
+     * (<code>vector</code>) and bottom-up (<code>list</code>).
+     */
+    private static class Values {
+
+        final ImmutableVector<Optional<Value>> vector;
+        final ImmutableList<Optional<Value>> list;
+
+        Values(final ImmutableVector<Optional<Value>> vector, final ImmutableList<Optional<Value>> list) {
+            this.vector = vector;
+            this.list = list;
+        }
+
+        Values add(final Optional<Value> value) {
+            return new Values(vector.add(value), list.add(value));
+        }
+
+        Values add(final Values values) {
+            return new Values(vector.add(values.vector), list.add(values.list));
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.parsingdata.metal.data;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A {@link ColumnStore} that keeps its rows outside of the Java heap, so that
+ * they are not traversed by the garbage collector.
+ * <p>
+ * Rows are stored as fixed-size records in buffers of
+ * <code>rowsPerBuffer</code> rows each. The buffers are either direct
+ * {@link ByteBuffer}s or regions of a file that are mapped into memory. A
+ * mapped file is extended as rows are added and is not deleted by this
+ * class. Its mappings remain valid until the buffers are garbage collected.
+ * <p>
+ * To keep a large parse off the heap while it runs, pass the store to
+ * {@link ColumnarRecorder#create(ColumnStore)} together with an enabled
+ * {@link Pruner}, instead of copying the completed {@link ParseGraph}.
+ * <p>
+ * The rows of a file written by
+ * {@link ColumnarGraph#save(Path, io.parsingdata.metal.token.Token, java.util.function.Function)}
+ * are mapped read-only in the same layout, without copying them.
+ */
+public class OffHeapColumnStore extends ColumnStore {
+
+    public static final int DEFAULT_ROWS_PER_BUFFER = 1 << 16;
+
+    private static final int KIND_POSITION = 0;
+    private static final int OFFSET_POSITION = KIND_POSITION + Byte.BYTES;
+    private static final int INTS_POSITION = OFFSET_POSITION + Long.BYTES;
+    static final int ROW_SIZE = INTS_POSITION + INT_COLUMNS * Integer.BYTES;
+
+    public final Path file; // Null if the rows are stored in direct buffers.
+    public final int rowsPerBuffer;
+    private ByteBuffer[] buffers = new ByteBuffer[0];
+
+    public OffHeapColumnStore() {
+        this(DEFAULT_ROWS_PER_BUFFER);
+    }
+
+    public OffHeapColumnStore(final int rowsPerBuffer) {
+        file = null;
+        this.rowsPerBuffer = checkRowsPerBuffer(rowsPerBuffer);
+    }
+
+    public OffHeapColumnStore(final Path file) {
+        this(file, DEFAULT_ROWS_PER_BUFFER);
+    }
+
+    public OffHeapColumnStore(final Path file, final int rowsPerBuffer) {
+        this.file = checkNotNull(file, "file");
+        this.rowsPerBuffer = checkRowsPerBuffer(rowsPerBuffer);
+    }
+
+    private OffHeapColumnStore(final Path file, final ByteBuffer[] buffers) {
+        this.file = file;
+        this.rowsPerBuffer = DEFAULT_ROWS_PER_BUFFER;
+        this.buffers = buffers;
+    }
+
+    /**
+     * @param file The file containing the rows
+     * @param channel An open channel of the file
+     * @param position The position of the first row in the file
+     * @param rows The number of rows in the file
+     * @return A store of which the rows are mapped read-only from the file
+     * @throws IOException If the rows could not be mapped
+     */
+    static OffHeapColumnStore map(final Path file, final FileChannel channel, final long position, final int rows) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[(int)((rows + (long)DEFAULT_ROWS_PER_BUFFER - 1) / DEFAULT_ROWS_PER_BUFFER)];
+        for (int index = 0; index < buffers.length; index++) {
+            final int bufferRows = Math.min(DEFAULT_ROWS_PER_BUFFER, rows - index * DEFAULT_ROWS_PER_BUFFER);
+            buffers[index] = channel.map(READ_ONLY, position + (long)index * DEFAULT_ROWS_PER_BUFFER * ROW_SIZE, (long)bufferRows * ROW_SIZE);
+        }
+        return new OffHeapColumnStore(file, buffers);
+    }
+
+    private static int checkRowsPerBuffer(final int rowsPerBuffer) {
+        if (rowsPerBuffer <= 0 || rowsPerBuffer > Integer.MAX_VALUE / ROW_SIZE) { throw new IllegalArgumentException("Argument rowsPerBuffer must be positive and at most " + Integer.MAX_VALUE / ROW_SIZE + "."); }
+        return rowsPerBuffer;
+    }
+
+    @Override
+    void ensureCapacity(final int rows) {
+        final int bufferCount = (int)((rows + (long)rowsPerBuffer - 1) / rowsPerBuffer);
+        if (bufferCount <= buffers.length) { return; }
+        final int first = buffers.length;
+        buffers = Arrays.copyOf(buffers, bufferCount);
+        for (int index = first; index < bufferCount; index++) {
+            buffers[index] = allocate(index);
+        }
+    }
+
+    private ByteBuffer allocate(final int index) {
+        final int bufferSize = rowsPerBuffer * ROW_SIZE;
+        if (file == null) { return ByteBuffer.allocateDirect(bufferSize); }
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            return channel.map(READ_WRITE, (long)index * bufferSize, bufferSize);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer buffer(final int row) {
+        return buffers[row / rowsPerBuffer];
+    }
+
+    private int position(final int row, final int field) {
+        return (row % rowsPerBuffer) * ROW_SIZE + field;
+    }
+
+    @Override byte getKind(final int row) { return buffer(row).get(position(row, KIND_POSITION)); }
+    @Override void setKind(final int row, final byte kind) { buffer(row).put(position(row, KIND_POSITION), kind); }
+
+    @Override long getOffset(final int row) { return buffer(row).getLong(position(row, OFFSET_POSITION)); }
+    @Override void setOffset(final int row, final long offset) { buffer(row).putLong(position(row, OFFSET_POSITION), offset); }
+
+    @Override int getInt(final int row, final int column) { return buffer(row).getInt(position(row, INTS_POSITION + column * Integer.BYTES)); }
+    @Override void setInt(final int row, final int column, final int value) { buffer(row).putInt(position(row, INTS_POSITION + column * Integer.BYTES), value); }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + (file == null ? "direct" : file) + "," + rowsPerBuffer + ")";
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import io.parsingdata.metal.token.Token;
+
+/**
+ * An immutable index of the completed roots in a {@link ParseGraph} by
+ * offset.
+ * <p>
+ * A root is a {@link ParseValue} or a closed {@link ParseGraph} with a
+ * definition that differs from that of the graph containing it, so that it
+ * represents a complete parse of its definition. It is located at the offset
+ * and source of the value with the lowest offset in it (see
+ * {@link ParseGraph#getLowestOffsetValue()}).
+ * <p>
+ * Roots are keyed by offset only, since hashing a {@link Source} or a
+ * {@link Token} may require traversing all of its data. For each offset, the
+ * roots are kept in reverse order of completion.
+ */
+public class OffsetIndex {
+
+    public static final OffsetIndex EMPTY = new OffsetIndex(new ImmutableMap<>());
+
+    private static final ImmutableList<ParseItem> NO_ITEMS = new ImmutableList<>();
+
+    private final ImmutableMap<Long, ImmutableList<ParseItem>> items;
+
+    private OffsetIndex(final ImmutableMap<Long, ImmutableList<ParseItem>> items) {
+        this.items = items;
+    }
+
+    /**
+     * @param definition The definition of the root
+     * @param offset The offset of the root
+     * @param source The source of the root
+     * @return The most recently completed root with the provided definition at the provided location, or null if there is none
+     */
+    public ParseItem get(final Token definition, final long offset, final Source source) {
+        checkNotNull(definition, "definition");
+        checkNotNull(source, "source");
+        for (ImmutableList<ParseItem> list = getAll(offset); !list.isEmpty(); list = list.tail) {
+            if (list.head.getDefinition().equals(definition) && getLocation(list.head).slice.source.equals(source)) {
+                return list.head;
+            }
+        }
+        return null;
+    }
+
+    private ImmutableList<ParseItem> getAll(final long offset) {
+        final ImmutableList<ParseItem> result = items.get(offset);
+        return result == null ? NO_ITEMS : result;
+    }
+
+    OffsetIndex add(final ParseItem root) {
+        final ParseValue location = getLocation(root);
+        if (location == null) { return this; }
+        return new OffsetIndex(items.put(location.slice.offset, getAll(location.slice.offset).add(root)));
+    }
+
+    /**
+     * @param index The index of the roots to add, which have been completed after the roots in this index
+     * @return An index containing the roots of both indexes
+     */
+    OffsetIndex add(final OffsetIndex index) {
+        return new OffsetIndex(items.putAll(index.items, ImmutableList::add));
+    }
+
+    private static ParseValue getLocation(final ParseItem root) {
+        if (root.isValue()) { return root.asValue(); }
+        if (root.isGraph()) { return root.asGraph().getLowestOffsetValue(); }
+        return null;
+    }
+
+}
@@ -19,6 +19,8 @@ package io.parsingdata.metal.data;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -26,6 +28,18 @@ import io.parsingdata.metal.Util;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.token.Token;
 
+/**
+ * An immutable graph of the items that a format has parsed, which is the
+ * parse state of an {@link Environment}.
+ * <p>
+ * Items are added to the innermost open branch. Since every graph on the
+ * path to that branch refers to its child through <code>head</code>, adding
+ * an item creates a new node for each open branch, so it takes time
+ * proportional to the number of open branches, which is the nesting depth of
+ * the tokens being parsed and not the size of the graph. The indexes of
+ * those nodes are only computed when they are requested, so only the root
+ * updates its indexes on every item.
+ */
 public class ParseGraph implements ParseItem {
 
     public final ParseItem head;
@@ -39,56 +53,171 @@ public class ParseGraph implements ParseItem {
         @Override public String toString() { return "None"; }
     };
 
-    public static final ParseGraph EMPTY = new ParseGraph(NONE);
+    public static final ParseGraph EMPTY = new ParseGraph(NONE, NameIndex.EMPTY, OffsetIndex.EMPTY);
+
+    // Null until requested, for graphs that have only been created as a branch of another graph. Since
+    // expressions are evaluated on the root graph, this means adding a value to a branched graph only
+    // updates the indexes of the root instead of the indexes of all open branches.
+    private NameIndex names;
+    private OffsetIndex roots;
+
+    private final ParseValue lowestOffsetValue;
 
-    private ParseGraph(final Token definition) {
+    private ParseGraph(final Token definition, final NameIndex names, final OffsetIndex roots) {
         head = null;
         tail = null;
         branched = false;
         this.definition = checkNotNull(definition, "definition");
         size = 0;
+        this.names = names;
+        this.roots = roots;
+        lowestOffsetValue = null;
     }
 
-    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final boolean branched) {
+    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final boolean branched, final NameIndex names, final OffsetIndex roots) {
         this.head = checkNotNull(head, "head");
         this.tail = checkNotNull(tail, "tail");
         this.branched = branched;
         this.definition = checkNotNull(definition, "definition");
         size = tail.size + 1;
+        this.names = names;
+        this.roots = roots;
+        lowestOffsetValue = definition.isLocal() ? lowest(head.isValue() ? head.asValue() : head.isGraph() ? head.asGraph().lowestOffsetValue : null, tail.lowestOffsetValue) : null;
+    }
+
+    ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final boolean branched) {
+        this(head, tail, definition, branched, null, null);
     }
 
     // TODO: see ByItem, this constructor used to be private (#64)
     public ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition) {
-        this(head, tail, definition, false);
+        this(head, tail, definition, false, null, null);
+    }
+
+    static ParseGraph terminator(final Token definition) {
+        return new ParseGraph(definition, null, null);
+    }
+
+    private static ParseValue lowest(final ParseValue headValue, final ParseValue tailValue) {
+        if (headValue == null) { return tailValue; }
+        return tailValue == null || headValue.slice.offset <= tailValue.slice.offset ? headValue : tailValue;
     }
 
     public ParseGraph add(final ParseValue head) {
+        return add(head, !head.definition.equals(getOpenBranch().definition));
+    }
+
+    private ParseGraph add(final ParseValue head, final boolean root) {
+        final NameIndex newNames = names == null ? null : names.add(head);
+        final OffsetIndex newRoots = roots == null || !root ? roots : roots.add(head);
         if (branched) {
-            return new ParseGraph(this.head.asGraph().add(head), tail, definition, true);
+            return new ParseGraph(this.head.asGraph().add(head, root), tail, definition, true, newNames, newRoots);
         }
-        return new ParseGraph(head, this, definition);
+        return new ParseGraph(head, this, definition, false, newNames, newRoots);
     }
 
     public ParseGraph add(final ParseReference parseReference) {
         if (branched) {
-            return new ParseGraph(head.asGraph().add(parseReference), tail, definition, true);
+            return new ParseGraph(head.asGraph().add(parseReference), tail, definition, true, names, roots);
         }
-        return new ParseGraph(parseReference, this, definition);
+        return new ParseGraph(parseReference, this, definition, false, names, roots);
     }
 
     ParseGraph addBranch(final Token definition) {
         if (branched) {
-            return new ParseGraph(head.asGraph().addBranch(definition), tail, this.definition, true);
+            return new ParseGraph(head.asGraph().addBranch(definition), tail, this.definition, true, names, roots);
         }
-        return new ParseGraph(new ParseGraph(definition), this, this.definition, true);
+        return new ParseGraph(terminator(definition), this, this.definition, true, names, roots);
     }
 
     ParseGraph closeBranch() {
         if (!branched) { throw new IllegalStateException("Cannot close branch that is not open."); }
+        ParseGraph parent = this;
+        while (parent.head.asGraph().branched) {
+            parent = parent.head.asGraph();
+        }
+        final ParseGraph branch = parent.head.asGraph();
+        return closeBranch(branch, !branch.definition.equals(parent.definition));
+    }
+
+    private ParseGraph closeBranch(final ParseGraph branch, final boolean root) {
+        final OffsetIndex newRoots = roots == null || !root ? roots : roots.add(branch);
         if (head.asGraph().branched) {
-            return new ParseGraph(head.asGraph().closeBranch(), tail, definition, true);
+            return new ParseGraph(head.asGraph().closeBranch(branch, root), tail, definition, true, names, newRoots);
         }
-        return new ParseGraph(head, tail, definition, false);
+        return new ParseGraph(head, tail, definition, false, names, newRoots);
+    }
+
+    /**
+     * @param branch The graph to replace the innermost open branch with
+     * @return This graph with the innermost open branch replaced, of which the indexes are computed again when requested
+     */
+    ParseGraph replaceOpenBranch(final ParseGraph branch) {
+        if (!branched) { return branch; }
+        return new ParseGraph(head.asGraph().replaceOpenBranch(branch), tail, definition, true);
+    }
+
+    ParseGraph getOpenBranch() {
+        ParseGraph graph = this;
+        while (graph.branched) {
+            graph = graph.head.asGraph();
+        }
+        return graph;
+    }
+
+    /**
+     * @return The index of the values in this graph by name
+     */
+    public NameIndex getNames() {
+        if (names == null) {
+            // Computed bottom-up along the tail instead of recursively, so the length of a graph is not limited by the stack.
+            final Deque<ParseGraph> graphs = new ArrayDeque<>();
+            ParseGraph graph = this;
+            for (; graph.names == null && !graph.isEmpty(); graph = graph.tail) { graphs.push(graph); }
+            if (graph.names == null) { graph.names = NameIndex.EMPTY; }
+            while (!graphs.isEmpty()) {
+                graph = graphs.pop();
+                if (graph.head.isValue()) { graph.names = graph.tail.names.add(graph.head.asValue()); }
+                else if (graph.head.isGraph()) { graph.names = graph.tail.names.add(graph.head.asGraph().getNames()); }
+                else { graph.names = graph.tail.names; }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The index of the completed roots in this graph by offset
+     */
+    public OffsetIndex getRoots() {
+        if (roots == null) {
+            // Computed bottom-up along the tail instead of recursively, so the length of a graph is not limited by the stack.
+            final Deque<ParseGraph> graphs = new ArrayDeque<>();
+            ParseGraph graph = this;
+            for (; graph.roots == null && !graph.isEmpty(); graph = graph.tail) { graphs.push(graph); }
+            if (graph.roots == null) { graph.roots = OffsetIndex.EMPTY; }
+            while (!graphs.isEmpty()) {
+                graph = graphs.pop();
+                graph.roots = graph.addHeadRoots(graph.tail.roots);
+            }
+        }
+        return roots;
+    }
+
+    private OffsetIndex addHeadRoots(final OffsetIndex tailRoots) {
+        if (head.isValue()) { return head.getDefinition().equals(definition) ? tailRoots : tailRoots.add(head); }
+        if (head.isGraph()) {
+            final OffsetIndex withBranch = tailRoots.add(head.asGraph().getRoots());
+            // The open branch of a branched graph is not a completed root.
+            return branched || head.getDefinition().equals(definition) ? withBranch : withBranch.add(head);
+        }
+        return tailRoots;
+    }
+
+    /**
+     * @return The value with the lowest offset in this graph, not including values in non-local branches (such as those created by a {@link io.parsingdata.metal.token.Sub}), or null if there is none
+     */
+    public ParseValue getLowestOffsetValue() {
+        return lowestOffsetValue;
     }
 
     public boolean isEmpty() { return size == 0; }
@@ -97,15 +226,17 @@ public class ParseGraph implements ParseItem {
      * @return The first value (bottom-up) in this graph
      */
     public ParseValue current() {
-        if (isEmpty()) { return null; }
-        if (head.isValue()) {
-            return head.asValue();
+        for (ParseGraph graph = this; !graph.isEmpty(); graph = graph.tail) {
+            if (graph.head.isValue()) {
+                return graph.head.asValue();
+            }
+            if (graph.head.isGraph()) {
+                final ParseValue value = graph.head.asGraph().current();
+                if (value != null) { return value; }
+            }
+            // Ignore current if it's a reference (or an empty graph)
         }
-        if (head.isGraph()) {
-            final ParseValue value = head.asGraph().current();
-            if (value != null) { return value; }
-        }
-        return tail.current(); // Ignore current if it's a reference (or an empty graph)
+        return null;
     }
 
     public boolean isGraph() { return true; }
@@ -118,22 +249,45 @@ public class ParseGraph implements ParseItem {
         if (head == null) {
             return "graph(terminator:" + definition.getClass().getSimpleName() + ")";
         }
-        return "graph(" + head + ", " + tail + ", " + branched + ")";
+        final StringBuilder prefix = new StringBuilder();
+        final Deque<Boolean> branches = new ArrayDeque<>();
+        ParseGraph graph = this;
+        for (; graph != EMPTY && graph.head != null; graph = graph.tail) {
+            prefix.append("graph(").append(graph.head).append(", ");
+            branches.push(graph.branched);
+        }
+        prefix.append(graph);
+        while (!branches.isEmpty()) {
+            prefix.append(", ").append(branches.pop()).append(")");
+        }
+        return prefix.toString();
     }
 
     @Override
     public boolean equals(final Object obj) {
-        return Util.notNullAndSameClass(this, obj)
-            && Objects.equals(head, ((ParseGraph)obj).head)
-            && Objects.equals(tail, ((ParseGraph)obj).tail)
-            && Objects.equals(branched, ((ParseGraph)obj).branched)
-            && Objects.equals(definition, ((ParseGraph)obj).definition);
-            // The size field is excluded from equals() and hashCode() because it is cached data.
+        if (!Util.notNullAndSameClass(this, obj)) { return false; }
+        ParseGraph graph = this;
+        ParseGraph other = (ParseGraph)obj;
+        for (; graph != other; graph = graph.tail, other = other.tail) {
+            if (graph == null || other == null) { return false; }
+            if (!Objects.equals(graph.head, other.head)
+                || graph.branched != other.branched
+                || !Objects.equals(graph.definition, other.definition)) { return false; }
+        }
+        return true;
+        // The size, names, roots and lowestOffsetValue fields are excluded from equals() and hashCode() because they are cached data.
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(head, tail, branched, definition);
+        // Equal to Objects.hash(head, tail, branched, definition), computed bottom-up along the tail.
+        final Deque<ParseGraph> graphs = new ArrayDeque<>();
+        for (ParseGraph graph = this; graph != null; graph = graph.tail) { graphs.push(graph); }
+        Integer hash = null;
+        for (final ParseGraph graph : graphs) {
+            hash = Objects.hash(graph.head, hash, graph.branched, graph.definition);
+        }
+        return hash;
     }
 
 }
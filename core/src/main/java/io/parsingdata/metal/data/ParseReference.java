@@ -17,8 +17,7 @@
 package io.parsingdata.metal.data;
 
 import static io.parsingdata.metal.Util.checkNotNull;
-import static io.parsingdata.metal.data.selection.ByOffset.findItemAtOffset;
-import static io.parsingdata.metal.data.selection.ByToken.getAllRoots;
+import static io.parsingdata.metal.data.selection.ByOffset.findRootAtOffset;
 
 import java.util.Objects;
 
@@ -38,7 +37,7 @@ public class ParseReference implements ParseItem {
     }
 
     public ParseItem resolve(final ParseGraph root) {
-        return findItemAtOffset(getAllRoots(root, definition), location, source);
+        return findRootAtOffset(root, definition, location, source);
     }
 
     public boolean isReference() { return true; }
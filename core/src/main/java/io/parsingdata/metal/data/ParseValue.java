@@ -36,7 +36,18 @@ public class ParseValue extends Value implements ParseItem {
     }
 
     public boolean matches(final String name) {
-        return this.name.equals(name) || this.name.endsWith(Token.SEPARATOR + name);
+        return matches(this.name, name);
+    }
+
+    /**
+     * @param fullName The full name of a value
+     * @param name A full or partial name
+     * @return Whether <code>name</code> is equal to <code>fullName</code> or to a part of it that follows a separator
+     */
+    static boolean matches(final String fullName, final String name) {
+        if (fullName.equals(name)) { return true; }
+        final int separator = fullName.length() - name.length() - Token.SEPARATOR.length();
+        return separator >= 0 && fullName.startsWith(Token.SEPARATOR, separator) && fullName.endsWith(name);
     }
 
     public boolean isValue() { return true; }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.parsingdata.metal.data.callback.PruneCallback;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.reference.First;
+import io.parsingdata.metal.expression.value.reference.Last;
+import io.parsingdata.metal.expression.value.reference.NameRef;
+import io.parsingdata.metal.expression.value.reference.Self;
+import io.parsingdata.metal.token.Sub;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.token.TokenRef;
+
+/**
+ * Removes closed branches that no expression of a format can refer to
+ * anymore from the parse state, so that formats consisting of many
+ * independent records can be parsed in constant memory.
+ * <p>
+ * A pruner is created from an analysis of the tokens and expressions that are
+ * reachable from a format through public fields, which determines the values
+ * that can still be observed after the branch containing them has been
+ * closed:
+ * <ul>
+ * <li>Values that match a {@link NameRef} or a
+ * {@link io.parsingdata.metal.expression.value.reference.TokenRef}. Only the
+ * first of these is observed when the reference is the operand of a
+ * {@link First} and only the last when it is the operand of a
+ * {@link Last}.</li>
+ * <li>The last value, if the format contains a {@link Self} or a
+ * {@link ComparisonExpression} without a value.</li>
+ * <li>Items with the definition of a {@link Sub}'s token, since a Sub looks
+ * up completed roots, and items with a definition named by a
+ * {@link TokenRef}.</li>
+ * </ul>
+ * Tokens and expressions that are not part of this library may refer to the
+ * parse state in any other way, so nothing is pruned for formats that
+ * contain them. Functions passed to the library are opaque but are not
+ * considered to observe the parse state: the <code>reducer</code> of a
+ * {@link io.parsingdata.metal.expression.value.Fold} (such as a method
+ * reference or a {@link io.parsingdata.metal.expression.value.Reducer}) is
+ * assumed to only combine the expressions passed to it, and the
+ * <code>function</code> of a
+ * {@link io.parsingdata.metal.expression.value.Transform} only receives the
+ * values of its operand. A computation on values that is not part of this
+ * library, such as a checksum, should therefore be implemented as a Transform
+ * instead of as a subclass of
+ * {@link io.parsingdata.metal.expression.value.UnaryValueExpression}.
+ * <p>
+ * When a branch other than a branch of the root is closed, it is removed if
+ * it contains no observable value.
+ * Otherwise, the closed branch preceding it in the same graph is removed if
+ * all of its observable values have been superseded. Removed branches are
+ * passed to the callback first, which may include branches of alternatives
+ * that fail afterwards.
+ */
+public class Pruner {
+
+    public static final Pruner NONE = new Pruner(null, null);
+
+    private enum Usage { ALL, FIRST, LAST }
+
+    public final PruneCallback callback;
+    public final boolean enabled;
+
+    private final String[] allNames;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final Token[] allDefinitions;
+    private final Token[] lastDefinitions;
+    private final Set<String> definitionNames;
+    private final boolean lastValue;
+
+    private Pruner(final Analysis analysis, final PruneCallback callback) {
+        this.callback = callback;
+        enabled = analysis != null && !analysis.unknown;
+        final Analysis result = enabled ? analysis : new Analysis();
+        allNames = result.allNames.toArray(new String[0]);
+        firstNames = result.firstNames.toArray(new String[0]);
+        lastNames = result.lastNames.toArray(new String[0]);
+        allDefinitions = result.allDefinitions.toArray(new Token[0]);
+        lastDefinitions = result.lastDefinitions.toArray(new Token[0]);
+        definitionNames = result.definitionNames;
+        lastValue = result.lastValue;
+    }
+
+    /**
+     * @param format The token that is parsed
+     * @param callback The callback that receives the removed branches
+     * @return A pruner for the provided format, which is not enabled if the format contains tokens or expressions that are not part of this library
+     */
+    public static Pruner create(final Token format, final PruneCallback callback) {
+        final Analysis analysis = new Analysis();
+        analysis.add(checkNotNull(format, "format"));
+        return new Pruner(analysis, checkNotNull(callback, "callback"));
+    }
+
+    /**
+     * @param order The parse state of which to close the open branch
+     * @return The parse state with the branch closed, without the branches that can no longer be observed
+     */
+    ParseGraph closeBranch(final ParseGraph order) {
+        final ParseGraph closed = order.closeBranch();
+        // Branches of the root are kept, since they contain the result of parsing the format.
+        if (!enabled || !closed.branched) { return closed; }
+        final ParseGraph parent = closed.getOpenBranch();
+        final ParseGraph branch = parent.head.asGraph();
+        final Summary summary = new Summary(branch);
+        if (!summary.isObservable(closed, null)) {
+            callback.handle(branch);
+            return closed.replaceOpenBranch(parent.tail);
+        }
+        if (parent.tail.isEmpty() || !parent.tail.head.isGraph()) { return closed; }
+        final ParseGraph previous = parent.tail.head.asGraph();
+        if (!new Summary(previous).isObservable(closed, summary)) {
+            callback.handle(previous);
+            return closed.replaceOpenBranch(new ParseGraph(branch, parent.tail.tail, parent.definition, false));
+        }
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + (enabled ? "enabled" : "disabled") + ")";
+    }
+
+    /**
+     * The observable values in a closed branch.
+     */
+    private class Summary {
+
+        boolean referred; // Whether an item is observed regardless of the items that follow it.
+        boolean value;
+        final long[] firstNameCounts = new long[firstNames.length];
+        final boolean[] lastNameMatches = new boolean[lastNames.length];
+        final boolean[] lastDefinitionMatches = new boolean[lastDefinitions.length];
+
+        Summary(final ParseGraph graph) {
+            final Deque<ParseGraph> graphs = new ArrayDeque<>();
+            graphs.push(graph);
+            while (!graphs.isEmpty() && !referred) {
+                for (ParseGraph current = graphs.pop(); !current.isEmpty() && !referred; current = current.tail) {
+                    add(current.head);
+                    if (current.head.isGraph()) { graphs.push(current.head.asGraph()); }
+                }
+            }
+        }
+
+        private void add(final ParseItem item) {
+            final Token definition = item.getDefinition();
+            referred |= definitionNames.contains(definition.name) || indexOf(allDefinitions, definition) >= 0;
+            if (!item.isValue()) { return; }
+            final ParseValue parseValue = item.asValue();
+            value = true;
+            for (final String name : allNames) {
+                referred |= parseValue.matches(name);
+            }
+            for (int index = 0; index < firstNames.length; index++) {
+                if (parseValue.matches(firstNames[index])) { firstNameCounts[index]++; }
+            }
+            for (int index = 0; index < lastNames.length; index++) {
+                lastNameMatches[index] |= parseValue.matches(lastNames[index]);
+            }
+            final int lastDefinition = indexOf(lastDefinitions, definition);
+            if (lastDefinition >= 0) { lastDefinitionMatches[lastDefinition] = true; }
+        }
+
+        /**
+         * @param order The parse state, containing the branch of this summary
+         * @param later The summary of the branch that follows the branch of this summary, or null if there is none
+         * @return Whether the branch of this summary contains a value that can still be observed
+         */
+        boolean isObservable(final ParseGraph order, final Summary later) {
+            if (referred) { return true; }
+            if (lastValue && value && (later == null || !later.value)) { return true; }
+            for (int index = 0; index < firstNames.length; index++) {
+                // The branch contains the first value with a name if all other values with the name follow it.
+                final long count = firstNameCounts[index] + (later == null ? 0 : later.firstNameCounts[index]);
+                if (firstNameCounts[index] > 0 && count == order.getNames().getVector(firstNames[index]).size) { return true; }
+            }
+            for (int index = 0; index < lastNames.length; index++) {
+                if (lastNameMatches[index] && (later == null || !later.lastNameMatches[index])) { return true; }
+            }
+            for (int index = 0; index < lastDefinitions.length; index++) {
+                if (lastDefinitionMatches[index] && (later == null || !later.lastDefinitionMatches[index])) { return true; }
+            }
+            return false;
+        }
+
+    }
+
+    private static int indexOf(final Token[] definitions, final Token definition) {
+        for (int index = 0; index < definitions.length; index++) {
+            if (definitions[index] == definition || definitions[index].equals(definition)) { return index; }
+        }
+        return -1;
+    }
+
+    /**
+     * @param type The class to check
+     * @return Whether <code>type</code> is a token or expression of this library, of which all instance fields that refer to tokens and expressions are public
+     */
+    static boolean isPartOfLibrary(final Class<?> type) {
+        return !type.isSynthetic() && (type.getName().startsWith("io.parsingdata.metal.token.") || type.getName().startsWith("io.parsingdata.metal.expression."));
+    }
+
+    /**
+     * Collects the references to the parse state in a format.
+     */
+    private static class Analysis {
+
+        final Set<String> allNames = new LinkedHashSet<>();
+        final Set<String> firstNames = new LinkedHashSet<>();
+        final Set<String> lastNames = new LinkedHashSet<>();
+        final List<Token> allDefinitions = new ArrayList<>();
+        final List<Token> lastDefinitions = new ArrayList<>();
+        final Set<String> definitionNames = new LinkedHashSet<>();
+        boolean lastValue;
+        boolean unknown;
+
+        void add(final Token format) {
+            final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Deque<Object> objects = new ArrayDeque<>();
+            final Deque<Usage> usages = new ArrayDeque<>();
+            objects.push(format);
+            usages.push(Usage.ALL);
+            while (!objects.isEmpty()) {
+                final Object object = objects.pop();
+                final Usage usage = usages.pop();
+                if (object instanceof NameRef) {
+                    (usage == Usage.FIRST ? firstNames : usage == Usage.LAST ? lastNames : allNames).add(((NameRef)object).name);
+                    continue;
+                }
+                if (object instanceof io.parsingdata.metal.expression.value.reference.TokenRef) {
+                    final Token definition = ((io.parsingdata.metal.expression.value.reference.TokenRef)object).definition;
+                    (usage == Usage.LAST ? lastDefinitions : allDefinitions).add(definition);
+                    objects.push(definition);
+                    usages.push(Usage.ALL);
+                    continue;
+                }
+                if (!visited.add(object)) { continue; }
+                if (object instanceof ImmutableList) {
+                    for (ImmutableList<?> list = (ImmutableList<?>)object; !list.isEmpty(); list = list.tail) {
+                        objects.push(list.head);
+                        usages.push(Usage.ALL);
+                    }
+                    continue;
+                }
+                // Other objects, such as the reducer of a Fold and the function of a Transform, are opaque.
+                if (!(object instanceof Token) && !(object instanceof Expression) && !(object instanceof ValueExpression)) { continue; }
+                if (!isPartOfLibrary(object.getClass())) {
+                    unknown = true;
+                    return;
+                }
+                if (object instanceof TokenRef) { definitionNames.add(((TokenRef)object).referenceName); }
+                if (object instanceof Sub && !(((Sub)object).token instanceof TokenRef)) { allDefinitions.add(((Sub)object).token); }
+                if (object instanceof Self || object instanceof ComparisonExpression && ((ComparisonExpression)object).value == null) { lastValue = true; }
+                final Usage operandUsage = object instanceof Last ? Usage.LAST : object instanceof First ? Usage.FIRST : Usage.ALL;
+                for (final Field field : object.getClass().getFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) { continue; }
+                    try {
+                        final Object value = field.get(object);
+                        if (value != null) {
+                            objects.push(value);
+                            usages.push(operandUsage);
+                        }
+                    } catch (final IllegalAccessException e) {
+                        unknown = true;
+                        return;
+                    }
+                }
+            }
+        }
+
+    }
+
+}
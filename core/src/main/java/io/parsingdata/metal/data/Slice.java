@@ -18,15 +18,34 @@ package io.parsingdata.metal.data;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import io.parsingdata.metal.Util;
 
+/**
+ * A range of <code>size</code> bytes at <code>offset</code> in a
+ * {@link Source}.
+ * <p>
+ * A Slice is either created with its data, or lazily, in which case only the
+ * location of the data is recorded and it is read from <code>source</code>
+ * each time it is requested. Since lazily created slices do not retain their
+ * data, large values (such as compressed payloads) do not occupy the heap
+ * while they are not in use.
+ * <p>
+ * The data is available as a copy through {@link #getData()}, or as a
+ * read-only view through {@link #getBuffer()}, which avoids the copy. If the
+ * data consists of multiple parts, such as the result of a concatenation
+ * (see {@link ConcatenatedSource}), {@link #getBuffers()} returns a view of
+ * each part, so that they can be processed without combining them.
+ */
 public class Slice {
 
     public final Source source;
     public final long offset;
-    private final byte[] data; // Private because array content is mutable.
+    private final byte[] data; // Private because array content is mutable. Null if the data is read lazily.
     public final int size;
 
     public Slice(final Source source, final long offset, final byte[] data) {
@@ -36,8 +55,57 @@ public class Slice {
         this.size = data.length;
     }
 
+    public Slice(final Source source, final long offset, final int size) {
+        this.source = checkNotNull(source, "source");
+        this.offset = offset;
+        this.data = null;
+        if (size < 0) { throw new IllegalArgumentException("Argument size may not be negative."); }
+        this.size = size;
+    }
+
     public byte[] getData() {
-        return data.clone();
+        if (data != null) { return data.clone(); }
+        try {
+            return source.getData(offset, size);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public ByteBuffer getBuffer() {
+        return getBuffer(0, size);
+    }
+
+    /**
+     * @return This slice if it holds its data, otherwise a slice with the same source and offset that holds the data read from the source
+     */
+    public Slice materialize() {
+        return data != null ? this : new Slice(source, offset, getData());
+    }
+
+    ByteBuffer getBuffer(final long position, final int length) {
+        if (data != null) { return ByteBuffer.wrap(data, (int)position, length).slice().asReadOnlyBuffer(); }
+        try {
+            return source.getBuffer(offset + position, length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Read-only views of the consecutive parts of the data
+     */
+    public ByteBuffer[] getBuffers() {
+        return getBuffers(0, size);
+    }
+
+    ByteBuffer[] getBuffers(final long position, final int length) {
+        if (data != null) { return new ByteBuffer[] { getBuffer(position, length) }; }
+        try {
+            return source.getBuffers(offset + position, length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
@@ -17,14 +17,54 @@
 package io.parsingdata.metal.data;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class Source {
 
     public Slice slice(final long offset, final int size) throws IOException {
-        final byte[] data = getData(offset, size);
-        return new Slice(this, offset, data);
+        if (isAvailable(offset, size)) {
+            return new Slice(this, offset, size);
+        }
+        return new Slice(this, offset, getData(offset, size));
     }
 
     protected abstract byte[] getData(long offset, int size) throws IOException;
 
+    /**
+     * Determines whether a slice is created lazily (see {@link Slice}). Only
+     * sources that can determine this without reading the data should
+     * override this method, since a lazy slice reads its data again on
+     * every access.
+     *
+     * @param offset The offset of the first byte
+     * @param size The amount of bytes
+     * @return Whether <code>size</code> bytes are available at <code>offset</code>, or false if this is unknown
+     */
+    protected boolean isAvailable(final long offset, final int size) throws IOException {
+        return false;
+    }
+
+    /**
+     * Determines whether the data of values of this source is retained when
+     * they are stored without their data, such as in a {@link ColumnarGraph}.
+     * Unlike {@link #isAvailable(long, int)}, this does not determine whether
+     * slices are created lazily.
+     *
+     * @return Whether data that has been read can be read again
+     */
+    protected boolean isRereadable() {
+        return true;
+    }
+
+    protected ByteBuffer getBuffer(final long offset, final int size) throws IOException {
+        return ByteBuffer.wrap(getData(offset, size)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return The same data as {@link #getBuffer(long, int)}, as consecutive parts that can be read without copying them into a single buffer
+     */
+    protected ByteBuffer[] getBuffers(final long offset, final int size) throws IOException {
+        return new ByteBuffer[] { getBuffer(offset, size) };
+    }
+
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that reads forward from a non-seekable input, such as
+ * a pipe, a socket or standard input.
+ * <p>
+ * Data read from <code>input</code> is retained in a ring buffer of
+ * <code>bufferSize</code> bytes, so that reads may go back (for instance to
+ * backtrack after a failing alternative in a Cho) as long as the data is
+ * still in the buffer. A read before the start of the retained data fails
+ * with an {@link IOException} that states the retained range. Reads beyond
+ * the data read so far consume <code>input</code> until the requested data
+ * is available, discarding the oldest data in the buffer.
+ * <p>
+ * Since the data is not retained, slices on this stream are always created
+ * with their data (see {@link #isAvailable(long, int)}), which means values
+ * that have been parsed remain available after their data is discarded.
+ * <p>
+ * The <code>input</code> must be a blocking channel: a read that returns no
+ * data before the end of the input fails with an {@link IOException},
+ * instead of being retried until data arrives.
+ */
+public class StreamingByteStream implements ByteStream, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    public final ReadableByteChannel input;
+    public final int bufferSize;
+
+    private final byte[] buffer;
+    private long start;
+    private long end;
+    private boolean endOfInput;
+
+    public StreamingByteStream(final ReadableByteChannel input, final int bufferSize) {
+        this.input = checkNotNull(input, "input");
+        if (input instanceof SelectableChannel && !((SelectableChannel)input).isBlocking()) { throw new IllegalArgumentException("Argument input must be a blocking channel."); }
+        if (bufferSize <= 0) { throw new IllegalArgumentException("Argument bufferSize must be positive."); }
+        this.bufferSize = bufferSize;
+        buffer = new byte[bufferSize];
+    }
+
+    public StreamingByteStream(final ReadableByteChannel input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingByteStream(final InputStream input, final int bufferSize) {
+        this(Channels.newChannel(checkNotNull(input, "input")), bufferSize);
+    }
+
+    public StreamingByteStream(final InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public int read(final long offset, final byte[] data) throws IOException {
+        if (offset < 0) { return 0; }
+        if (offset < start) {
+            throw new IOException("Data at offset " + offset + " is no longer retained (retained data starts at offset " + start + ", buffer size is " + bufferSize + ").");
+        }
+        int done = 0;
+        while (done < data.length) {
+            final long position = offset + done;
+            if (position >= end) {
+                if (!fill()) { break; }
+                continue;
+            }
+            final int index = (int)(position % bufferSize);
+            final int chunk = (int)Math.min(Math.min(data.length - done, end - position), bufferSize - index);
+            System.arraycopy(buffer, index, data, done, chunk);
+            done += chunk;
+        }
+        return done;
+    }
+
+    /**
+     * Always returns false, since data of this stream can not be read again
+     * once it is discarded from the buffer. This makes
+     * {@link Source#slice(long, int)} create slices with their data.
+     *
+     * @param offset The offset of the first byte
+     * @param length The amount of bytes
+     * @return false
+     */
+    @Override
+    public boolean isAvailable(final long offset, final int length) {
+        return false;
+    }
+
+    /**
+     * Always returns false, since data of this stream can not be read again
+     * once it is discarded from the buffer.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isRereadable() {
+        return false;
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfInput) { return false; }
+        final int index = (int)(end % bufferSize);
+        final int read = input.read(ByteBuffer.wrap(buffer, index, bufferSize - index));
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        if (read == 0) {
+            // Only a non-blocking channel returns without data, which would make read() retry without progress.
+            throw new IOException("Input " + input + " returned no data before its end, so it is not a blocking channel.");
+        }
+        end += read;
+        start = Math.max(start, end - bufferSize);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + input + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(input, ((StreamingByteStream)obj).input);
+            // The buffer fields are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(input);
+    }
+
+}
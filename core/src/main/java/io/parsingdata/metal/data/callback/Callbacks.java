@@ -54,11 +54,11 @@ public class Callbacks {
     }
 
     private void handleCallbacks(final ImmutableList<TokenCallback> callbacks, final Token token, final Environment before, final Optional<Environment> after) {
-        if (callbacks.isEmpty()) { return; }
-        if (callbacks.head.token.equals(token)) {
-            callbacks.head.callback.handle(token, before, after);
+        for (ImmutableList<TokenCallback> current = callbacks; !current.isEmpty(); current = current.tail) {
+            if (current.head.token.equals(token)) {
+                current.head.callback.handle(token, before, after);
+            }
         }
-        handleCallbacks(callbacks.tail, token, before, after);
     }
 
     @Override
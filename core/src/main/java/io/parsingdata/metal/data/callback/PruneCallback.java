@@ -0,0 +1,28 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data.callback;
+
+import io.parsingdata.metal.data.ParseGraph;
+
+public interface PruneCallback {
+
+    /**
+     * @param graph A closed branch that is removed from the parse state, because no expression can refer to it anymore
+     */
+    void handle(ParseGraph graph);
+
+}
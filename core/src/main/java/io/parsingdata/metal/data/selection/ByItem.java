@@ -19,6 +19,9 @@ package io.parsingdata.metal.data.selection;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.data.ParseGraph.EMPTY;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.ParseItem;
 
@@ -33,15 +36,16 @@ public final class ByItem {
      */
     public static ParseGraph getGraphAfter(final ParseGraph graph, final ParseItem lastHead) {
         checkNotNull(graph, "graph");
-        return getGraphAfterRecursive(graph, lastHead);
-    }
-
-    private static ParseGraph getGraphAfterRecursive(final ParseGraph graph, final ParseItem lastHead) {
-        if (graph.isEmpty()) { return EMPTY; }
-        final ParseItem head = graph.head;
-        if (head == lastHead) { return EMPTY; }
-        // TODO: How can we do this without calling the (previously private) constructor? (#64)
-        return new ParseGraph(head, getGraphAfter(graph.tail, lastHead), graph.definition);
+        final Deque<ParseGraph> graphs = new ArrayDeque<>();
+        for (ParseGraph current = graph; !current.isEmpty() && current.head != lastHead; current = current.tail) {
+            graphs.push(current);
+        }
+        ParseGraph result = EMPTY;
+        for (final ParseGraph current : graphs) {
+            // TODO: How can we do this without calling the (previously private) constructor? (#64)
+            result = new ParseGraph(current.head, result, current.definition);
+        }
+        return result;
     }
 
 }
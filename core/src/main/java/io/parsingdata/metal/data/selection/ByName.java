@@ -17,10 +17,13 @@
 package io.parsingdata.metal.data.selection;
 
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
+
+import java.util.Optional;
 
 import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ImmutableVector;
 import io.parsingdata.metal.data.ParseGraph;
-import io.parsingdata.metal.data.ParseItem;
 import io.parsingdata.metal.data.ParseValue;
 import io.parsingdata.metal.expression.value.Value;
 
@@ -35,17 +38,9 @@ public final class ByName {
      */
     public static ParseValue getValue(final ParseGraph graph, final String name) {
         checkNotNull(graph, "graph");
-        checkNotNull(name, "name");
-        if (graph.isEmpty()) { return null; }
-        final ParseItem head = graph.head;
-        if (head.isValue() && head.asValue().matches(name)) {
-            return head.asValue();
-        }
-        if (head.isGraph()) {
-            final ParseValue value = getValue(head.asGraph(), name);
-            if (value != null) { return value; }
-        }
-        return getValue(graph.tail, name);
+        final ImmutableVector<Optional<Value>> values = graph.getNames().getVector(name);
+        // The name index of a graph only contains ParseValues.
+        return values.isEmpty() ? null : (ParseValue)values.get(values.size - 1).get();
     }
 
     /**
@@ -55,37 +50,32 @@ public final class ByName {
      */
     public static ImmutableList<Value> getAllValues(final ParseGraph graph, final String name) {
         checkNotNull(graph, "graph");
-        checkNotNull(name, "name");
-        return getAllValuesRecursive(graph, name);
+        return unwrap(graph.getNames().getVector(name));
     }
 
-    private static ImmutableList<Value> getAllValuesRecursive(final ParseGraph graph, final String name) {
-        if (graph.isEmpty()) { return new ImmutableList<>(); }
-        final ImmutableList<Value> tailResults = getAllValuesRecursive(graph.tail, name);
-        final ParseItem head = graph.head;
-        if (head.isValue() && head.asValue().matches(name)) {
-            return tailResults.add(head.asValue());
+    private static ImmutableList<Value> unwrap(final ImmutableVector<Optional<Value>> values) {
+        ImmutableList<Value> result = new ImmutableList<>();
+        for (long index = 0; index < values.size; index++) {
+            result = result.add(values.get(index).get());
         }
-        if (head.isGraph()) {
-            return tailResults.add(getAllValuesRecursive(head.asGraph(), name));
-        }
-        return tailResults;
+        return result;
     }
 
     public static ParseValue get(final ImmutableList<ParseValue> list, final String name) {
-        if (list.isEmpty()) { return null; }
-        if (list.head.matches(name)) { return list.head; }
-        else {
-            return get(list.tail, name);
+        for (ImmutableList<ParseValue> current = list; !current.isEmpty(); current = current.tail) {
+            if (current.head.matches(name)) { return current.head; }
         }
+        return null;
     }
 
     public static ImmutableList<ParseValue> getAll(final ImmutableList<ParseValue> list, final String name) {
-        if (list.isEmpty()) { return list; }
-        final ImmutableList<ParseValue> tailList = getAll(list.tail, name);
-        if (list.head.matches(name)) {
-            return tailList.add(list.head);
-        } else { return tailList; }
+        ImmutableList<ParseValue> result = new ImmutableList<>();
+        for (ImmutableList<ParseValue> current = reverse(list); !current.isEmpty(); current = current.tail) {
+            if (current.head.matches(name)) {
+                result = result.add(current.head);
+            }
+        }
+        return result;
     }
 
 }
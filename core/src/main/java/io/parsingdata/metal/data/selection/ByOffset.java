@@ -17,7 +17,6 @@
 package io.parsingdata.metal.data.selection;
 
 import static io.parsingdata.metal.Util.checkNotNull;
-import static io.parsingdata.metal.data.selection.ByToken.getAllRoots;
 
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseGraph;
@@ -31,35 +30,51 @@ public final class ByOffset {
     private ByOffset() {}
 
     public static boolean hasRootAtOffset(final ParseGraph graph, final Token definition, final long offset, final Source source) {
-        return findItemAtOffset(getAllRoots(graph, definition), offset, source) != null;
+        return findRootAtOffset(graph, definition, offset, source) != null;
+    }
+
+    /**
+     * @param graph The graph to search
+     * @param definition The definition of the root
+     * @param offset The offset of the root
+     * @param source The source of the root
+     * @return The root with the provided definition at the provided location in the provided graph, or null if there is none
+     */
+    public static ParseItem findRootAtOffset(final ParseGraph graph, final Token definition, final long offset, final Source source) {
+        checkNotNull(graph, "graph");
+        final ParseItem root = graph.getRoots().get(definition, offset, source);
+        if (root != null) { return root; }
+        return findOpenRootAtOffset(graph, null, definition, offset, source);
+    }
+
+    private static ParseItem findOpenRootAtOffset(final ParseGraph graph, final Token parentDefinition, final Token definition, final long offset, final Source source) {
+        Token currentParentDefinition = parentDefinition;
+        for (ParseGraph current = graph; ; current = current.head.asGraph()) {
+            if (current.definition.equals(definition) && (currentParentDefinition == null || !currentParentDefinition.equals(definition))) {
+                final ParseValue value = current.getLowestOffsetValue();
+                if (value != null && matchesLocation(value, offset, source)) { return current; }
+            }
+            if (!current.branched) { return null; }
+            currentParentDefinition = current.definition;
+        }
     }
 
     public static ParseItem findItemAtOffset(final ImmutableList<ParseItem> items, final long offset, final Source source) {
         checkNotNull(items, "items");
         checkNotNull(source, "source");
-        if (items.isEmpty()) { return null; }
-        final ParseItem head = items.head;
-        if (head.isValue() && matchesLocation(head.asValue(), offset, source)) { return head; }
-        if (head.isGraph()) {
-            final ParseValue value = getLowestOffsetValue(head.asGraph(), null);
-            if (value != null && matchesLocation(value, offset, source)) { return head; }
+        for (ImmutableList<ParseItem> current = items; !current.isEmpty(); current = current.tail) {
+            final ParseItem head = current.head;
+            if (head.isValue() && matchesLocation(head.asValue(), offset, source)) { return head; }
+            if (head.isGraph()) {
+                final ParseValue value = head.asGraph().getLowestOffsetValue();
+                if (value != null && matchesLocation(value, offset, source)) { return head; }
+            }
         }
-        return findItemAtOffset(items.tail, offset, source);
+        return null;
     }
 
     private static boolean matchesLocation(final ParseValue value, final long offset, final Source source) {
         return value.slice.offset == offset && value.slice.source.equals(source);
     }
 
-    private static ParseValue getLowestOffsetValue(final ParseGraph graph, final ParseValue lowest) {
-        if (graph.isEmpty() || !graph.getDefinition().isLocal()) { return lowest; }
-        if (graph.head.isValue()) {
-            return getLowestOffsetValue(graph.tail, lowest == null || lowest.slice.offset > graph.head.asValue().slice.offset ? graph.head.asValue() : lowest);
-        }
-        if (graph.head.isGraph()) {
-            return getLowestOffsetValue(graph.tail, getLowestOffsetValue(graph.head.asGraph(), lowest));
-        }
-        return getLowestOffsetValue(graph.tail, lowest);
-    }
-
 }
@@ -18,6 +18,9 @@ package io.parsingdata.metal.data.selection;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.ParseItem;
@@ -31,36 +34,40 @@ public final class ByToken {
     public static ParseItem get(final ParseGraph graph, final Token definition) {
         checkNotNull(graph, "graph");
         checkNotNull(definition, "definition");
-        if (graph.definition.equals(definition)) { return graph; }
-        if (graph.isEmpty()) { return null; }
-        final ParseItem head = graph.head;
-        if (head.isValue() && head.asValue().definition.equals(definition)) { return head; }
-        if (head.isGraph()) {
-            final ParseItem item = get(head.asGraph(), definition);
-            if (item != null) { return item; }
+        for (ParseGraph current = graph; ; current = current.tail) {
+            if (current.definition.equals(definition)) { return current; }
+            if (current.isEmpty()) { return null; }
+            final ParseItem head = current.head;
+            if (head.isValue() && head.asValue().definition.equals(definition)) { return head; }
+            if (head.isGraph()) {
+                final ParseItem item = get(head.asGraph(), definition);
+                if (item != null) { return item; }
+            }
         }
-        return get(graph.tail, definition);
     }
 
     public static ImmutableList<ParseItem> getAll(final ParseGraph graph, final Token definition) {
         checkNotNull(graph, "graph");
         checkNotNull(definition, "definition");
-        return getAllRecursive(graph, definition);
+        return getAllRecursive(graph, definition, new ImmutableList<>());
     }
 
-    private static ImmutableList<ParseItem> getAllRecursive(final ParseGraph graph, final Token definition) {
-        if (graph.isEmpty()) { return new ImmutableList<>(); }
-        final ImmutableList<ParseItem> tailResults = getAllRecursive(graph.tail, definition);
-        final ImmutableList<ParseItem> results = graph.definition.equals(definition) ? tailResults.add(graph) : tailResults;
-        final ParseItem head = graph.head;
-        if (head.isValue() && head.asValue().definition.equals(definition)) {
-            return results.add(head);
-        }
-        if (head.isReference() && head.asReference().definition.equals(definition)) {
-            return results.add(head);
-        }
-        if (head.isGraph()) {
-            return results.add(getAllRecursive(head.asGraph(), definition));
+    private static ImmutableList<ParseItem> getAllRecursive(final ParseGraph graph, final Token definition, final ImmutableList<ParseItem> below) {
+        ImmutableList<ParseItem> results = below;
+        for (final ParseGraph current : fromBottom(graph)) {
+            if (current.definition.equals(definition)) {
+                results = results.add(current);
+            }
+            final ParseItem head = current.head;
+            if (head.isValue() && head.asValue().definition.equals(definition)) {
+                results = results.add(head);
+            }
+            if (head.isReference() && head.asReference().definition.equals(definition)) {
+                results = results.add(head);
+            }
+            if (head.isGraph()) {
+                results = getAllRecursive(head.asGraph(), definition, results);
+            }
         }
         return results;
     }
@@ -68,38 +75,60 @@ public final class ByToken {
     public static ImmutableList<Value> getAllValues(final ParseGraph graph, final Token definition) {
         checkNotNull(graph, "graph");
         checkNotNull(definition, "definition");
-        return getAllValuesRecursive(graph, definition);
+        return getAllValuesRecursive(graph, definition, new ImmutableList<>());
     }
 
-    private static ImmutableList<Value> getAllValuesRecursive(final ParseGraph graph, final Token definition) {
-        if (graph.isEmpty()) { return new ImmutableList<>(); }
-        final ImmutableList<Value> tailResults = getAllValuesRecursive(graph.tail, definition);
-        final ParseItem head = graph.head;
-        if (head.isValue() && head.asValue().definition.equals(definition)) {
-            return tailResults.add(head.asValue());
+    private static ImmutableList<Value> getAllValuesRecursive(final ParseGraph graph, final Token definition, final ImmutableList<Value> below) {
+        ImmutableList<Value> results = below;
+        for (final ParseGraph current : fromBottom(graph)) {
+            final ParseItem head = current.head;
+            if (head.isValue() && head.asValue().definition.equals(definition)) {
+                results = results.add(head.asValue());
+            }
+            if (head.isGraph()) {
+                results = getAllValuesRecursive(head.asGraph(), definition, results);
+            }
         }
-        if (head.isGraph()) {
-            return tailResults.add(getAllValuesRecursive(head.asGraph(), definition));
-        }
-        return tailResults;
+        return results;
     }
 
     public static ImmutableList<ParseItem> getAllRoots(final ParseGraph graph, final Token definition) {
         checkNotNull(graph, "graph");
         checkNotNull(definition, "definition");
-        return getAllRootsRecursive(graph, null, definition);
+        return getAllRootsRecursive(graph, null, definition, new ImmutableList<>());
+    }
+
+    private static ImmutableList<ParseItem> getAllRootsRecursive(final ParseItem item, final ParseGraph parent, final Token definition, final ImmutableList<ParseItem> below) {
+        ImmutableList<ParseItem> results = isRoot(item, parent, definition) ? below.add(item) : below;
+        if (item.isGraph()) {
+            final Deque<ParseGraph> graphs = new ArrayDeque<>();
+            for (ParseGraph current = item.asGraph(); !current.isEmpty(); current = current.tail) {
+                graphs.push(current);
+                if (isRoot(current.tail, current, definition)) {
+                    results = results.add(current.tail);
+                }
+            }
+            for (final ParseGraph current : graphs) {
+                results = getAllRootsRecursive(current.head, current, definition, results);
+            }
+        }
+        return results;
+    }
+
+    private static boolean isRoot(final ParseItem item, final ParseGraph parent, final Token definition) {
+        return item.getDefinition().equals(definition) && (parent == null || !parent.getDefinition().equals(definition));
     }
 
-    private static ImmutableList<ParseItem> getAllRootsRecursive(final ParseItem item, final ParseGraph parent, final Token definition) {
-        final ImmutableList<ParseItem> result = item.getDefinition().equals(definition) && (parent == null || !parent.getDefinition().equals(definition))
-            ? ImmutableList.create(item)
-            : new ImmutableList<>();
-        if (item.isGraph() && !item.asGraph().isEmpty()) {
-            return result
-                .add(getAllRootsRecursive(item.asGraph().tail, item.asGraph(), definition))
-                .add(getAllRootsRecursive(item.asGraph().head, item.asGraph(), definition));
+    /**
+     * @param graph The graph to traverse
+     * @return The non-empty graphs in the tail of the provided graph (including itself), from the bottom up
+     */
+    private static Deque<ParseGraph> fromBottom(final ParseGraph graph) {
+        final Deque<ParseGraph> graphs = new ArrayDeque<>();
+        for (ParseGraph current = graph; !current.isEmpty(); current = current.tail) {
+            graphs.push(current);
         }
-        return result;
+        return graphs;
     }
 
 }
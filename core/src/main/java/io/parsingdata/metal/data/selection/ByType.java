@@ -18,6 +18,9 @@ package io.parsingdata.metal.data.selection;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.ParseItem;
@@ -28,14 +31,26 @@ public final class ByType {
 
     public static ImmutableList<ParseItem> getReferences(final ParseGraph graph) {
         checkNotNull(graph, "graph");
-        return getReferences(graph, graph);
+        return getReferences(graph, graph, new ImmutableList<>());
     }
 
-    private static ImmutableList<ParseItem> getReferences(final ParseGraph graph, final ParseGraph root) {
-        if (graph.isEmpty()) { return new ImmutableList<>(); }
-        final ParseItem head = graph.head;
-        if (head.isReference() && head.asReference().resolve(root) == null) { throw new IllegalStateException("A ParseReference must point to an existing graph."); }
-        return getReferences(graph.tail, root).add(head.isGraph() ? getReferences(head.asGraph(), root) : (head.isReference() ? ImmutableList.create(head.asReference().resolve(root)) : new ImmutableList<ParseItem>()));
+    private static ImmutableList<ParseItem> getReferences(final ParseGraph graph, final ParseGraph root, final ImmutableList<ParseItem> below) {
+        final Deque<ParseGraph> graphs = new ArrayDeque<>();
+        for (ParseGraph current = graph; !current.isEmpty(); current = current.tail) {
+            graphs.push(current);
+        }
+        ImmutableList<ParseItem> references = below;
+        for (final ParseGraph current : graphs) {
+            final ParseItem head = current.head;
+            if (head.isGraph()) {
+                references = getReferences(head.asGraph(), root, references);
+            } else if (head.isReference()) {
+                final ParseItem target = head.asReference().resolve(root);
+                if (target == null) { throw new IllegalStateException("A ParseReference must point to an existing graph."); }
+                references = references.add(target);
+            }
+        }
+        return references;
     }
 
 }
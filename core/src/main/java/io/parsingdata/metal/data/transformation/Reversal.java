@@ -25,26 +25,24 @@ public final class Reversal {
     private Reversal() {}
 
     public static ParseGraph reverse(final ParseGraph graph) {
-        return reverse(graph, ParseGraph.EMPTY);
-    }
-
-    private static ParseGraph reverse(final ParseGraph oldGraph, final ParseGraph newGraph) {
-        if (oldGraph.isEmpty()) { return newGraph; }
-        return reverse(oldGraph.tail, new ParseGraph(reverseItem(oldGraph.head), newGraph, oldGraph.definition));
+        ParseGraph newGraph = ParseGraph.EMPTY;
+        for (ParseGraph oldGraph = graph; !oldGraph.isEmpty(); oldGraph = oldGraph.tail) {
+            newGraph = new ParseGraph(reverseItem(oldGraph.head), newGraph, oldGraph.definition);
+        }
+        return newGraph;
     }
 
     private static ParseItem reverseItem(final ParseItem item) {
-        return item.isGraph() ? Reversal.reverse(item.asGraph(), ParseGraph.EMPTY) : item;
+        return item.isGraph() ? reverse(item.asGraph()) : item;
     }
 
     public static <T> ImmutableList<T> reverse(final ImmutableList<T> list) {
         if (list.isEmpty()) { return list; }
-        return reverse(list.tail, ImmutableList.create(list.head));
-    }
-
-    private static <T> ImmutableList<T> reverse(final ImmutableList<T> oldList, final ImmutableList<T> newList) {
-        if (oldList.isEmpty()) { return newList; }
-        return reverse(oldList.tail, newList.add(oldList.head));
+        ImmutableList<T> newList = new ImmutableList<>();
+        for (ImmutableList<T> oldList = list; !oldList.isEmpty(); oldList = oldList.tail) {
+            newList = newList.add(oldList.head);
+        }
+        return newList;
     }
 
 }
@@ -19,6 +19,7 @@ package io.parsingdata.metal.data.transformation;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.util.Optional;
+import java.util.function.IntFunction;
 
 import io.parsingdata.metal.data.ImmutableList;
 
@@ -26,10 +27,48 @@ public final class Wrapping {
 
     private Wrapping() {}
 
+    @SuppressWarnings("unchecked")
     public static <T> ImmutableList<Optional<T>> wrap(final ImmutableList<T> list) {
         checkNotNull(list, "list");
-        if (list.isEmpty()) { return new ImmutableList(); }
-        return wrap(list.tail).add(Optional.of(list.head));
+        // The elements are copied into an array once, so the result is built without an intermediate reversed list.
+        final Object[] elements = new Object[Math.toIntExact(list.size)];
+        int index = 0;
+        for (ImmutableList<T> current = list; !current.isEmpty(); current = current.tail) {
+            elements[index++] = current.head;
+        }
+        ImmutableList<Optional<T>> result = new ImmutableList<>();
+        while (index > 0) {
+            result = result.add(Optional.of((T)elements[--index]));
+        }
+        return result;
+    }
+
+    /**
+     * @param array The elements to wrap, with null for an empty element
+     * @return A list of the wrapped elements, with the first element of the array as its head
+     */
+    public static <T> ImmutableList<Optional<T>> wrap(final T[] array) {
+        checkNotNull(array, "array");
+        ImmutableList<Optional<T>> result = new ImmutableList<>();
+        for (int index = array.length - 1; index >= 0; index--) {
+            result = result.add(Optional.ofNullable(array[index]));
+        }
+        return result;
+    }
+
+    /**
+     * @param list The elements to unwrap
+     * @param generator Creates an array of the provided length
+     * @return An array of the unwrapped elements, with null for an empty element and the head of the list first
+     */
+    public static <T> T[] unwrap(final ImmutableList<Optional<T>> list, final IntFunction<T[]> generator) {
+        checkNotNull(list, "list");
+        final T[] result = checkNotNull(generator, "generator").apply(Math.toIntExact(list.size));
+        int index = 0;
+        for (ImmutableList<Optional<T>> current = list; !current.isEmpty(); current = current.tail) {
+            result[index++] = current.head.orElse(null);
+        }
+        return result;
     }
 
 }
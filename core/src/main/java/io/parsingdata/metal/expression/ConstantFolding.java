@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.comparison.Eq;
+import io.parsingdata.metal.expression.comparison.EqNum;
+import io.parsingdata.metal.expression.comparison.EqStr;
+import io.parsingdata.metal.expression.comparison.GtNum;
+import io.parsingdata.metal.expression.comparison.LtNum;
+import io.parsingdata.metal.expression.logical.And;
+import io.parsingdata.metal.expression.logical.Not;
+import io.parsingdata.metal.expression.logical.Or;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.Cat;
+import io.parsingdata.metal.expression.value.Const;
+import io.parsingdata.metal.expression.value.Elvis;
+import io.parsingdata.metal.expression.value.Expand;
+import io.parsingdata.metal.expression.value.Fold;
+import io.parsingdata.metal.expression.value.FoldLeft;
+import io.parsingdata.metal.expression.value.FoldRight;
+import io.parsingdata.metal.expression.value.Reverse;
+import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.arithmetic.Add;
+import io.parsingdata.metal.expression.value.arithmetic.Div;
+import io.parsingdata.metal.expression.value.arithmetic.Max;
+import io.parsingdata.metal.expression.value.arithmetic.Min;
+import io.parsingdata.metal.expression.value.arithmetic.Mod;
+import io.parsingdata.metal.expression.value.arithmetic.Mul;
+import io.parsingdata.metal.expression.value.arithmetic.Neg;
+import io.parsingdata.metal.expression.value.arithmetic.Sub;
+import io.parsingdata.metal.expression.value.bitwise.ShiftLeft;
+import io.parsingdata.metal.expression.value.bitwise.ShiftRight;
+import io.parsingdata.metal.expression.value.bitwise.Xor;
+import io.parsingdata.metal.expression.value.reference.Count;
+import io.parsingdata.metal.expression.value.reference.First;
+import io.parsingdata.metal.expression.value.reference.Last;
+import io.parsingdata.metal.expression.value.reference.Len;
+import io.parsingdata.metal.expression.value.reference.Nth;
+import io.parsingdata.metal.expression.value.reference.Offset;
+import io.parsingdata.metal.expression.value.reference.Self;
+
+/**
+ * Determines the results of expressions that do not depend on the parse
+ * state, so that {@link ExpressionCompiler} can replace them by constants.
+ * <p>
+ * An expression is constant if it is a {@link Const}, or if it combines
+ * constant operands without using the {@link ParseGraph}, such as
+ * <code>add(con(1), con(2))</code> or <code>cat(con(0x50), con(0x4b))</code>.
+ * Since the result of most operators is created using the {@link Encoding}
+ * that is passed to them, results are determined for a specific encoding.
+ * <p>
+ * Two cases with operands that are not constant are simplified as well. An
+ * {@link Elvis} with a single present constant value on the left and at most
+ * one value on the right always results in the left value. A {@link Fold}
+ * with less than two constant values (including the initial value) never
+ * applies its reducer, so it is constant as well.
+ * <p>
+ * If evaluating a constant expression fails, it is left to the interpreter,
+ * which only fails if the expression is actually evaluated.
+ */
+final class ConstantFolding {
+
+    // Exact classes of the value expressions that only use the parse state through their operands.
+    private static final Set<Class<?>> OPERATORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        Add.class, Div.class, Max.class, Min.class, Mod.class, Mul.class, Neg.class, Sub.class,
+        io.parsingdata.metal.expression.value.bitwise.And.class, io.parsingdata.metal.expression.value.bitwise.Not.class,
+        io.parsingdata.metal.expression.value.bitwise.Or.class, ShiftLeft.class, ShiftRight.class, Xor.class,
+        Cat.class, Len.class, Offset.class, Expand.class, Reverse.class, Count.class, Nth.class)));
+
+    // Exact classes of the comparisons that only use the parse state through their operands and if value is null.
+    private static final Set<Class<?>> COMPARISONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        Eq.class, EqNum.class, EqStr.class, GtNum.class, LtNum.class)));
+
+    private ConstantFolding() {}
+
+    /**
+     * @param expression The expression to evaluate
+     * @param encoding The encoding to evaluate the expression with
+     * @return The result of evaluating <code>expression</code>, or null if it depends on the parse state
+     */
+    static ImmutableList<Optional<Value>> values(final ValueExpression expression, final Encoding encoding) {
+        if (expression.getClass() == Const.class) {
+            return ((Const)expression).value == null ? null : ImmutableList.create(Optional.of(((Const)expression).value));
+        }
+        if (expression.getClass() == Elvis.class) {
+            return elvis((Elvis)expression, encoding);
+        }
+        if (expression.getClass() == FoldLeft.class || expression.getClass() == FoldRight.class) {
+            return fold((Fold)expression, encoding);
+        }
+        if (!OPERATORS.contains(expression.getClass())) { return null; }
+        for (final ValueExpression operand : operands(expression)) {
+            if (values(operand, encoding) == null) { return null; }
+        }
+        return evaluate(expression, encoding);
+    }
+
+    /**
+     * @param expression The expression to evaluate
+     * @param encoding The encoding to evaluate the expression with
+     * @return The result of evaluating <code>expression</code>, or null if it depends on the parse state
+     */
+    static Boolean result(final Expression expression, final Encoding encoding) {
+        if (expression.getClass() == True.class) { return true; }
+        if (expression.getClass() == Not.class) {
+            final Boolean operand = result(((Not)expression).operand, encoding);
+            return operand == null ? null : !operand;
+        }
+        if (expression.getClass() == And.class) {
+            final Boolean left = result(((And)expression).left, encoding);
+            final Boolean right = result(((And)expression).right, encoding);
+            if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right)) { return false; }
+            return left == null || right == null ? null : true;
+        }
+        if (expression.getClass() == Or.class) {
+            final Boolean left = result(((Or)expression).left, encoding);
+            final Boolean right = result(((Or)expression).right, encoding);
+            if (Boolean.TRUE.equals(left) || Boolean.TRUE.equals(right)) { return true; }
+            return left == null || right == null ? null : false;
+        }
+        if (COMPARISONS.contains(expression.getClass())) {
+            final ComparisonExpression comparison = (ComparisonExpression)expression;
+            if (comparison.value == null || values(comparison.value, encoding) == null || values(comparison.predicate, encoding) == null) { return null; }
+            try {
+                return comparison.eval(ParseGraph.EMPTY, encoding);
+            } catch (final RuntimeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static ImmutableList<Optional<Value>> elvis(final Elvis expression, final Encoding encoding) {
+        final ImmutableList<Optional<Value>> left = values(expression.left, encoding);
+        if (left == null) { return null; }
+        if (values(expression.right, encoding) != null) { return evaluate(expression, encoding); }
+        return left.size == 1 && left.head.isPresent() && atMostOne(expression.right) ? left : null;
+    }
+
+    private static ImmutableList<Optional<Value>> fold(final Fold expression, final Encoding encoding) {
+        final ImmutableList<Optional<Value>> values = values(expression.values, encoding);
+        if (values == null) { return null; }
+        final ImmutableList<Optional<Value>> initial = expression.initial == null ? new ImmutableList<>() : values(expression.initial, encoding);
+        if (initial == null) { return null; }
+        return values.size + initial.size < 2 ? evaluate(expression, encoding) : null;
+    }
+
+    private static boolean atMostOne(final ValueExpression expression) {
+        final Class<?> type = expression.getClass();
+        if (type == Const.class || type == Self.class || type == Last.class || type == First.class || type == Count.class) { return true; }
+        if (type == Elvis.class || (OPERATORS.contains(type) && (expression instanceof UnaryValueExpression || expression instanceof BinaryValueExpression))) {
+            for (final ValueExpression operand : operands(expression)) {
+                if (!atMostOne(operand)) { return false; }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static ValueExpression[] operands(final ValueExpression expression) {
+        if (expression instanceof UnaryValueExpression) { return new ValueExpression[] { ((UnaryValueExpression)expression).operand }; }
+        if (expression instanceof BinaryValueExpression) { return new ValueExpression[] { ((BinaryValueExpression)expression).left, ((BinaryValueExpression)expression).right }; }
+        if (expression instanceof Elvis) { return new ValueExpression[] { ((Elvis)expression).left, ((Elvis)expression).right }; }
+        if (expression instanceof Expand) { return new ValueExpression[] { ((Expand)expression).base, ((Expand)expression).count }; }
+        if (expression instanceof Reverse) { return new ValueExpression[] { ((Reverse)expression).values }; }
+        if (expression instanceof Count) { return new ValueExpression[] { ((Count)expression).operand }; }
+        if (expression instanceof Nth) { return new ValueExpression[] { ((Nth)expression).values, ((Nth)expression).indices }; }
+        throw new IllegalArgumentException("Argument expression must be an operator with known operands.");
+    }
+
+    private static ImmutableList<Optional<Value>> evaluate(final ValueExpression expression, final Encoding encoding) {
+        try {
+            return expression.eval(ParseGraph.EMPTY, encoding);
+        } catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import static java.lang.invoke.MethodHandles.collectArguments;
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.identity;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.hasListSemanticsOf;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+import java.util.Optional;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.EvaluationCache;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.logical.And;
+import io.parsingdata.metal.expression.logical.Not;
+import io.parsingdata.metal.expression.logical.Or;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.reference.Self;
+
+/**
+ * Compiles {@link Expression} and {@link ValueExpression} trees into
+ * {@link MethodHandle}s that are specialized for operands that evaluate to a
+ * single value.
+ * <p>
+ * Most expressions in a format, such as <code>eqNum(last(ref("size")))</code>,
+ * only ever operate on single values. The tree interpreter still evaluates
+ * them as lists: every node is an interface call and creates an
+ * {@link ImmutableList} for its result. A compiled expression combines the
+ * <code>eval(Value, ...)</code> and <code>compare(Value, Value)</code>
+ * methods of the nodes directly, passing an {@link Optional} from node to
+ * node.
+ * <p>
+ * A compiled value is <code>null</code> when a node does not evaluate to
+ * exactly one value. In that case, the interpreter is used instead: for a
+ * {@link ComparisonExpression} by evaluating that comparison and for a
+ * {@link ValueExpression} by evaluating the whole expression. Since
+ * evaluation has no side effects, the result is always the same as that of
+ * the interpreter. Nodes that are not known to the compiler, or that override
+ * the list semantics of their base class, are evaluated by the interpreter as
+ * well.
+ * <p>
+ * Subexpressions that do not depend on the parse state, such as
+ * <code>cat(con(0x50), con(0x4b))</code>, are evaluated during compilation
+ * and replaced by their result (see {@link ConstantFolding}). Because their
+ * result depends on the {@link Encoding}, an expression is compiled for the
+ * encoding of its first evaluation and compiled again if it is evaluated with
+ * a different encoding. Compilation is deferred until the first evaluation,
+ * so that expressions in tokens that are never parsed are not compiled.
+ * <p>
+ * When a parse uses an {@link EvaluationCache}, tokens evaluate their
+ * expressions through {@link #eval(ValueExpression, ParseGraph, Encoding, EvaluationCache)}
+ * and {@link #eval(Expression, ParseGraph, Encoding, EvaluationCache)}. This
+ * uses a separate compilation in which the result of every node that is not
+ * constant is looked up in and stored in the cache.
+ */
+public final class ExpressionCompiler {
+
+    private static final Class<?>[] ARGUMENTS = { ParseGraph.class, Encoding.class, EvaluationCache.class };
+
+    private static final MethodHandle VALUE_EVAL;
+    private static final MethodHandle EXPRESSION_EVAL;
+    private static final MethodHandle UNARY_EVAL;
+    private static final MethodHandle BINARY_EVAL;
+    private static final MethodHandle COMPARE;
+    private static final MethodHandle CURRENT;
+    private static final MethodHandle LOOKUP;
+    private static final MethodHandle STORE;
+    private static final MethodHandle SINGLE;
+    private static final MethodHandle GET;
+    private static final MethodHandle IS_PRESENT;
+    private static final MethodHandle BOTH_PRESENT;
+    private static final MethodHandle BOTH_SINGLE;
+    private static final MethodHandle MISSING;
+    private static final MethodHandle WRAP;
+    private static final MethodHandle NOT;
+    private static final MethodHandle NOT_NULL;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            VALUE_EVAL = lookup.findVirtual(ValueExpression.class, "eval", methodType(ImmutableList.class, ParseGraph.class, Encoding.class));
+            EXPRESSION_EVAL = lookup.findVirtual(Expression.class, "eval", methodType(boolean.class, ParseGraph.class, Encoding.class));
+            UNARY_EVAL = lookup.findVirtual(UnaryValueExpression.class, "eval", methodType(Optional.class, Value.class, ParseGraph.class, Encoding.class));
+            BINARY_EVAL = lookup.findVirtual(BinaryValueExpression.class, "eval", methodType(Optional.class, Value.class, Value.class, ParseGraph.class, Encoding.class));
+            COMPARE = lookup.findVirtual(ComparisonExpression.class, "compare", methodType(boolean.class, Value.class, Value.class));
+            CURRENT = lookup.findVirtual(ParseGraph.class, "current", methodType(ParseValue.class));
+            LOOKUP = lookup.findStatic(ExpressionCompiler.class, "lookup", methodType(Optional.class, ValueExpression.class, ParseGraph.class, Encoding.class, EvaluationCache.class));
+            STORE = lookup.findStatic(ExpressionCompiler.class, "store", methodType(Optional.class, ValueExpression.class, Optional.class, ParseGraph.class, Encoding.class, EvaluationCache.class));
+            SINGLE = lookup.findStatic(ExpressionCompiler.class, "single", methodType(Optional.class, ImmutableList.class));
+            GET = lookup.findStatic(ExpressionCompiler.class, "get", methodType(Value.class, Optional.class));
+            IS_PRESENT = lookup.findStatic(ExpressionCompiler.class, "isPresent", methodType(boolean.class, Optional.class));
+            BOTH_PRESENT = lookup.findStatic(ExpressionCompiler.class, "bothPresent", methodType(boolean.class, Optional.class, Optional.class));
+            BOTH_SINGLE = lookup.findStatic(ExpressionCompiler.class, "bothSingle", methodType(boolean.class, Optional.class, Optional.class));
+            MISSING = lookup.findStatic(ExpressionCompiler.class, "missing", methodType(Optional.class, Optional.class, Optional.class));
+            WRAP = lookup.findStatic(ExpressionCompiler.class, "wrap", methodType(Optional.class, ParseValue.class));
+            NOT = lookup.findStatic(ExpressionCompiler.class, "not", methodType(boolean.class, boolean.class));
+            NOT_NULL = lookup.findStatic(Objects.class, "nonNull", methodType(boolean.class, Object.class)).asType(methodType(boolean.class, Optional.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ExpressionCompiler() {}
+
+    /**
+     * @param expression The expression to compile
+     * @return An expression that evaluates to the same result as <code>expression</code>
+     */
+    public static Expression compile(final Expression expression) {
+        checkNotNull(expression, "expression");
+        if (expression instanceof CompiledExpression) { return expression; }
+        return new CompiledExpression(expression);
+    }
+
+    /**
+     * @param expression The expression to compile
+     * @return An expression that evaluates to the same result as <code>expression</code>
+     */
+    public static ValueExpression compile(final ValueExpression expression) {
+        checkNotNull(expression, "expression");
+        if (expression instanceof CompiledValueExpression) { return expression; }
+        return new CompiledValueExpression(expression);
+    }
+
+    /**
+     * @param expression The expression to evaluate, which is only evaluated through the cache if it is compiled
+     * @param graph The parse state to evaluate the expression on
+     * @param encoding The encoding to evaluate the expression with
+     * @param cache The cache of the parse
+     * @return The result of evaluating <code>expression</code>
+     */
+    public static boolean eval(final Expression expression, final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+        checkNotNull(cache, "cache");
+        if (expression instanceof CompiledExpression) { return ((CompiledExpression)expression).eval(graph, encoding, cache); }
+        return expression.eval(graph, encoding);
+    }
+
+    /**
+     * @param expression The expression to evaluate, which is only evaluated through the cache if it is compiled
+     * @param graph The parse state to evaluate the expression on
+     * @param encoding The encoding to evaluate the expression with
+     * @param cache The cache of the parse
+     * @return The result of evaluating <code>expression</code>
+     */
+    public static ImmutableList<Optional<Value>> eval(final ValueExpression expression, final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+        checkNotNull(cache, "cache");
+        if (expression instanceof CompiledValueExpression) { return ((CompiledValueExpression)expression).eval(graph, encoding, cache); }
+        return expression.eval(graph, encoding);
+    }
+
+    // Returns a handle of type (ParseGraph, Encoding, EvaluationCache)boolean, which is only valid for the provided encoding.
+    private static MethodHandle compileExpression(final Expression expression, final Encoding encoding, final boolean cached) {
+        final Boolean constant = ConstantFolding.result(expression, encoding);
+        if (constant != null) {
+            return constantExpression(constant);
+        }
+        if (expression.getClass() == And.class) {
+            return guardWithTest(compileExpression(((And)expression).left, encoding, cached), compileExpression(((And)expression).right, encoding, cached), constantExpression(false));
+        }
+        if (expression.getClass() == Or.class) {
+            return guardWithTest(compileExpression(((Or)expression).left, encoding, cached), constantExpression(true), compileExpression(((Or)expression).right, encoding, cached));
+        }
+        if (expression.getClass() == Not.class) {
+            return filterReturnValue(compileExpression(((Not)expression).operand, encoding, cached), NOT);
+        }
+        if (expression instanceof ComparisonExpression && hasListSemanticsOf(expression, ComparisonExpression.class)) {
+            return compileComparison((ComparisonExpression)expression, encoding, cached);
+        }
+        return interpret(expression);
+    }
+
+    private static MethodHandle constantExpression(final boolean value) {
+        return dropArguments(constant(boolean.class, value), 0, ARGUMENTS);
+    }
+
+    private static MethodHandle compileComparison(final ComparisonExpression expression, final Encoding encoding, final boolean cached) {
+        final MethodHandle values = compileValue(expression.value == null ? new Self() : expression.value, encoding, cached);
+        final MethodHandle compare = guardWithTest(BOTH_PRESENT,
+                                                   dropArguments(filterArguments(COMPARE.bindTo(expression), 0, GET, GET), 2, ARGUMENTS),
+                                                   dropArguments(constant(boolean.class, false), 0, Optional.class, Optional.class, ParseGraph.class, Encoding.class, EvaluationCache.class));
+        final MethodHandle interpret = dropArguments(interpret(expression), 0, Optional.class, Optional.class);
+        return combine(guardWithTest(BOTH_SINGLE, compare, interpret), values, compileValue(expression.predicate, encoding, cached));
+    }
+
+    // Returns a handle of type (ParseGraph, Encoding, EvaluationCache)Optional, which is only valid for the provided
+    // encoding. It returns null if the expression does not evaluate to a single value.
+    private static MethodHandle compileValue(final ValueExpression expression, final Encoding encoding, final boolean cached) {
+        final ImmutableList<Optional<Value>> constant = ConstantFolding.values(expression, encoding);
+        if (constant != null && constant.size == 1) {
+            return dropArguments(constant(Optional.class, constant.head), 0, ARGUMENTS);
+        }
+        if (expression.getClass() == Self.class) {
+            return dropArguments(filterReturnValue(CURRENT, WRAP), 1, Encoding.class, EvaluationCache.class);
+        }
+        final MethodHandle handle = compileOperator(expression, encoding, cached);
+        return cached ? cache(expression, handle) : handle;
+    }
+
+    private static MethodHandle compileOperator(final ValueExpression expression, final Encoding encoding, final boolean cached) {
+        if (expression instanceof UnaryValueExpression && hasListSemanticsOf(expression, UnaryValueExpression.class)) {
+            final MethodHandle evalPresent = guardWithTest(IS_PRESENT,
+                                                           dropArguments(filterArguments(UNARY_EVAL.bindTo(expression), 0, GET), 3, EvaluationCache.class),
+                                                           dropArguments(identity(Optional.class), 1, ARGUMENTS));
+            return foldArguments(evalPresent, compileValue(((UnaryValueExpression)expression).operand, encoding, cached));
+        }
+        if (expression instanceof BinaryValueExpression && hasListSemanticsOf(expression, BinaryValueExpression.class)) {
+            final MethodHandle evalPresent = guardWithTest(BOTH_PRESENT,
+                                                           dropArguments(filterArguments(BINARY_EVAL.bindTo(expression), 0, GET, GET), 4, EvaluationCache.class),
+                                                           dropArguments(MISSING, 2, ARGUMENTS));
+            return combine(evalPresent, compileValue(((BinaryValueExpression)expression).left, encoding, cached), compileValue(((BinaryValueExpression)expression).right, encoding, cached));
+        }
+        return filterReturnValue(interpret(expression), SINGLE);
+    }
+
+    // Turns a handle of type (ParseGraph, Encoding, EvaluationCache)Optional into one that first looks up the result
+    // in the cache and stores the result in the cache if it was not found.
+    private static MethodHandle cache(final ValueExpression expression, final MethodHandle handle) {
+        final MethodHandle evalAndStore = foldArguments(insertArguments(STORE, 0, expression), handle);
+        final MethodHandle useCached = guardWithTest(NOT_NULL,
+                                                     dropArguments(identity(Optional.class), 1, ARGUMENTS),
+                                                     dropArguments(evalAndStore, 0, Optional.class));
+        return foldArguments(useCached, insertArguments(LOOKUP, 0, expression));
+    }
+
+    private static MethodHandle interpret(final ValueExpression expression) {
+        return dropArguments(VALUE_EVAL.bindTo(expression), 2, EvaluationCache.class);
+    }
+
+    private static MethodHandle interpret(final Expression expression) {
+        return dropArguments(EXPRESSION_EVAL.bindTo(expression), 2, EvaluationCache.class);
+    }
+
+    // Turns a handle of type (Optional, Optional, ParseGraph, Encoding, EvaluationCache)R into one of type
+    // (ParseGraph, Encoding, EvaluationCache)R, by computing both Optionals from the other arguments.
+    private static MethodHandle combine(final MethodHandle target, final MethodHandle left, final MethodHandle right) {
+        final MethodHandle withBoth = collectArguments(collectArguments(target, 0, left), 3, right);
+        return permuteArguments(withBoth, methodType(target.type().returnType(), ARGUMENTS), 0, 1, 2, 0, 1, 2, 0, 1, 2);
+    }
+
+    private static Optional<Value> lookup(final ValueExpression expression, final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+        return cache.get(expression, graph, encoding);
+    }
+
+    private static Optional<Value> store(final ValueExpression expression, final Optional<Value> result, final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+        if (result != null) { cache.put(expression, graph, encoding, result); }
+        return result;
+    }
+
+    private static Optional<Value> single(final ImmutableList<Optional<Value>> values) {
+        return values.size == 1 ? values.head : null;
+    }
+
+    private static Value get(final Optional<Value> value) {
+        return value.get();
+    }
+
+    private static boolean isPresent(final Optional<Value> value) {
+        return value != null && value.isPresent();
+    }
+
+    private static boolean bothPresent(final Optional<Value> left, final Optional<Value> right) {
+        return isPresent(left) && isPresent(right);
+    }
+
+    private static boolean bothSingle(final Optional<Value> left, final Optional<Value> right) {
+        return left != null && right != null;
+    }
+
+    private static Optional<Value> missing(final Optional<Value> left, final Optional<Value> right) {
+        return bothSingle(left, right) ? Optional.empty() : null;
+    }
+
+    private static Optional<Value> wrap(final ParseValue value) {
+        return Optional.of(value);
+    }
+
+    private static boolean not(final boolean value) {
+        return !value;
+    }
+
+    private static class Compilation {
+
+        final Encoding encoding;
+        final MethodHandle handle;
+
+        Compilation(final Encoding encoding, final MethodHandle handle) {
+            this.encoding = encoding;
+            this.handle = handle;
+        }
+
+        boolean isValidFor(final Encoding encoding) {
+            return Objects.equals(this.encoding, encoding);
+        }
+
+    }
+
+    private static class CompiledExpression implements Expression {
+
+        private final Expression expression;
+        private volatile Compilation compilation;
+        private volatile Compilation cachedCompilation;
+
+        CompiledExpression(final Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public boolean eval(final ParseGraph graph, final Encoding encoding) {
+            return eval(graph, encoding, EvaluationCache.NONE);
+        }
+
+        boolean eval(final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+            final boolean cached = cache.enabled;
+            Compilation current = cached ? cachedCompilation : compilation;
+            if (current == null || !current.isValidFor(encoding)) {
+                current = new Compilation(encoding, compileExpression(expression, encoding, cached));
+                if (cached) { cachedCompilation = current; } else { compilation = current; }
+            }
+            try {
+                return (boolean)current.handle.invokeExact(graph, encoding, cache);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return expression.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(expression, ((CompiledExpression)obj).expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expression);
+        }
+
+    }
+
+    private static class CompiledValueExpression implements ValueExpression {
+
+        private final ValueExpression expression;
+        private volatile Compilation compilation;
+        private volatile Compilation cachedCompilation;
+
+        CompiledValueExpression(final ValueExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+            return eval(graph, encoding, EvaluationCache.NONE);
+        }
+
+        @SuppressWarnings("unchecked")
+        ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding, final EvaluationCache cache) {
+            final boolean cached = cache.enabled;
+            Compilation current = cached ? cachedCompilation : compilation;
+            if (current == null || !current.isValidFor(encoding)) {
+                current = new Compilation(encoding, compileValue(expression, encoding, cached));
+                if (cached) { cachedCompilation = current; } else { compilation = current; }
+            }
+            final Optional<Value> result;
+            try {
+                result = (Optional<Value>)current.handle.invokeExact(graph, encoding, cache);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return result == null ? expression.eval(graph, encoding) : ImmutableList.create(result);
+        }
+
+        @Override
+        public String toString() {
+            return expression.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(expression, ((CompiledValueExpression)obj).expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expression);
+        }
+
+    }
+
+}
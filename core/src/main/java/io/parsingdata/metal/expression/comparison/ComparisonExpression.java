@@ -62,14 +62,24 @@ public abstract class ComparisonExpression implements Expression {
     }
 
     private boolean compare(final ImmutableList<Optional<Value>> currents, final ImmutableList<Optional<Value>> predicates) {
-        if (!currents.head.isPresent() || !predicates.head.isPresent()) { return false; }
-        final boolean headResult = compare(currents.head.get(), predicates.head.get());
-        if (!headResult || currents.tail.isEmpty()) { return headResult; }
-        return compare(currents.tail, predicates.tail);
+        ImmutableList<Optional<Value>> predicate = predicates;
+        for (ImmutableList<Optional<Value>> current = currents; !current.isEmpty(); current = current.tail, predicate = predicate.tail) {
+            if (!current.head.isPresent() || !predicate.head.isPresent()) { return false; }
+            if (!compare(current.head.get(), predicate.head.get())) { return false; }
+        }
+        return true;
     }
 
     public abstract boolean compare(final Value left, final Value right);
 
+    /**
+     * @return The result of comparing the numeric values of <code>left</code> and <code>right</code>, as {@link java.math.BigInteger#compareTo(java.math.BigInteger)}
+     */
+    static int compareNumeric(final Value left, final Value right) {
+        if (left.fitsInLong() && right.fitsInLong()) { return Long.compare(left.asLong(), right.asLong()); }
+        return left.asNumeric().compareTo(right.asNumeric());
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" + (value == null ? "" : value + ",") + predicate + ")";
@@ -16,6 +16,9 @@
 
 package io.parsingdata.metal.expression.comparison;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
 
@@ -38,13 +41,33 @@ public class Eq extends ComparisonExpression {
 
     @Override
     public boolean compare(final Value left, final Value right) {
-        final byte[] leftBytes = left.getValue();
-        final byte[] rightBytes = right.getValue();
-        if (leftBytes.length != rightBytes.length) { return false; }
-        for (int i = 0; i < leftBytes.length; i++) {
-            if (leftBytes[i] != rightBytes[i]) { return false; }
+        if (left.slice.size != right.slice.size) { return false; }
+        final ByteBuffer[] leftParts = left.slice.getBuffers();
+        final ByteBuffer[] rightParts = right.slice.getBuffers();
+        if (leftParts.length == 1 && rightParts.length == 1) { return leftParts[0].equals(rightParts[0]); }
+        // The parts of both values are compared piece by piece, so that concatenated values are not copied.
+        for (int leftIndex = 0, rightIndex = 0; leftIndex < leftParts.length && rightIndex < rightParts.length;) {
+            final ByteBuffer leftPart = leftParts[leftIndex];
+            final ByteBuffer rightPart = rightParts[rightIndex];
+            final int length = Math.min(leftPart.remaining(), rightPart.remaining());
+            if (!head(leftPart, length).equals(head(rightPart, length))) { return false; }
+            skip(leftPart, length);
+            skip(rightPart, length);
+            if (!leftPart.hasRemaining()) { leftIndex++; }
+            if (!rightPart.hasRemaining()) { rightIndex++; }
         }
         return true;
     }
 
+    // The position and limit are set through Buffer, since ByteBuffer only overrides these setters from Java 9 on.
+    private static ByteBuffer head(final ByteBuffer buffer, final int length) {
+        final ByteBuffer head = buffer.duplicate();
+        ((Buffer)head).limit(head.position() + length);
+        return head;
+    }
+
+    private static void skip(final ByteBuffer buffer, final int length) {
+        ((Buffer)buffer).position(buffer.position() + length);
+    }
+
 }
@@ -17,7 +17,11 @@
 package io.parsingdata.metal.expression.value;
 
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.hasListSemanticsOf;
+import static io.parsingdata.metal.data.transformation.Wrapping.unwrap;
+import static io.parsingdata.metal.data.transformation.Wrapping.wrap;
 
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -43,7 +47,11 @@ import io.parsingdata.metal.encoding.Encoding;
  * To implement a BinaryValueExpression, only the
  * {@link #eval(Value, Value, ParseGraph, Encoding)} must be implemented,
  * handling the case of evaluating two values. This base class takes care of
- * evaluating the operands and handling list semantics.
+ * evaluating the operands and handling list semantics. The operands are
+ * evaluated through {@link ValueExpression#evalArray(ParseGraph, Encoding)},
+ * so that the values with the same index are evaluated in a single loop. A
+ * subclass that overrides {@link #eval(ParseGraph, Encoding)} is evaluated
+ * through that method instead, including when it is an operand.
  *
  * @see UnaryValueExpression
  */
@@ -59,22 +67,74 @@ public abstract class BinaryValueExpression implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        return evalLists(left.eval(graph, encoding), right.eval(graph, encoding), graph, encoding);
+        return wrap(evalOperands(graph, encoding));
     }
 
-    private ImmutableList<Optional<Value>> evalLists(final ImmutableList<Optional<Value>> leftValues, final ImmutableList<Optional<Value>> rightValues, final ParseGraph graph, final Encoding encoding) {
-        if (leftValues.isEmpty()) {
-            return makeListWithEmpty(rightValues.size);
-        }
-        if (rightValues.isEmpty()) {
-            return makeListWithEmpty(leftValues.size);
-        }
-        return evalLists(leftValues.tail, rightValues.tail, graph, encoding).add(eval(leftValues.head, rightValues.head, graph, encoding));
+    @Override
+    public ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+        // A subclass that overrides eval(ParseGraph, Encoding) implements its own list semantics.
+        if (!hasListSemanticsOf(this, BinaryValueExpression.class)) { return ValueSequence.of(eval(graph, encoding)); }
+        final ValueSequence leftValues = left.sequence(graph, encoding);
+        final ValueSequence rightValues = right.sequence(graph, encoding);
+        return new ValueSequence() {
+
+            @Override
+            public boolean hasNext() {
+                return leftValues.hasNext() || rightValues.hasNext();
+            }
+
+            @Override
+            public Optional<Value> next() {
+                if (leftValues.hasNext() && rightValues.hasNext()) {
+                    return eval(leftValues.next(), rightValues.next(), graph, encoding);
+                }
+                skip();
+                return Optional.empty();
+            }
+
+            @Override
+            public void skip() {
+                if (!hasNext()) { throw new NoSuchElementException(); }
+                if (leftValues.hasNext()) { leftValues.skip(); }
+                if (rightValues.hasNext()) { rightValues.skip(); }
+            }
+
+            @Override
+            public long size() {
+                final long leftSize = leftValues.size();
+                final long rightSize = rightValues.size();
+                return leftSize < 0 || rightSize < 0 ? -1 : Math.max(leftSize, rightSize);
+            }
+
+        };
     }
 
-    private ImmutableList<Optional<Value>> makeListWithEmpty(final long size) {
-        if (size <= 0) { return new ImmutableList<>(); }
-        return makeListWithEmpty(size - 1).add(Optional.empty());
+    @Override
+    public Value[] evalArray(final ParseGraph graph, final Encoding encoding) {
+        // A subclass that overrides eval(ParseGraph, Encoding) implements its own list semantics.
+        if (!hasListSemanticsOf(this, BinaryValueExpression.class)) { return unwrap(eval(graph, encoding), Value[]::new); }
+        return evalOperands(graph, encoding);
+    }
+
+    private Value[] evalOperands(final ParseGraph graph, final Encoding encoding) {
+        return eval(left.evalArray(graph, encoding), right.evalArray(graph, encoding), graph, encoding);
+    }
+
+    /**
+     * @param leftValues The values of the left operand, with null for an empty value
+     * @param rightValues The values of the right operand, with null for an empty value
+     * @param graph The parse state to evaluate on
+     * @param encoding The encoding to evaluate with
+     * @return The results of evaluating the values with the same index, with null for an empty result
+     */
+    public Value[] eval(final Value[] leftValues, final Value[] rightValues, final ParseGraph graph, final Encoding encoding) {
+        final Value[] results = new Value[Math.max(leftValues.length, rightValues.length)];
+        for (int index = 0, size = Math.min(leftValues.length, rightValues.length); index < size; index++) {
+            if (leftValues[index] != null && rightValues[index] != null) {
+                results[index] = eval(leftValues[index], rightValues[index], graph, encoding).orElse(null);
+            }
+        }
+        return results;
     }
 
     private Optional<Value> eval(final Optional<Value> left, final Optional<Value> right, final ParseGraph graph, final Encoding encoding) {
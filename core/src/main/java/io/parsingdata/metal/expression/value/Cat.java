@@ -16,15 +16,17 @@
 
 package io.parsingdata.metal.expression.value;
 
-import static io.parsingdata.metal.Util.createFromBytes;
-
 import java.util.Optional;
 
+import io.parsingdata.metal.data.ConcatenatedSource;
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.encoding.Encoding;
 
 /**
  * A {@link BinaryValueExpression} that concatenates values at the byte-level.
+ * <p>
+ * The data of the values is not copied: the result refers to the slices of
+ * both values through a {@link ConcatenatedSource}.
  */
 public class Cat extends BinaryValueExpression {
 
@@ -34,12 +36,7 @@ public class Cat extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
-        final byte[] leftBytes = left.getValue();
-        final byte[] rightBytes = right.getValue();
-        final byte[] concatenatedBytes = new byte[leftBytes.length + rightBytes.length];
-        System.arraycopy(leftBytes, 0, concatenatedBytes, 0, leftBytes.length);
-        System.arraycopy(rightBytes, 0, concatenatedBytes, leftBytes.length, rightBytes.length);
-        return Optional.of(new Value(createFromBytes(concatenatedBytes), encoding));
+        return Optional.of(new Value(ConcatenatedSource.concatenate(left.slice, right.slice), encoding));
     }
 
 }
@@ -37,7 +37,17 @@ public final class ConstantFactory {
     }
 
     public static Value createFromNumeric(final long value, final Encoding encoding) {
-        return createFromNumeric(BigInteger.valueOf(value), encoding);
+        // The same bytes as createFromNumeric(BigInteger.valueOf(value), encoding), without creating the BigInteger.
+        final int bitLength = Long.SIZE - Long.numberOfLeadingZeros(value < 0 ? ~value : value);
+        final boolean stripSignByte = encoding.sign != Sign.SIGNED && value > 0 && bitLength % Byte.SIZE == 0;
+        final byte[] bytes = new byte[bitLength / Byte.SIZE + (stripSignByte ? 0 : 1)];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = (byte)(value >> ((bytes.length - 1 - index) * Byte.SIZE));
+        }
+        final Encoding bigEndian = setToBigEndian(encoding);
+        // Negative values decode to a different number as unsigned values, so their numeric value is decoded when requested.
+        if (encoding.sign == Sign.SIGNED || value >= 0) { return new Value(Util.createFromBytes(bytes), bigEndian, value); }
+        return new Value(Util.createFromBytes(bytes), bigEndian);
     }
 
     public static Value createFromString(final String value, final Encoding encoding) {
@@ -51,6 +61,18 @@ public final class ConstantFactory {
         return new Value(Util.createFromBytes(outBytes), setToBigEndian(encoding));
     }
 
+    /**
+     * @param bits The bits of the value, as returned by {@link Value#asBitSet()} for a value of at most 8 bytes
+     * @return The same value as {@link #createFromBitSet(BitSet, int, Encoding)} for a BitSet with the provided bits
+     */
+    public static Value createFromBits(final long bits, final int minSize, final Encoding encoding) {
+        final byte[] bytes = new byte[Math.max(minSize, (Long.SIZE - Long.numberOfLeadingZeros(bits) + Byte.SIZE - 1) / Byte.SIZE)];
+        for (int index = 0; index < Math.min(bytes.length, Long.BYTES); index++) {
+            bytes[bytes.length - 1 - index] = (byte)(bits >>> (index * Byte.SIZE));
+        }
+        return new Value(Util.createFromBytes(bytes), setToBigEndian(encoding));
+    }
+
     private static Encoding setToBigEndian(final Encoding encoding) {
         return new Encoding(encoding.sign, encoding.charset, ByteOrder.BIG_ENDIAN);
     }
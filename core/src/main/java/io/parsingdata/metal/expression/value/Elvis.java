@@ -54,9 +54,17 @@ public class Elvis implements ValueExpression {
     }
 
     private ImmutableList<Optional<Value>> eval(final ImmutableList<Optional<Value>> leftValues, final ImmutableList<Optional<Value>> rightValues) {
-        if (leftValues.isEmpty()) { return rightValues; }
-        if (rightValues.isEmpty()) { return leftValues; }
-        return eval(leftValues.tail, rightValues.tail).add(leftValues.head.isPresent() ? leftValues.head : rightValues.head);
+        ImmutableList<Optional<Value>> left = leftValues;
+        ImmutableList<Optional<Value>> right = rightValues;
+        ImmutableList<Optional<Value>> reversedResults = new ImmutableList<>();
+        for (; !left.isEmpty() && !right.isEmpty(); left = left.tail, right = right.tail) {
+            reversedResults = reversedResults.add(left.head.isPresent() ? left.head : right.head);
+        }
+        ImmutableList<Optional<Value>> results = left.isEmpty() ? right : left;
+        for (; !reversedResults.isEmpty(); reversedResults = reversedResults.tail) {
+            results = results.add(reversedResults.head);
+        }
+        return results;
     }
 
     @Override
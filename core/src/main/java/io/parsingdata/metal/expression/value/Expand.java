@@ -18,6 +18,7 @@ package io.parsingdata.metal.expression.value;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -53,12 +54,33 @@ public class Expand implements ValueExpression {
         if (base.isEmpty()) { return base; }
         final ImmutableList<Optional<Value>> count = this.count.eval(graph, encoding);
         if (count.size != 1 || !count.head.isPresent()) { throw new IllegalStateException("Count must yield a single non-empty value."); }
-        return expand(base, count.head.get().asNumeric().intValue(), new ImmutableList<>());
+        return expand(base, (int)count.head.get().asLong(), new ImmutableList<>());
+    }
+
+    @Override
+    public Value[] evalArray(final ParseGraph graph, final Encoding encoding) {
+        final Value[] base = this.base.evalArray(graph, encoding);
+        if (base.length == 0) { return base; }
+        final ImmutableList<Optional<Value>> count = this.count.eval(graph, encoding);
+        if (count.size != 1 || !count.head.isPresent()) { throw new IllegalStateException("Count must yield a single non-empty value."); }
+        final int copies = Math.max((int)count.head.get().asLong(), 0);
+        final Value[] result = new Value[Math.multiplyExact(base.length, copies)];
+        if (base.length == 1) {
+            Arrays.fill(result, base[0]);
+            return result;
+        }
+        for (int copy = 0; copy < copies; copy++) {
+            System.arraycopy(base, 0, result, copy * base.length, base.length);
+        }
+        return result;
     }
 
     private ImmutableList<Optional<Value>> expand(final ImmutableList<Optional<Value>> base, final int count, final ImmutableList<Optional<Value>> aggregate) {
-        if (count < 1) { return aggregate; }
-        return expand(base, count - 1, aggregate.add(base));
+        ImmutableList<Optional<Value>> result = aggregate;
+        for (int remaining = count; remaining > 0; remaining--) {
+            result = result.add(base);
+        }
+        return result;
     }
 
     @Override
@@ -18,13 +18,18 @@ package io.parsingdata.metal.expression.value;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
 
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.Slice;
 import io.parsingdata.metal.encoding.Encoding;
 
 /**
@@ -40,9 +45,19 @@ import io.parsingdata.metal.encoding.Encoding;
  * by the value returned by evaluating <code>initial</code>. On this list, the
  * <code>reducer</code> is applied to the first two values until a single
  * value remains, which is then returned.
+ * <p>
+ * If the <code>reducer</code> is a {@link Reducer}, the values are reduced
+ * directly in a single pass, without preparing the list or building an
+ * expression for every step. Reducers created with
+ * {@link Reducer#inParallel(ForkJoinPool)} are applied in parallel in their
+ * pool to lists of at least {@link #PARALLEL_THRESHOLD} values. The data of
+ * these values is read before, since a {@link io.parsingdata.metal.data.Source}
+ * is not required to support concurrent reads.
  */
 public abstract class Fold implements ValueExpression {
 
+    public static final int PARALLEL_THRESHOLD = 1 << 12;
+
     public final ValueExpression values;
     public final BinaryOperator<ValueExpression> reducer;
     public final ValueExpression initial;
@@ -57,6 +72,9 @@ public abstract class Fold implements ValueExpression {
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
         final ImmutableList<Optional<Value>> initial = this.initial != null ? this.initial.eval(graph, encoding) : new ImmutableList<>();
         if (initial.size > 1) { return new ImmutableList<>(); }
+        if (reducer instanceof Reducer) {
+            return reduce((Reducer)reducer, initial, this.values.eval(graph, encoding), encoding);
+        }
         final ImmutableList<Optional<Value>> values = prepareValues(this.values.eval(graph, encoding));
         if (values.isEmpty() || containsEmpty(values)) { return initial; }
         if (!initial.isEmpty()) {
@@ -66,21 +84,73 @@ public abstract class Fold implements ValueExpression {
     }
 
     private Optional<Value> fold(final ParseGraph graph, final Encoding encoding, final BinaryOperator<ValueExpression> reducer, final Optional<Value> head, final ImmutableList<Optional<Value>> tail) {
-        if (!head.isPresent() || tail.isEmpty()) { return head; }
-        final ImmutableList<Optional<Value>> reducedValue = reduce(reducer, head.get(), tail.head.get()).eval(graph, encoding);
-        if (reducedValue.size != 1) { throw new IllegalStateException("Reducer must yield a single value."); }
-        return fold(graph, encoding, reducer, reducedValue.head, tail.tail);
+        Optional<Value> result = head;
+        for (ImmutableList<Optional<Value>> current = tail; result.isPresent() && !current.isEmpty(); current = current.tail) {
+            final ImmutableList<Optional<Value>> reducedValue = reduce(reducer, result.get(), current.head.get()).eval(graph, encoding);
+            if (reducedValue.size != 1) { throw new IllegalStateException("Reducer must yield a single value."); }
+            result = reducedValue.head;
+        }
+        return result;
+    }
+
+    private ImmutableList<Optional<Value>> reduce(final Reducer reducer, final ImmutableList<Optional<Value>> initial, final ImmutableList<Optional<Value>> values, final Encoding encoding) {
+        if (values.isEmpty() || !initial.isEmpty() && !initial.head.isPresent()) { return initial; }
+        final Value[] operands = new Value[Math.toIntExact(initial.size + values.size)];
+        final boolean parallel = reducer.pool != null && operands.length >= PARALLEL_THRESHOLD;
+        // The values that are read from their source before reducing them in parallel, to return the original of a value that is the result.
+        final Map<Value, Value> originals = new IdentityHashMap<>();
+        if (!initial.isEmpty()) {
+            operands[0] = parallel ? materialize(initial.head.get(), originals) : initial.head.get();
+        }
+        // The values are stored in the order of prepareValues, so that they do not have to be reversed first.
+        final boolean reversed = reversesValues();
+        int index = reversed ? operands.length - 1 : (int)initial.size;
+        for (ImmutableList<Optional<Value>> current = values; !current.isEmpty(); current = current.tail, index += reversed ? -1 : 1) {
+            if (!current.head.isPresent()) { return initial; }
+            operands[index] = parallel ? materialize(current.head.get(), originals) : current.head.get();
+        }
+        if (parallel) {
+            // Swapping the operands of an associative reducer, as FoldRight does, results in an associative reducer as well.
+            final Optional<Value> result = reducer.pool.submit(() -> Arrays.stream(operands).parallel().map(Optional::of)
+                .reduce((head, tail) -> head.isPresent() && tail.isPresent() ? reduce(reducer, head.get(), tail.get(), encoding) : Optional.empty())
+                .get()).join();
+            return ImmutableList.create(result.map(value -> originals.getOrDefault(value, value)));
+        }
+        Optional<Value> result = Optional.of(operands[0]);
+        for (int position = 1; result.isPresent() && position < operands.length; position++) {
+            result = reduce(reducer, result.get(), operands[position], encoding);
+        }
+        return ImmutableList.create(result);
+    }
+
+    private static Value materialize(final Value value, final Map<Value, Value> originals) {
+        final Slice slice = value.slice.materialize();
+        if (slice == value.slice) { return value; }
+        final Value materialized = new Value(slice, value.encoding);
+        originals.put(materialized, value);
+        return materialized;
     }
 
     private boolean containsEmpty(final ImmutableList<Optional<Value>> list) {
-        if (list.isEmpty()) { return false; }
-        return !list.head.isPresent() || containsEmpty(list.tail);
+        for (ImmutableList<Optional<Value>> current = list; !current.isEmpty(); current = current.tail) {
+            if (!current.head.isPresent()) { return true; }
+        }
+        return false;
     }
 
     protected abstract ImmutableList<Optional<Value>> prepareValues(ImmutableList<Optional<Value>> values);
 
+    /**
+     * @return Whether {@link #prepareValues(ImmutableList)} reverses the values
+     */
+    protected boolean reversesValues() {
+        return false;
+    }
+
     protected abstract ValueExpression reduce(BinaryOperator<ValueExpression> reducer, Value head, Value tail);
 
+    protected abstract Optional<Value> reduce(Reducer reducer, Value head, Value tail, Encoding encoding);
+
     @Override
     public boolean equals(final Object obj) {
         return Util.notNullAndSameClass(this, obj)
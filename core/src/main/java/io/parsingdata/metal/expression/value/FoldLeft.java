@@ -23,6 +23,7 @@ import java.util.Optional;
 import java.util.function.BinaryOperator;
 
 import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.encoding.Encoding;
 
 /**
  * A {@link ValueExpression} implementation of the FoldLeft operation.
@@ -43,9 +44,19 @@ public class FoldLeft extends Fold {
         return reverse(values);
     }
 
+    @Override
+    protected boolean reversesValues() {
+        return true;
+    }
+
     @Override
     protected ValueExpression reduce(final BinaryOperator<ValueExpression> reducer, final Value head, final Value tail) {
         return reducer.apply(con(head), con(tail));
     }
 
+    @Override
+    protected Optional<Value> reduce(final Reducer reducer, final Value head, final Value tail, final Encoding encoding) {
+        return reducer.reduce(head, tail, encoding);
+    }
+
 }
@@ -22,6 +22,7 @@ import java.util.Optional;
 import java.util.function.BinaryOperator;
 
 import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.encoding.Encoding;
 
 /**
  * A {@link ValueExpression} implementation of the FoldRight operation.
@@ -47,4 +48,9 @@ public class FoldRight extends Fold {
         return reducer.apply(con(tail), con(head));
     }
 
+    @Override
+    protected Optional<Value> reduce(final Reducer reducer, final Value head, final Value tail, final Encoding encoding) {
+        return reducer.reduce(tail, head, encoding);
+    }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.expression.value;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.arithmetic.Add;
+import io.parsingdata.metal.expression.value.arithmetic.Max;
+import io.parsingdata.metal.expression.value.arithmetic.Min;
+import io.parsingdata.metal.expression.value.bitwise.Xor;
+
+/**
+ * A reducer for {@link Fold} based on a {@link BinaryValueExpression}.
+ * <p>
+ * Applied to two {@link ValueExpression}s, a Reducer returns the
+ * BinaryValueExpression of its <code>operation</code>, so it can be used as
+ * any other reducer. But a Fold recognizes a Reducer and instead applies
+ * {@link #reduce(Value, Value, Encoding)} to the values directly, without
+ * building and evaluating an expression for every step. An
+ * <code>associative</code> reducer can be applied in parallel in a
+ * {@link ForkJoinPool} through {@link #inParallel(ForkJoinPool)}, which a
+ * Fold does for lists of at least {@link Fold#PARALLEL_THRESHOLD} values.
+ * <p>
+ * The <code>operation</code> must not depend on the {@link ParseGraph}.
+ */
+public final class Reducer implements BinaryOperator<ValueExpression> {
+
+    public static final Reducer SUM = new Reducer(Add::new, true);
+    public static final Reducer XOR = new Reducer(Xor::new, true);
+    public static final Reducer MIN = new Reducer(Min::new, true);
+    public static final Reducer MAX = new Reducer(Max::new, true);
+    public static final Reducer CONCAT = new Reducer(Cat::new, true);
+
+    public final BiFunction<ValueExpression, ValueExpression, BinaryValueExpression> operation;
+    public final boolean associative;
+    public final ForkJoinPool pool; // Null if the reducer is not applied in parallel.
+    private final BinaryValueExpression prototype;
+
+    public Reducer(final BiFunction<ValueExpression, ValueExpression, BinaryValueExpression> operation, final boolean associative) {
+        this(operation, associative, null);
+    }
+
+    private Reducer(final BiFunction<ValueExpression, ValueExpression, BinaryValueExpression> operation, final boolean associative, final ForkJoinPool pool) {
+        this.operation = checkNotNull(operation, "operation");
+        this.associative = associative;
+        this.pool = pool;
+        final ValueExpression operand = con(0);
+        prototype = checkNotNull(operation.apply(operand, operand), "operation result");
+    }
+
+    /**
+     * @param pool The pool to reduce values in
+     * @return A reducer with the same operation, which a Fold applies in parallel in <code>pool</code>
+     * @throws IllegalStateException if the reducer is not associative
+     */
+    public Reducer inParallel(final ForkJoinPool pool) {
+        if (!associative) { throw new IllegalStateException("Reducer must be associative to be applied in parallel."); }
+        return new Reducer(operation, true, checkNotNull(pool, "pool"));
+    }
+
+    @Override
+    public ValueExpression apply(final ValueExpression left, final ValueExpression right) {
+        return operation.apply(left, right);
+    }
+
+    /**
+     * @param left The left operand
+     * @param right The right operand
+     * @param encoding The encoding to evaluate the operation with
+     * @return The result of the operation on the two values
+     */
+    public Optional<Value> reduce(final Value left, final Value right, final Encoding encoding) {
+        return prototype.eval(left, right, ParseGraph.EMPTY, encoding);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + prototype.getClass().getSimpleName() + ")";
+    }
+
+}
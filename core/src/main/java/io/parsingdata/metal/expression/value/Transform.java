@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.expression.value;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * A {@link UnaryValueExpression} that applies a function to each value of
+ * its operand.
+ * <p>
+ * Transform has two operands: <code>operand</code> (a
+ * {@link ValueExpression}) and <code>function</code> (a {@link BiFunction}).
+ * The function is applied to each value of the operand and the encoding, so
+ * that its result depends on nothing but the operand. Unlike other
+ * subclasses of UnaryValueExpression that are not part of this library, a
+ * Transform therefore does not prevent a
+ * {@link io.parsingdata.metal.data.Pruner} from removing closed branches.
+ */
+public class Transform extends UnaryValueExpression {
+
+    public final BiFunction<Value, Encoding, Optional<Value>> function;
+
+    public Transform(final ValueExpression operand, final BiFunction<Value, Encoding, Optional<Value>> function) {
+        super(operand);
+        this.function = checkNotNull(function, "function");
+    }
+
+    @Override
+    public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+        return function.apply(value, encoding);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return super.equals(obj)
+            && Objects.equals(function, ((Transform)obj).function);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), function);
+    }
+
+}
@@ -17,6 +17,9 @@
 package io.parsingdata.metal.expression.value;
 
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.hasListSemanticsOf;
+import static io.parsingdata.metal.data.transformation.Wrapping.unwrap;
+import static io.parsingdata.metal.data.transformation.Wrapping.wrap;
 
 import java.util.Objects;
 import java.util.Optional;
@@ -37,7 +40,8 @@ import io.parsingdata.metal.encoding.Encoding;
  * To implement a UnaryValueExpression, only the
  * {@link #eval(Value, ParseGraph, Encoding)} must be implemented, handling
  * the case of evaluating one value. This base class takes care of evaluating
- * the operand and handling list semantics.
+ * the operand and handling list semantics, evaluating all values of the
+ * operand in a single loop over an array.
  *
  * @see BinaryValueExpression
  */
@@ -51,12 +55,70 @@ public abstract class UnaryValueExpression implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        return eval(operand.eval(graph, encoding), graph, encoding);
+        return wrap(evalOperand(graph, encoding));
     }
 
-    private ImmutableList<Optional<Value>> eval(final ImmutableList<Optional<Value>> values, final ParseGraph graph, final Encoding encoding) {
-        if (values.isEmpty()) { return values; }
-        return eval(values.tail, graph, encoding).add(values.head.isPresent() ? eval(values.head.get(), graph, encoding) : values.head);
+    @Override
+    public ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+        // A subclass that overrides eval(ParseGraph, Encoding) implements its own list semantics.
+        if (!hasListSemanticsOf(this, UnaryValueExpression.class)) { return ValueSequence.of(eval(graph, encoding)); }
+        final ValueSequence values = operand.sequence(graph, encoding);
+        return new ValueSequence() {
+
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Optional<Value> next() {
+                final Optional<Value> value = values.next();
+                return value.isPresent() ? eval(value.get(), graph, encoding) : value;
+            }
+
+            @Override
+            public void skip() {
+                values.skip();
+            }
+
+            @Override
+            public void skip(final long count) {
+                values.skip(count);
+            }
+
+            @Override
+            public long size() {
+                return values.size();
+            }
+
+        };
+    }
+
+    @Override
+    public Value[] evalArray(final ParseGraph graph, final Encoding encoding) {
+        // A subclass that overrides eval(ParseGraph, Encoding) implements its own list semantics.
+        if (!hasListSemanticsOf(this, UnaryValueExpression.class)) { return unwrap(eval(graph, encoding), Value[]::new); }
+        return evalOperand(graph, encoding);
+    }
+
+    private Value[] evalOperand(final ParseGraph graph, final Encoding encoding) {
+        return eval(operand.evalArray(graph, encoding), graph, encoding);
+    }
+
+    /**
+     * @param values The values of the operand, with null for an empty value
+     * @param graph The parse state to evaluate on
+     * @param encoding The encoding to evaluate with
+     * @return The results of evaluating each value, with null for an empty result
+     */
+    public Value[] eval(final Value[] values, final ParseGraph graph, final Encoding encoding) {
+        final Value[] results = new Value[values.length];
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] != null) {
+                results[index] = eval(values[index], graph, encoding).orElse(null);
+            }
+        }
+        return results;
     }
 
     public abstract Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding);
@@ -19,6 +19,7 @@ package io.parsingdata.metal.expression.value;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Objects;
 
@@ -30,25 +31,78 @@ import io.parsingdata.metal.encoding.Sign;
 
 public class Value {
 
+    private static final byte NUMERIC_UNKNOWN = 0;
+    private static final byte NUMERIC_LONG = 1;
+    private static final byte NUMERIC_WIDE = 2;
+
     public final Slice slice;
     public final Encoding encoding;
 
+    // Decoded when first requested, since decoding requires reading the data of the slice. The kind is written
+    // after the long, so that the long is visible to any thread that reads NUMERIC_LONG.
+    private volatile byte numericKind = NUMERIC_UNKNOWN;
+    private long numericLong;
+
     public Value(final Slice slice, final Encoding encoding) {
         this.slice = slice;
         this.encoding = checkNotNull(encoding, "encoding");
     }
 
+    /**
+     * @param numeric The numeric value that the data of the slice decodes to with the provided encoding
+     */
+    Value(final Slice slice, final Encoding encoding, final long numeric) {
+        this(slice, encoding);
+        numericLong = numeric;
+        numericKind = NUMERIC_LONG;
+    }
+
     public byte[] getValue() {
         return slice.getData();
     }
 
     public BigInteger asNumeric() {
+        if (fitsInLong()) { return BigInteger.valueOf(numericLong); }
         return encoding.sign == Sign.SIGNED ? new BigInteger(encoding.byteOrder.apply(getValue()))
                                             : new BigInteger(1, encoding.byteOrder.apply(getValue()));
     }
 
+    /**
+     * @return Whether the numeric value of this value can be represented by a long, which is the case for values of 1 to 8 bytes, except unsigned values of 8 bytes with the most significant bit set
+     */
+    public boolean fitsInLong() {
+        final byte kind = numericKind;
+        if (kind != NUMERIC_UNKNOWN) { return kind == NUMERIC_LONG; }
+        if (slice.size == 0 || slice.size > Long.BYTES) {
+            numericKind = NUMERIC_WIDE;
+            return false;
+        }
+        final ByteBuffer buffer = slice.getBuffer();
+        long result = 0;
+        for (int index = 0; index < slice.size; index++) {
+            result = (result << Byte.SIZE) | (buffer.get(buffer.position() + (encoding.byteOrder == ByteOrder.BIG_ENDIAN ? index : slice.size - 1 - index)) & 0xff);
+        }
+        if (encoding.sign == Sign.SIGNED) {
+            final int unusedBits = Long.SIZE - slice.size * Byte.SIZE;
+            result = (result << unusedBits) >> unusedBits;
+        } else if (result < 0) {
+            numericKind = NUMERIC_WIDE;
+            return false;
+        }
+        numericLong = result;
+        numericKind = NUMERIC_LONG;
+        return true;
+    }
+
+    /**
+     * @return The numeric value of this value, or its low-order 64 bits (as {@link BigInteger#longValue()}) if it does not fit in a long
+     */
+    public long asLong() {
+        return fitsInLong() ? numericLong : asNumeric().longValue();
+    }
+
     public String asString() {
-        return new String(getValue(), encoding.charset);
+        return encoding.charset.decode(slice.getBuffer()).toString();
     }
 
     public BitSet asBitSet() {
@@ -65,6 +119,7 @@ public class Value {
         return Util.notNullAndSameClass(this, obj)
             && Objects.equals(slice, ((Value)obj).slice)
             && Objects.equals(encoding, ((Value)obj).encoding);
+        // The numericKind and numericLong fields are excluded from equals() and hashCode() because they are cached data.
     }
 
     @Override
@@ -16,6 +16,8 @@
 
 package io.parsingdata.metal.expression.value;
 
+import static io.parsingdata.metal.data.transformation.Wrapping.unwrap;
+
 import java.util.Optional;
 
 import io.parsingdata.metal.data.ImmutableList;
@@ -33,9 +35,37 @@ import io.parsingdata.metal.encoding.Encoding;
  * As context, it receives the current <code>graph</code> object that
  * describes the parse state as well as the current <code>encoding</code>
  * object that describes the encoding to use when reading data from the input.
+ * <p>
+ * Expressions that only need some of the values of their operands, such as
+ * {@link io.parsingdata.metal.expression.value.reference.Last}, evaluate them
+ * through {@link #sequence(ParseGraph, Encoding)}, which computes values
+ * only when they are requested.
+ * <p>
+ * Expressions that compute each value from the values of their operands at
+ * the same index, such as {@link BinaryValueExpression}s, evaluate them
+ * through {@link #evalArray(ParseGraph, Encoding)}, so that nested
+ * expressions are computed in a single loop over an array each.
  */
 public interface ValueExpression {
 
     ImmutableList<Optional<Value>> eval(ParseGraph graph, Encoding encoding);
 
+    /**
+     * @param graph The parse state to evaluate on
+     * @param encoding The encoding to evaluate with
+     * @return The values of {@link #eval(ParseGraph, Encoding)}, computed when they are requested
+     */
+    default ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+        return ValueSequence.of(eval(graph, encoding));
+    }
+
+    /**
+     * @param graph The parse state to evaluate on
+     * @param encoding The encoding to evaluate with
+     * @return The values of {@link #eval(ParseGraph, Encoding)} in the same order, with null for an empty value
+     */
+    default Value[] evalArray(final ParseGraph graph, final Encoding encoding) {
+        return unwrap(eval(graph, encoding), Value[]::new);
+    }
+
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ImmutableVector;
+
+/**
+ * A lazily evaluated sequence of the results of a {@link ValueExpression}.
+ * <p>
+ * A sequence returns the same values as
+ * {@link ValueExpression#eval(io.parsingdata.metal.data.ParseGraph, io.parsingdata.metal.encoding.Encoding)}
+ * in the same order, which means the most recently parsed values first. A
+ * value is only computed when it is requested through {@link #next()}. So
+ * an expression such as {@link io.parsingdata.metal.expression.value.reference.Last}
+ * only computes the one value it returns.
+ * <p>
+ * When the number of values is known without computing them, it is returned
+ * by {@link #size()}, and {@link #skip()} passes over a value without
+ * computing it. A sequence can be traversed only once.
+ */
+public interface ValueSequence {
+
+    /**
+     * @return Whether the sequence contains more values
+     */
+    boolean hasNext();
+
+    /**
+     * @return The next value of the sequence
+     * @throws NoSuchElementException if the sequence contains no more values
+     */
+    Optional<Value> next();
+
+    /**
+     * Passes over the next value of the sequence.
+     *
+     * @throws NoSuchElementException if the sequence contains no more values
+     */
+    default void skip() {
+        next();
+    }
+
+    /**
+     * Passes over the next <code>count</code> values of the sequence.
+     *
+     * @param count The number of values to pass over
+     * @throws NoSuchElementException if the sequence contains fewer values
+     */
+    default void skip(final long count) {
+        for (long skipped = 0; skipped < count; skipped++) {
+            skip();
+        }
+    }
+
+    /**
+     * @return The number of remaining values, or -1 if it is not known without computing the values
+     */
+    default long size() {
+        return -1;
+    }
+
+    /**
+     * @param values The values to return
+     * @return A sequence of the elements of <code>values</code>, starting with its head
+     */
+    static ValueSequence of(final ImmutableList<Optional<Value>> values) {
+        checkNotNull(values, "values");
+        return new ValueSequence() {
+
+            private ImmutableList<Optional<Value>> current = values;
+
+            @Override
+            public boolean hasNext() {
+                return !current.isEmpty();
+            }
+
+            @Override
+            public Optional<Value> next() {
+                if (current.isEmpty()) { throw new NoSuchElementException(); }
+                final Optional<Value> head = current.head;
+                current = current.tail;
+                return head;
+            }
+
+            @Override
+            public long size() {
+                return current.size;
+            }
+
+        };
+    }
+
+    /**
+     * @param values The values to return
+     * @return A sequence of the elements of <code>values</code>, starting with the element that was added last
+     */
+    static ValueSequence of(final ImmutableVector<Optional<Value>> values) {
+        checkNotNull(values, "values");
+        return new ValueSequence() {
+
+            private long remaining = values.size;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Optional<Value> next() {
+                if (remaining == 0) { throw new NoSuchElementException(); }
+                return values.get(--remaining);
+            }
+
+            @Override
+            public void skip(final long count) {
+                if (count > remaining) { throw new NoSuchElementException(); }
+                remaining -= Math.max(count, 0);
+            }
+
+            @Override
+            public long size() {
+                return remaining;
+            }
+
+        };
+    }
+
+}
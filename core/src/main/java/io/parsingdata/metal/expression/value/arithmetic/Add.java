@@ -36,6 +36,13 @@ public class Add extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        if (left.fitsInLong() && right.fitsInLong()) {
+            try {
+                return Optional.of(ConstantFactory.createFromNumeric(Math.addExact(left.asLong(), right.asLong()), encoding));
+            } catch (final ArithmeticException e) {
+                // The result does not fit in a long, so it is computed as a BigInteger.
+            }
+        }
         return Optional.of(ConstantFactory.createFromNumeric(left.asNumeric().add(right.asNumeric()), encoding));
     }
 
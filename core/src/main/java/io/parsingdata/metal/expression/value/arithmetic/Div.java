@@ -40,6 +40,10 @@ public class Div extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        // Long.MIN_VALUE / -1 is the only quotient of longs that does not fit in a long.
+        if (left.fitsInLong() && right.fitsInLong() && right.asLong() != 0 && (left.asLong() != Long.MIN_VALUE || right.asLong() != -1)) {
+            return Optional.of(ConstantFactory.createFromNumeric(left.asLong() / right.asLong(), encoding));
+        }
         if (right.asNumeric().equals(BigInteger.ZERO)) {
             return Optional.empty();
         }
@@ -40,6 +40,9 @@ public class Mod extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        if (left.fitsInLong() && right.fitsInLong() && right.asLong() > 0) {
+            return Optional.of(ConstantFactory.createFromNumeric(Math.floorMod(left.asLong(), right.asLong()), encoding));
+        }
         if (right.asNumeric().compareTo(BigInteger.ZERO) <= 0) {
             return Optional.empty();
         }
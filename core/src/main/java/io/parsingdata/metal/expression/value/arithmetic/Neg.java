@@ -36,6 +36,13 @@ public class Neg extends UnaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+        if (value.fitsInLong()) {
+            try {
+                return Optional.of(ConstantFactory.createFromNumeric(Math.negateExact(value.asLong()), encoding));
+            } catch (final ArithmeticException e) {
+                // The result does not fit in a long, so it is computed as a BigInteger.
+            }
+        }
         return Optional.of(ConstantFactory.createFromNumeric(value.asNumeric().negate(), encoding));
     }
 
@@ -37,9 +37,12 @@ public class And extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        if (left.fitsInLong() && right.fitsInLong()) {
+            return Optional.of(ConstantFactory.createFromBits(Bits.of(left) & Bits.of(right), left.slice.size, encoding));
+        }
         final BitSet leftBits = left.asBitSet();
         leftBits.and(right.asBitSet());
-        return Optional.of(ConstantFactory.createFromBitSet(leftBits, left.getValue().length, encoding));
+        return Optional.of(ConstantFactory.createFromBitSet(leftBits, left.slice.size, encoding));
     }
 
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value.bitwise;
+
+import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.value.Value;
+
+/**
+ * The bits of values of at most 8 bytes as a long, in the same order as
+ * {@link Value#asBitSet()}, so that bitwise operations on such values do not
+ * require a {@link java.util.BitSet}.
+ */
+final class Bits {
+
+    private Bits() {}
+
+    /**
+     * @param value A value for which {@link Value#fitsInLong()} returns true
+     * @return The bits of the value
+     */
+    static long of(final Value value) {
+        final long numeric = value.asLong();
+        return value.encoding.sign == Sign.SIGNED ? numeric & mask(value.slice.size) : numeric;
+    }
+
+    static long mask(final int size) {
+        return size >= Long.BYTES ? -1L : (1L << (size * Byte.SIZE)) - 1;
+    }
+
+}
@@ -37,9 +37,12 @@ public class Not extends UnaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+        if (value.fitsInLong()) {
+            return Optional.of(ConstantFactory.createFromBits(~Bits.of(value) & Bits.mask(value.slice.size), value.slice.size, encoding));
+        }
         final BitSet bits = value.asBitSet();
-        bits.flip(0, value.getValue().length * 8);
-        return Optional.of(ConstantFactory.createFromBitSet(bits, value.getValue().length, encoding));
+        bits.flip(0, value.slice.size * 8);
+        return Optional.of(ConstantFactory.createFromBitSet(bits, value.slice.size, encoding));
     }
 
 }
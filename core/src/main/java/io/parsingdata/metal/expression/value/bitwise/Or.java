@@ -37,9 +37,12 @@ public class Or extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        if (left.fitsInLong() && right.fitsInLong()) {
+            return Optional.of(ConstantFactory.createFromBits(Bits.of(left) | Bits.of(right), Math.max(left.slice.size, right.slice.size), encoding));
+        }
         final BitSet leftBits = left.asBitSet();
         leftBits.or(right.asBitSet());
-        final int minSize = Math.max(left.getValue().length, right.getValue().length);
+        final int minSize = Math.max(left.slice.size, right.slice.size);
         return Optional.of(ConstantFactory.createFromBitSet(leftBits, minSize, encoding));
     }
 
@@ -38,8 +38,13 @@ public class ShiftLeft extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value operand, final Value positions, final ParseGraph graph, final Encoding encoding) {
+        final int shiftLeft = (int)positions.asLong();
+        if (operand.fitsInLong() && shiftLeft >= 0 && Long.numberOfLeadingZeros(Bits.of(operand)) >= shiftLeft) {
+            final long bits = Bits.of(operand);
+            final int bitCount = Long.SIZE - Long.numberOfLeadingZeros(bits) + shiftLeft;
+            return Optional.of(ConstantFactory.createFromBits(bits << shiftLeft, (bitCount + 7) / 8, encoding));
+        }
         final BitSet leftBits = operand.asBitSet();
-        final int shiftLeft = positions.asNumeric().intValue();
         final int bitCount = leftBits.length() + shiftLeft;
         final BitSet out = new BitSet(bitCount);
         for (int i = leftBits.nextSetBit(0); i >= 0; i = leftBits.nextSetBit(i+1)) {
@@ -38,9 +38,12 @@ public class ShiftRight extends BinaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value operand, final Value positions, final ParseGraph graph, final Encoding encoding) {
+        final int shift = (int)positions.asLong();
+        if (operand.fitsInLong() && shift >= 0) {
+            return Optional.of(ConstantFactory.createFromBits(shift >= Long.SIZE ? 0 : Bits.of(operand) >>> shift, operand.slice.size, encoding));
+        }
         final BitSet leftBits = operand.asBitSet();
-        final int shift = positions.asNumeric().intValue();
-        return Optional.of(ConstantFactory.createFromBitSet(leftBits.get(shift, Math.max(shift, leftBits.length())), operand.getValue().length, encoding));
+        return Optional.of(ConstantFactory.createFromBitSet(leftBits.get(shift, Math.max(shift, leftBits.length())), operand.slice.size, encoding));
     }
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value.bitwise;
+
+import java.util.BitSet;
+import java.util.Optional;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.ConstantFactory;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+/**
+ * A {@link BinaryValueExpression} that implements the bitwise XOR operator.
+ */
+public class Xor extends BinaryValueExpression {
+
+    public Xor(final ValueExpression left, final ValueExpression right) {
+        super(left, right);
+    }
+
+    @Override
+    public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+        if (left.fitsInLong() && right.fitsInLong()) {
+            return Optional.of(ConstantFactory.createFromBits(Bits.of(left) ^ Bits.of(right), Math.max(left.slice.size, right.slice.size), encoding));
+        }
+        final BitSet leftBits = left.asBitSet();
+        leftBits.xor(right.asBitSet());
+        final int minSize = Math.max(left.slice.size, right.slice.size);
+        return Optional.of(ConstantFactory.createFromBitSet(leftBits, minSize, encoding));
+    }
+
+}
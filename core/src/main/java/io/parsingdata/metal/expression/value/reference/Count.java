@@ -29,6 +29,7 @@ import io.parsingdata.metal.encoding.Sign;
 import io.parsingdata.metal.expression.value.ConstantFactory;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.ValueSequence;
 
 /**
  * A {@link ValueExpression} that represents the amount of {@link Value}s
@@ -44,8 +45,14 @@ public class Count implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        final ImmutableList<Optional<Value>> values = operand.eval(graph, encoding);
-        return ImmutableList.create(Optional.of(fromNumeric(values.size)));
+        final ValueSequence values = operand.sequence(graph, encoding);
+        long size = values.size();
+        if (size < 0) {
+            for (size = 0; values.hasNext(); size++) {
+                values.skip();
+            }
+        }
+        return ImmutableList.create(Optional.of(fromNumeric(size)));
     }
 
     private static Value fromNumeric(final long length) {
@@ -27,6 +27,7 @@ import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.ValueSequence;
 
 /**
  * A {@link ValueExpression} that represents the first {@link Value} returned
@@ -42,12 +43,20 @@ public class First implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        final ImmutableList<Optional<Value>> list = operand.eval(graph, encoding);
-        return list.isEmpty() ? list : ImmutableList.create(getFirst(list));
+        final ValueSequence values = operand.sequence(graph, encoding);
+        return values.hasNext() ? ImmutableList.create(getFirst(values)) : new ImmutableList<>();
     }
 
-    private Optional<Value> getFirst(final ImmutableList<Optional<Value>> values) {
-        return values.tail.isEmpty() ? values.head : getFirst(values.tail);
+    private Optional<Value> getFirst(final ValueSequence values) {
+        // The first value is at the end of the sequence, so if the size is known the values before it are skipped.
+        if (values.size() > 1) {
+            values.skip(values.size() - 1);
+        }
+        Optional<Value> value = values.next();
+        while (values.hasNext()) {
+            value = values.next();
+        }
+        return value;
     }
 
     @Override
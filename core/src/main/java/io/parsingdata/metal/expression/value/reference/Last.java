@@ -27,6 +27,7 @@ import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.ValueSequence;
 
 /**
  * A {@link ValueExpression} that represents the last {@link Value} returned
@@ -42,8 +43,8 @@ public class Last implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        final ImmutableList<Optional<Value>> list = operand.eval(graph, encoding);
-        return list.isEmpty() ? list : ImmutableList.create(list.head);
+        final ValueSequence values = operand.sequence(graph, encoding);
+        return values.hasNext() ? ImmutableList.create(values.next()) : new ImmutableList<>();
     }
 
     @Override
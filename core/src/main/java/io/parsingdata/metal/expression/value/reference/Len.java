@@ -38,7 +38,7 @@ public class Len extends UnaryValueExpression {
 
     @Override
     public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
-        return Optional.of(fromNumeric(value.getValue().length));
+        return Optional.of(fromNumeric(value.slice.size));
     }
 
     private static Value fromNumeric(final long length) {
@@ -17,18 +17,20 @@
 package io.parsingdata.metal.expression.value.reference;
 
 import static io.parsingdata.metal.Util.checkNotNull;
-import static io.parsingdata.metal.data.selection.ByName.getAllValues;
-import static io.parsingdata.metal.data.transformation.Wrapping.wrap;
+import static io.parsingdata.metal.Util.hasListSemanticsOf;
+import static io.parsingdata.metal.data.transformation.Wrapping.unwrap;
 
 import java.util.Objects;
 import java.util.Optional;
 
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ImmutableVector;
 import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.ValueSequence;
 
 /**
  * A {@link ValueExpression} that represents all
@@ -43,6 +45,10 @@ import io.parsingdata.metal.expression.value.ValueExpression;
  *     <li>does match: foo.bar.thud.blat (partial name)</li>
  *     <li>does not match: foo.barthud.blat (partial names must be cut off at scope separator boundaries)</li>
  * </ul>
+ * The values are looked up in the {@link io.parsingdata.metal.data.NameIndex}
+ * of the graph, so evaluation does not traverse the graph. A
+ * {@link #sequence(ParseGraph, Encoding)} reads the values directly from the
+ * index, so it knows their number and skips over values in constant time.
  */
 public class NameRef implements ValueExpression {
 
@@ -54,7 +60,25 @@ public class NameRef implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        return wrap(getAllValues(graph, name));
+        return graph.getNames().get(name);
+    }
+
+    @Override
+    public ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+        // A subclass that overrides eval(ParseGraph, Encoding) implements its own list semantics.
+        if (!hasListSemanticsOf(this, NameRef.class)) { return ValueSequence.of(eval(graph, encoding)); }
+        return ValueSequence.of(graph.getNames().getVector(name));
+    }
+
+    @Override
+    public Value[] evalArray(final ParseGraph graph, final Encoding encoding) {
+        if (!hasListSemanticsOf(this, NameRef.class)) { return unwrap(eval(graph, encoding), Value[]::new); }
+        final ImmutableVector<Optional<Value>> values = graph.getNames().getVector(name);
+        final Value[] result = new Value[Math.toIntExact(values.size)];
+        for (int index = 0; index < result.length; index++) {
+            result[index] = values.get(values.size - 1 - index).get();
+        }
+        return result;
     }
 
     @Override
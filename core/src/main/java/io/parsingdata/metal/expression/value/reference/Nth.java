@@ -16,10 +16,10 @@
 
 package io.parsingdata.metal.expression.value.reference;
 
-import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.ZERO;
 
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
 
 import java.math.BigInteger;
 import java.util.Objects;
@@ -31,6 +31,7 @@ import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.ValueSequence;
 
 /**
  * A {@link ValueExpression} that returns an indexed list of {@link Value}s.
@@ -58,26 +59,66 @@ public class Nth implements ValueExpression {
 
     @Override
     public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
-        return eval(values.eval(graph, encoding), indices.eval(graph, encoding));
+        final ImmutableList<Optional<Value>> indices = this.indices.eval(graph, encoding);
+        if (indices.size == 1) {
+            // A single index only requires the value at that index, if the number of values is known.
+            final ValueSequence values = this.values.sequence(graph, encoding);
+            return values.size() >= 0 ? ImmutableList.create(nth(values, indices.head)) : eval(toList(values), indices);
+        }
+        return eval(values.eval(graph, encoding), indices);
     }
 
     private ImmutableList<Optional<Value>> eval(final ImmutableList<Optional<Value>> values, final ImmutableList<Optional<Value>> indices) {
-        if (indices.isEmpty()) { return new ImmutableList<>(); }
-        if (indices.head.isPresent()) {
-            final BigInteger index = indices.head.get().asNumeric();
-            final BigInteger valueCount = BigInteger.valueOf(values.size);
-            if (index.compareTo(valueCount) < 0 && index.compareTo(ZERO) >= 0) {
-                return eval(values, indices.tail).add(nth(values, valueCount.subtract(index).subtract(ONE)));
-            }
+        // With multiple indices, the values are copied once so that each of them is looked up in constant time.
+        final Object[] valueArray = indices.size > 1 ? toArray(values) : null;
+        ImmutableList<Optional<Value>> reversedResults = new ImmutableList<>();
+        for (ImmutableList<Optional<Value>> current = indices; !current.isEmpty(); current = current.tail) {
+            reversedResults = reversedResults.add(nth(values, valueArray, current.head));
+        }
+        return reverse(reversedResults);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Value> nth(final ImmutableList<Optional<Value>> values, final Object[] valueArray, final Optional<Value> index) {
+        if (!index.isPresent()) { return Optional.empty(); }
+        final BigInteger position = index.get().asNumeric();
+        if (position.compareTo(BigInteger.valueOf(values.size)) >= 0 || position.compareTo(ZERO) < 0) { return Optional.empty(); }
+        if (valueArray != null) { return (Optional<Value>)valueArray[position.intValue()]; }
+        ImmutableList<Optional<Value>> current = values;
+        for (long remaining = values.size - position.longValue() - 1; remaining > 0; remaining--) {
+            current = current.tail;
+        }
+        return current.head;
+    }
+
+    private Optional<Value> nth(final ValueSequence values, final Optional<Value> index) {
+        if (!index.isPresent()) { return Optional.empty(); }
+        final BigInteger position = index.get().asNumeric();
+        final long size = values.size();
+        if (position.compareTo(BigInteger.valueOf(size)) >= 0 || position.compareTo(ZERO) < 0) { return Optional.empty(); }
+        values.skip(size - position.longValue() - 1);
+        return values.next();
+    }
+
+    private static ImmutableList<Optional<Value>> toList(final ValueSequence values) {
+        ImmutableList<Optional<Value>> reversedValues = new ImmutableList<>();
+        while (values.hasNext()) {
+            reversedValues = reversedValues.add(values.next());
         }
-        return eval(values, indices.tail).add(Optional.empty());
+        return reverse(reversedValues);
     }
 
-    private Optional<Value> nth(final ImmutableList<Optional<Value>> values, final BigInteger index) {
-        if (index.equals(ZERO)) {
-            return values.head;
+    /**
+     * @param values The list to copy
+     * @return The elements of the provided list, indexed from the bottom up
+     */
+    private static Object[] toArray(final ImmutableList<Optional<Value>> values) {
+        final Object[] array = new Object[Math.toIntExact(values.size)];
+        int index = array.length;
+        for (ImmutableList<Optional<Value>> current = values; !current.isEmpty(); current = current.tail) {
+            array[--index] = current.head;
         }
-        return nth(values.tail, index.subtract(ONE));
+        return array;
     }
 
     @Override
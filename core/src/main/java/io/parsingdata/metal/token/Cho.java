@@ -58,12 +58,11 @@ public class Cho extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final Environment environment, final Encoding encoding, final ImmutableList<Token> list) throws IOException {
-        if (list.isEmpty()) {
-            return failure();
+        for (ImmutableList<Token> remaining = list; !remaining.isEmpty(); remaining = remaining.tail) {
+            final Optional<Environment> result = remaining.head.parse(scope, environment, encoding);
+            if (result.isPresent()) { return result; }
         }
-        final Optional<Environment> result = list.head.parse(scope, environment, encoding);
-        if (result.isPresent()) { return result; }
-        return iterate(scope, environment, encoding, list.tail);
+        return failure();
     }
 
     @Override
@@ -19,6 +19,8 @@ package io.parsingdata.metal.token;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
 import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -47,20 +49,22 @@ import io.parsingdata.metal.expression.value.ValueExpression;
 public class Def extends Token {
 
     public final ValueExpression size;
+    private final ValueExpression compiledSize;
 
     public Def(final String name, final ValueExpression size, final Encoding encoding) {
         super(name, encoding);
         this.size = checkNotNull(size, "size");
+        this.compiledSize = compile(this.size);
     }
 
     @Override
     protected Optional<Environment> parseImpl(final String scope, final Environment environment, final Encoding encoding) throws IOException {
-        final ImmutableList<Optional<Value>> sizes = size.eval(environment.order, encoding);
+        final ImmutableList<Optional<Value>> sizes = eval(compiledSize, environment.order, encoding, environment.cache);
         if (sizes.size != 1 || !sizes.head.isPresent()) {
             return failure();
         }
         // TODO: Handle value expression results as BigInteger (#16)
-        final int dataSize = sizes.head.get().asNumeric().intValue();
+        final int dataSize = (int)sizes.head.get().asLong();
         if (dataSize < 0) {
             return failure();
         }
@@ -19,6 +19,8 @@ package io.parsingdata.metal.token;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
 import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -44,19 +46,21 @@ import io.parsingdata.metal.expression.value.ValueExpression;
 public class Nod extends Token {
 
     public final ValueExpression size;
+    private final ValueExpression compiledSize;
 
     public Nod(final String name, final ValueExpression size, final Encoding encoding) {
         super(name, encoding);
         this.size = checkNotNull(size, "size");
+        this.compiledSize = compile(this.size);
     }
 
     @Override
     protected Optional<Environment> parseImpl(final String scope, final Environment environment, final Encoding encoding) throws IOException {
-        final ImmutableList<Optional<Value>> sizes = size.eval(environment.order, encoding);
+        final ImmutableList<Optional<Value>> sizes = eval(compiledSize, environment.order, encoding, environment.cache);
         if (sizes.size != 1 || !sizes.head.isPresent()) {
             return failure();
         }
-        final long skipSize = sizes.head.get().asNumeric().longValue();
+        final long skipSize = sizes.head.get().asLong();
         if (skipSize < 0) {
             return failure();
         }
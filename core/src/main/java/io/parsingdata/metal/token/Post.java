@@ -19,6 +19,8 @@ package io.parsingdata.metal.token;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
 import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -43,11 +45,13 @@ public class Post extends Token {
 
     public final Token token;
     public final Expression predicate;
+    private final Expression compiledPredicate;
 
     public Post(final String name, final Token token, final Expression predicate, final Encoding encoding) {
         super(name, encoding);
         this.token = checkNotNull(token, "token");
         this.predicate = checkNotNull(predicate, "predicate");
+        this.compiledPredicate = compile(this.predicate);
     }
 
     @Override
@@ -55,7 +59,7 @@ public class Post extends Token {
         final Optional<Environment> result = token.parse(scope, environment.addBranch(this), encoding);
         if (result.isPresent()) {
             final Environment newEnvironment = result.get();
-            return predicate.eval(newEnvironment.order, encoding) ? success(newEnvironment.closeBranch()) : failure();
+            return eval(compiledPredicate, newEnvironment.order, encoding, newEnvironment.cache) ? success(newEnvironment.closeBranch()) : failure();
         }
         return failure();
     }
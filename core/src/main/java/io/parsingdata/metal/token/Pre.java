@@ -19,6 +19,8 @@ package io.parsingdata.metal.token;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
 import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -44,16 +46,18 @@ public class Pre extends Token {
 
     public final Token token;
     public final Expression predicate;
+    private final Expression compiledPredicate;
 
     public Pre(final String name, final Token token, final Expression predicate, final Encoding encoding) {
         super(name, encoding);
         this.token = checkNotNull(token, "token");
         this.predicate = checkNotNull(predicate, "predicate");
+        this.compiledPredicate = compile(this.predicate);
     }
 
     @Override
     protected Optional<Environment> parseImpl(final String scope, final Environment environment, final Encoding encoding) throws IOException {
-        if (!predicate.eval(environment.order, encoding)) {
+        if (!eval(compiledPredicate, environment.order, encoding, environment.cache)) {
             return failure();
         }
         final Optional<Environment> result = token.parse(scope, environment.addBranch(this), encoding);
@@ -51,11 +51,11 @@ public class Rep extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final Environment environment, final Encoding encoding) throws IOException {
-        final Optional<Environment> result = token.parse(scope, environment, encoding);
-        if (result.isPresent()) {
-            return iterate(scope, result.get(), encoding);
+        Environment current = environment;
+        for (Optional<Environment> result = token.parse(scope, current, encoding); result.isPresent(); result = token.parse(scope, current, encoding)) {
+            current = result.get();
         }
-        return success(environment);
+        return success(current);
     }
 
     @Override
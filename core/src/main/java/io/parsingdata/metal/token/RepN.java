@@ -59,7 +59,7 @@ public class RepN extends Token {
         if (counts.size != 1 || !counts.head.isPresent()) {
             return failure();
         }
-        final Optional<Environment> result = iterate(scope, environment.addBranch(this), encoding, counts.head.get().asNumeric().longValue());
+        final Optional<Environment> result = iterate(scope, environment.addBranch(this), encoding, counts.head.get().asLong());
         if (result.isPresent()) {
             return success(result.get().closeBranch());
         }
@@ -67,14 +67,15 @@ public class RepN extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final Environment environment, final Encoding encoding, final long count) throws IOException {
-        if (count <= 0) {
-            return success(environment);
+        Environment current = environment;
+        for (long remaining = count; remaining > 0; remaining--) {
+            final Optional<Environment> result = token.parse(scope, current, encoding);
+            if (!result.isPresent()) {
+                return failure();
+            }
+            current = result.get();
         }
-        final Optional<Environment> result = token.parse(scope, environment, encoding);
-        if (result.isPresent()) {
-            return iterate(scope, result.get(), encoding, count - 1);
-        }
-        return failure();
+        return success(current);
     }
 
     @Override
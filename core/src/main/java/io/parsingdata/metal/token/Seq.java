@@ -58,14 +58,15 @@ public class Seq extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final Environment environment, final Encoding encoding, final ImmutableList<Token> list) throws IOException {
-        if (list.isEmpty()) {
-            return success(environment);
+        Environment current = environment;
+        for (ImmutableList<Token> remaining = list; !remaining.isEmpty(); remaining = remaining.tail) {
+            final Optional<Environment> result = remaining.head.parse(scope, current, encoding);
+            if (!result.isPresent()) {
+                return result;
+            }
+            current = result.get();
         }
-        final Optional<Environment> result = list.head.parse(scope, environment, encoding);
-        if (result.isPresent()) {
-            return iterate(scope, result.get(), encoding, list.tail);
-        }
-        return result;
+        return success(current);
     }
 
     @Override
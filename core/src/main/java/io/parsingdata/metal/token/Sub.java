@@ -72,17 +72,20 @@ public class Sub extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final ImmutableList<Optional<Value>> addresses, final Environment environment, final Encoding encoding) throws IOException {
-        if (!addresses.head.isPresent()) {
-            return failure();
-        }
-        final long offset = addresses.head.get().asNumeric().longValue();
-        final Source source = environment.source;
-        final Optional<Environment> result = parse(scope, offset, source, environment, encoding);
-        if (result.isPresent()) {
-            if (addresses.tail.isEmpty()) { return result; }
-            return iterate(scope, addresses.tail, result.get(), encoding);
+        Environment current = environment;
+        for (ImmutableList<Optional<Value>> remaining = addresses; !remaining.isEmpty(); remaining = remaining.tail) {
+            if (!remaining.head.isPresent()) {
+                return failure();
+            }
+            final long offset = remaining.head.get().asLong();
+            final Source source = current.source;
+            final Optional<Environment> result = parse(scope, offset, source, current, encoding);
+            if (!result.isPresent()) {
+                return failure();
+            }
+            current = result.get();
         }
-        return failure();
+        return success(current);
     }
 
     private Optional<Environment> parse(final String scope, final long offset, final Source source, final Environment environment, final Encoding encoding) throws IOException {
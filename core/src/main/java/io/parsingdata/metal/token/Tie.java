@@ -63,21 +63,26 @@ public class Tie extends Token {
         }
         final Optional<Environment> result = iterate(scope, dataResult, 0, environment.addBranch(this), encoding);
         if (result.isPresent()) {
-            return success(new Environment(result.get().closeBranch().order, environment.source, environment.offset, environment.callbacks));
+            final Environment closed = result.get().closeBranch();
+            return success(new Environment(closed.order, environment.source, environment.offset, environment.callbacks, environment.pruner, environment.cache, closed.recorder));
         }
         return failure();
     }
 
     private Optional<Environment> iterate(final String scope, final ImmutableList<Optional<Value>> values, final int index, final Environment environment, final Encoding encoding) throws IOException {
-        if (!values.head.isPresent()) {
-            return failure();
-        }
-        final Optional<Environment> result = token.parse(scope, environment.source(dataExpression, index, environment, encoding), encoding);
-        if (result.isPresent()) {
-            if (values.tail.isEmpty()) { return result; }
-            return iterate(scope, values.tail, index + 1, result.get(), encoding);
+        Environment current = environment;
+        int currentIndex = index;
+        for (ImmutableList<Optional<Value>> remaining = values; !remaining.isEmpty(); remaining = remaining.tail) {
+            if (!remaining.head.isPresent()) {
+                return failure();
+            }
+            final Optional<Environment> result = token.parse(scope, current.source(dataExpression, currentIndex++, current, encoding), encoding);
+            if (!result.isPresent()) {
+                return failure();
+            }
+            current = result.get();
         }
-        return failure();
+        return success(current);
     }
 
     @Override
@@ -24,6 +24,7 @@ import java.util.Optional;
 
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.encoding.Encoding;
 
 /**
@@ -43,6 +44,10 @@ import io.parsingdata.metal.encoding.Encoding;
  * <pre>{@code
  * scope + SEPARATOR + name
  * }</pre>
+ * The scopes created by a token are cached, so that they are only constructed
+ * again when a token is used at many different positions in a format. The
+ * same holds for the partial names of these scopes, which are used to index
+ * values by name (see {@link #getPartialNames(String)}).
  * The <code>encoding</code> may be <code>null</code>. If it is not, it
  * overrides outer encoding specifications and is passed to nested tokens
  * instead. As such it can itself be overridden by explicit specifications in
@@ -53,9 +58,17 @@ public abstract class Token {
     public static final String NO_NAME = "";
     public static final String SEPARATOR = ".";
 
+    private static final int SCOPE_CACHE_SIZE = 8;
+
     public final String name;
     public final Encoding encoding;
 
+    private static final ImmutableList<String> NO_PARTIAL_NAMES = new ImmutableList<>();
+
+    // The scopes created by this token, most recent first. Since scopes are compared by identity, a token at a fixed
+    // position in a format creates its scope only once and all values parsed there share the same name instance.
+    private volatile Scope[] scopes = new Scope[0];
+
     protected Token(final String name, final Encoding encoding) {
         this.name = checkNotNull(name, "name");
         this.encoding = encoding;
@@ -75,7 +88,40 @@ public abstract class Token {
     protected abstract Optional<Environment> parseImpl(final String scope, final Environment environment, final Encoding encoding) throws IOException;
 
     private String makeScope(final String scope) {
-        return scope + (scope.isEmpty() || name.isEmpty() ? NO_NAME : SEPARATOR) + name;
+        if (name.isEmpty()) { return scope; }
+        if (scope.isEmpty()) { return name; }
+        final Scope[] cache = scopes;
+        for (final Scope cached : cache) {
+            if (cached.outer == scope) { return cached.name; }
+        }
+        final Scope result = new Scope(scope, scope + SEPARATOR + name);
+        final Scope[] newCache = new Scope[Math.min(cache.length + 1, SCOPE_CACHE_SIZE)];
+        newCache[0] = result;
+        System.arraycopy(cache, 0, newCache, 1, newCache.length - 1);
+        scopes = newCache;
+        return result.name;
+    }
+
+    /**
+     * @param scope A full name, such as the name of a value parsed by this token
+     * @return The names that result from omitting a leading part of the scope of <code>scope</code> (see {@link io.parsingdata.metal.data.ParseValue#matches(String)}), which are shared by all values with a name created by this token
+     */
+    public ImmutableList<String> getPartialNames(final String scope) {
+        for (final Scope cached : scopes) {
+            if (cached.name == scope) {
+                if (cached.partialNames == null) { cached.partialNames = makePartialNames(scope); }
+                return cached.partialNames;
+            }
+        }
+        return makePartialNames(checkNotNull(scope, "scope"));
+    }
+
+    private static ImmutableList<String> makePartialNames(final String scope) {
+        ImmutableList<String> partialNames = NO_PARTIAL_NAMES;
+        for (int index = scope.indexOf(SEPARATOR); index >= 0; index = scope.indexOf(SEPARATOR, index + 1)) {
+            partialNames = partialNames.add(scope.substring(index + SEPARATOR.length()));
+        }
+        return partialNames;
     }
 
     public boolean isLocal() { return true; }
@@ -86,6 +132,20 @@ public abstract class Token {
         return name.isEmpty() ? NO_NAME : name + ",";
     }
 
+    private static class Scope {
+
+        final String outer;
+        final String name;
+        // Computed on first use. Since the list is immutable, concurrent parses at worst compute it more than once.
+        ImmutableList<String> partialNames;
+
+        Scope(final String outer, final String name) {
+            this.outer = outer;
+            this.name = name;
+        }
+
+    }
+
     @Override
     public boolean equals(final Object obj) {
         return Util.notNullAndSameClass(this, obj)
@@ -20,6 +20,8 @@ import static io.parsingdata.metal.Shorthand.expTrue;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
 import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -46,11 +48,13 @@ public class While extends Token {
 
     public final Token token;
     public final Expression predicate;
+    private final Expression compiledPredicate;
 
     public While(final String name, final Token token, final Expression predicate, final Encoding encoding) {
         super(name, encoding);
         this.token = checkNotNull(token, "token");
         this.predicate = predicate == null ? expTrue() : predicate;
+        this.compiledPredicate = compile(this.predicate);
     }
 
     @Override
@@ -63,14 +67,15 @@ public class While extends Token {
     }
 
     private Optional<Environment> iterate(final String scope, final Environment environment, final Encoding encoding) throws IOException {
-        if (!predicate.eval(environment.order, encoding)) {
-            return success(environment);
+        Environment current = environment;
+        while (eval(compiledPredicate, current.order, encoding, current.cache)) {
+            final Optional<Environment> result = token.parse(scope, current, encoding);
+            if (!result.isPresent()) {
+                return failure();
+            }
+            current = result.get();
         }
-        final Optional<Environment> result = token.parse(scope, environment, encoding);
-        if (result.isPresent()) {
-            return iterate(scope, result.get(), encoding);
-        }
-        return failure();
+        return success(current);
     }
 
     @Override
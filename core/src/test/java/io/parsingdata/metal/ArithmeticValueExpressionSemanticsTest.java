@@ -21,6 +21,8 @@ import static io.parsingdata.metal.Shorthand.con;
 import static io.parsingdata.metal.Shorthand.def;
 import static io.parsingdata.metal.Shorthand.div;
 import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.max;
+import static io.parsingdata.metal.Shorthand.min;
 import static io.parsingdata.metal.Shorthand.mod;
 import static io.parsingdata.metal.Shorthand.mul;
 import static io.parsingdata.metal.Shorthand.neg;
@@ -92,7 +94,15 @@ public class ArithmeticValueExpressionSemanticsTest extends ParameterizedParse {
             { "[signed] -(3) == -3", neg, stream(3, -3), signed(), true },
             { "[signed] -(0) == 0", neg, stream(0, 0), signed(), true },
             { "[signed] -(4) == 4", neg, stream(4, 4), signed(), false },
-            { "[signed] -(-5) == -5", neg, stream(-5, -5), signed(), false }
+            { "[signed] -(-5) == -5", neg, stream(-5, -5), signed(), false },
+            { "[signed] min(-3, 2) == -3", min, stream(-3, 2, -3), signed(), true },
+            { "[signed] min(3, 2) == 2", min, stream(3, 2, 2), signed(), true },
+            { "[signed] min(3, 2) == 3", min, stream(3, 2, 3), signed(), false },
+            { "[unsigned] min(253, 2) == 2", min, stream(-3, 2, 2), enc(), true },
+            { "[signed] max(-3, 2) == 2", max, stream(-3, 2, 2), signed(), true },
+            { "[signed] max(3, 3) == 3", max, stream(3, 3, 3), signed(), true },
+            { "[signed] max(3, 2) == 2", max, stream(3, 2, 2), signed(), false },
+            { "[unsigned] max(253, 2) == 253", max, stream(-3, 2, -3), enc(), true }
         });
     }
 
@@ -102,6 +112,8 @@ public class ArithmeticValueExpressionSemanticsTest extends ParameterizedParse {
     private static Token mul2 = binaryValueExpressionToken(mul(ref("a"), ref("b")), 2);
     private static Token sub = binaryValueExpressionToken(sub(ref("a"), ref("b")), 1);
     private static Token mod = binaryValueExpressionToken(mod(ref("a"), ref("b")), 1);
+    private static Token min = binaryValueExpressionToken(min(ref("a"), ref("b")), 1);
+    private static Token max = binaryValueExpressionToken(max(ref("a"), ref("b")), 1);
     private static Token neg = unaryValueExpressionToken(neg(ref("a")));
 
     private static Token singleToken(final String firstName, final String secondName, final int resultSize, final ValueExpression valueExpression) {
@@ -40,6 +40,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 
 import org.junit.Test;
@@ -72,11 +74,15 @@ import io.parsingdata.metal.expression.value.Elvis;
 import io.parsingdata.metal.expression.value.Expand;
 import io.parsingdata.metal.expression.value.FoldLeft;
 import io.parsingdata.metal.expression.value.FoldRight;
+import io.parsingdata.metal.expression.value.Reducer;
 import io.parsingdata.metal.expression.value.Reverse;
+import io.parsingdata.metal.expression.value.Transform;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
 import io.parsingdata.metal.expression.value.arithmetic.Add;
 import io.parsingdata.metal.expression.value.arithmetic.Div;
+import io.parsingdata.metal.expression.value.arithmetic.Max;
+import io.parsingdata.metal.expression.value.arithmetic.Min;
 import io.parsingdata.metal.expression.value.arithmetic.Mod;
 import io.parsingdata.metal.expression.value.arithmetic.Mul;
 import io.parsingdata.metal.expression.value.arithmetic.Neg;
@@ -85,6 +91,7 @@ import io.parsingdata.metal.expression.value.bitwise.Not;
 import io.parsingdata.metal.expression.value.bitwise.Or;
 import io.parsingdata.metal.expression.value.bitwise.ShiftLeft;
 import io.parsingdata.metal.expression.value.bitwise.ShiftRight;
+import io.parsingdata.metal.expression.value.bitwise.Xor;
 import io.parsingdata.metal.expression.value.reference.Count;
 import io.parsingdata.metal.expression.value.reference.First;
 import io.parsingdata.metal.expression.value.reference.Last;
@@ -122,7 +129,8 @@ public class AutoEqualityTest {
     private static final List<Object> VALUE_EXPRESSIONS = Arrays.asList(con(1), con(2));
     private static final List<Object> EXPRESSIONS = Arrays.asList(expTrue(), not(expTrue()));
     private static final List<Object> VALUES = Arrays.asList(ConstantFactory.createFromString("a", enc()), ConstantFactory.createFromString("b", enc()), ConstantFactory.createFromNumeric(1L, signed()));
-    private static final List<Object> REDUCERS = Arrays.asList((BinaryOperator<ValueExpression>) Shorthand::cat, (BinaryOperator<ValueExpression>) Shorthand::div);
+    private static final List<Object> REDUCERS = Arrays.asList((BinaryOperator<ValueExpression>) Shorthand::cat, (BinaryOperator<ValueExpression>) Shorthand::div, Reducer.SUM);
+    private static final List<Object> FUNCTIONS = Arrays.asList((BiFunction<Value, Encoding, Optional<Value>>) (value, encoding) -> Optional.of(value), (BiFunction<Value, Encoding, Optional<Value>>) (value, encoding) -> Optional.empty());
     private static final List<Object> SLICES = Arrays.asList(createFromBytes(new byte[] { 1, 2 }), new Slice(new DataExpressionSource(ref("a"), 1, ParseGraph.EMPTY, enc()), 0, new byte[] { 0, 0 }));
     private static final List<Object> BYTE_ARRAYS = Arrays.asList(new byte[] { 0 }, new byte[] { 1, 2 }, new byte[] {});
     private static final List<Object> SOURCES = Arrays.asList(new ConstantSource(new byte[] {}), new DataExpressionSource(ref("x"), 8, ParseGraph.EMPTY.add(PARSEVALUE), signed()));
@@ -140,6 +148,7 @@ public class AutoEqualityTest {
         put(Expression.class, EXPRESSIONS);
         put(Value.class, VALUES);
         put(BinaryOperator.class, REDUCERS);
+        put(BiFunction.class, FUNCTIONS);
         put(Slice.class, SLICES);
         put(byte[].class, BYTE_ARRAYS);
         put(Source.class, SOURCES);
@@ -156,13 +165,15 @@ public class AutoEqualityTest {
             Cho.class, Def.class, Nod.class, Pre.class, Rep.class, RepN.class, Seq.class, Sub.class, Tie.class,
             TokenRef.class, While.class, Post.class,
             Len.class, Offset.class, Neg.class, Not.class, Count.class, First.class, Last.class, Reverse.class,
-            And.class, Or.class, ShiftLeft.class, ShiftRight.class, Add.class, Div.class, Mod.class, Mul.class,
+            And.class, Or.class, Xor.class, ShiftLeft.class, ShiftRight.class, Add.class, Div.class, Mod.class, Mul.class,
+            Min.class, Max.class,
             io.parsingdata.metal.expression.value.arithmetic.Sub.class, Cat.class, Eq.class, EqNum.class, EqStr.class,
             GtNum.class, LtNum.class, Nth.class, Elvis.class, io.parsingdata.metal.expression.logical.And.class,
             io.parsingdata.metal.expression.logical.Or.class, FoldLeft.class, FoldRight.class, Value.class,
             ParseValue.class, io.parsingdata.metal.expression.logical.Not.class, Const.class, NameRef.class,
             io.parsingdata.metal.expression.value.reference.TokenRef.class, ConstantSource.class, Slice.class,
-            ParseReference.class, DataExpressionSource.class, ParseGraph.class, ByteStreamSource.class, Expand.class
+            ParseReference.class, DataExpressionSource.class, ParseGraph.class, ByteStreamSource.class, Expand.class,
+            Transform.class
         );
     }
 
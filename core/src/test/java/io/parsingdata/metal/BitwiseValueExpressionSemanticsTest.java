@@ -26,6 +26,7 @@ import static io.parsingdata.metal.Shorthand.ref;
 import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.Shorthand.shl;
 import static io.parsingdata.metal.Shorthand.shr;
+import static io.parsingdata.metal.Shorthand.xor;
 import static io.parsingdata.metal.util.EncodingFactory.enc;
 import static io.parsingdata.metal.util.EnvironmentFactory.stream;
 
@@ -62,6 +63,12 @@ public class BitwiseValueExpressionSemanticsTest extends ParameterizedParse {
             { "[170, 85, 85, 170, 255, 255] a b or(a, b)", simpleOr(2), stream(170, 85, 85, 170, 255, 255), enc(), true },
             { "[0, 255, 255, 0, 255, 255] a b or(a, b)", simpleOr(2), stream(0, 255, 255, 0, 255, 255), enc(), true },
             { "[255, 0, 0, 255, 255, 255] a b or(a, b)", simpleOr(2), stream(255, 0, 0, 255, 255, 255), enc(), true },
+            { "[170, 85, 255] a b xor(a, b)", simpleXor(1), stream(170, 85, 255), enc(), true },
+            { "[255, 255, 0] a b xor(a, b)", simpleXor(1), stream(255, 255, 0), enc(), true },
+            { "[15, 60, 51] a b xor(a, b)", simpleXor(1), stream(15, 60, 51), enc(), true },
+            { "[1, 1, 1] a b xor(a, b)", simpleXor(1), stream(1, 1, 1), enc(), false },
+            { "[170, 85, 85, 170, 255, 255] a b xor(a, b)", simpleXor(2), stream(170, 85, 85, 170, 255, 255), enc(), true },
+            { "[255, 0, 255, 255, 0, 255] a b xor(a, b)", simpleXor(2), stream(255, 0, 255, 255, 0, 255), enc(), true },
             { "[85, 170] a a shl 1", simpleShiftLeft(1, 1), stream(85, 170), enc(), true },
             { "[0, 85, 170, 0] a a shl 9", simpleShiftLeft(2, 9), stream(0, 85, 170, 0), enc(), true },
             { "[1, 3] a a shl 1", simpleShiftLeft(1, 1), stream(1, 3), enc(), false },
@@ -91,6 +98,13 @@ public class BitwiseValueExpressionSemanticsTest extends ParameterizedParse {
             def("or(a, b)", con(size), eq(or(ref("a"), ref("b")))));
     }
 
+    private static Token simpleXor(final int size) {
+        return
+        seq(def("a", con(size)),
+            def("b", con(size)),
+            def("xor(a, b)", con(size), eq(xor(ref("a"), ref("b")))));
+    }
+
     private static Token simpleShiftLeft(final int size, final int shiftLeft) {
         return
         seq(def("a", con(size)),
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ImmutableVector;
+
+public class ImmutableVectorTest {
+
+    // Crosses the boundaries of the tail, of a full first level and of a full second level of the trie.
+    private static final int SIZE = 32 * 32 * 32 + 33;
+
+    @Test
+    public void addAndGet() {
+        ImmutableVector<Integer> vector = new ImmutableVector<>();
+        assertTrue(vector.isEmpty());
+        for (int index = 0; index < SIZE; index++) {
+            vector = vector.add(index);
+        }
+        assertEquals(SIZE, vector.size);
+        for (int index = 0; index < SIZE; index++) {
+            assertEquals(index, vector.get(index).intValue());
+        }
+    }
+
+    @Test
+    public void persistent() {
+        ImmutableVector<Integer> vector = new ImmutableVector<>();
+        final List<ImmutableVector<Integer>> versions = new ArrayList<>();
+        for (int index = 0; index < SIZE; index++) {
+            versions.add(vector);
+            vector = vector.add(index);
+        }
+        versions.add(vector);
+        for (int size = 0; size <= SIZE; size += 31) {
+            assertEquals(size, versions.get(size).size);
+            if (size > 0) { assertEquals(size - 1, versions.get(size).get(size - 1).intValue()); }
+        }
+        // Adding to an older version does not change the versions created from it.
+        assertEquals(-1, versions.get(1024).add(-1).get(1024).intValue());
+        assertEquals(1024, vector.get(1024).intValue());
+    }
+
+    @Test
+    public void addVector() {
+        ImmutableVector<Integer> first = new ImmutableVector<>();
+        ImmutableVector<Integer> second = new ImmutableVector<>();
+        for (int index = 0; index < 100; index++) {
+            first = first.add(index);
+            second = second.add(100 + index);
+        }
+        final ImmutableVector<Integer> result = first.add(second);
+        assertEquals(200, result.size);
+        for (int index = 0; index < 200; index++) {
+            assertEquals(index, result.get(index).intValue());
+        }
+        assertEquals(first, first.add(new ImmutableVector<>()));
+        assertEquals(second, new ImmutableVector<Integer>().add(second));
+    }
+
+    @Test
+    public void toList() {
+        ImmutableVector<Integer> vector = new ImmutableVector<>();
+        for (int index = 0; index < 100; index++) {
+            vector = vector.add(index);
+        }
+        int expected = 99;
+        for (ImmutableList<Integer> list = vector.toList(); !list.isEmpty(); list = list.tail) {
+            assertEquals(expected--, list.head.intValue());
+        }
+        assertEquals(-1, expected);
+        assertTrue(new ImmutableVector<>().toList().isEmpty());
+    }
+
+    @Test
+    public void equality() {
+        final ImmutableVector<Integer> vector = new ImmutableVector<Integer>().add(1).add(2);
+        assertEquals(vector, new ImmutableVector<Integer>().add(1).add(2));
+        assertEquals(vector.hashCode(), new ImmutableVector<Integer>().add(1).add(2).hashCode());
+        assertNotEquals(vector, new ImmutableVector<Integer>().add(2).add(1));
+        assertNotEquals(vector, vector.add(3));
+        assertFalse(vector.equals(null));
+        assertEquals(">1>2", vector.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getOutOfBounds() {
+        new ImmutableVector<Integer>().add(1).get(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getNegative() {
+        new ImmutableVector<Integer>().add(1).get(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addNull() {
+        new ImmutableVector<Integer>().add((Integer)null);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.foldLeft;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.nth;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.rev;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.whl;
+import static io.parsingdata.metal.data.selection.ByToken.getAllRoots;
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+/**
+ * Parses inputs with more repetitions than fit on the default thread stack
+ * when tokens, graphs and lists are processed recursively.
+ */
+public class LongInputTest {
+
+    private static final int SIZE = 20000;
+
+    private static final Token BYTE = def("b", con(1));
+
+    private static ParseGraph parse(final Token token) throws IOException {
+        final Optional<Environment> result = token.parse(new Environment(new InMemoryByteStream(new byte[SIZE])), enc());
+        assertTrue(result.isPresent());
+        assertEquals(SIZE, result.get().offset);
+        return result.get().order;
+    }
+
+    private static ImmutableList<Optional<Value>> eval(final ValueExpression expression, final ParseGraph graph) {
+        return expression.eval(graph, enc());
+    }
+
+    @Test
+    public void rep() throws IOException {
+        checkGraph(parse(Shorthand.rep(BYTE)));
+    }
+
+    @Test
+    public void repN() throws IOException {
+        checkGraph(parse(repn(BYTE, con(SIZE))));
+    }
+
+    @Test
+    public void whileSeq() throws IOException {
+        checkGraph(parse(whl(seq(BYTE, BYTE), ltNum(count(ref("b")), con(SIZE)))));
+    }
+
+    private void checkGraph(final ParseGraph graph) {
+        assertEquals(SIZE, eval(count(ref("b")), graph).head.get().asNumeric().intValue());
+        assertEquals(SIZE, eval(add(ref("b"), ref("b")), graph).size);
+        assertEquals(SIZE, eval(rev(ref("b")), graph).size);
+        assertEquals(0, eval(first(ref("b")), graph).head.get().asNumeric().intValue());
+        assertEquals(1, eval(nth(ref("b"), con(SIZE - 1)), graph).size);
+        assertEquals(SIZE, eval(nth(ref("b"), ref("b")), graph).size);
+        assertEquals(0, eval(foldLeft(ref("b"), Shorthand::add), graph).head.get().asNumeric().intValue());
+        assertTrue(eq(ref("b"), ref("b")).eval(graph, enc()));
+        assertEquals(SIZE, getAllRoots(graph, BYTE).size);
+        final ParseGraph reversed = reverse(graph);
+        final ParseGraph copy = reverse(reverse(reversed));
+        assertEquals(reversed, copy);
+        assertEquals(reversed.hashCode(), copy.hashCode());
+        assertEquals(reversed.toString(), copy.toString());
+    }
+
+}
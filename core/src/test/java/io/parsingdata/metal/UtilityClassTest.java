@@ -31,6 +31,7 @@ import io.parsingdata.metal.data.transformation.Reversal;
 import io.parsingdata.metal.data.transformation.Wrapping;
 import io.parsingdata.metal.encoding.ByteOrder;
 import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.ExpressionCompiler;
 import io.parsingdata.metal.expression.value.ConstantFactory;
 
 public class UtilityClassTest {
@@ -47,6 +48,7 @@ public class UtilityClassTest {
         checkUtilityClass(ByToken.class);
         checkUtilityClass(ByType.class);
         checkUtilityClass(ConstantFactory.class);
+        checkUtilityClass(ExpressionCompiler.class);
         checkUtilityClass(Wrapping.class);
     }
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class CachingByteStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class CountingByteStream extends InMemoryByteStream {
+
+        int reads = 0;
+
+        CountingByteStream(final byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public int read(final long offset, final byte[] data) throws IOException {
+            reads++;
+            return super.read(offset, data);
+        }
+
+    }
+
+    @Test
+    public void readAcrossPages() throws IOException {
+        final CountingByteStream input = new CountingByteStream(toByteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        final CachingByteStream stream = new CachingByteStream(input, 4, 2);
+        final byte[] data = new byte[6];
+        assertEquals(6, stream.read(1, data));
+        assertArrayEquals(toByteArray(1, 2, 3, 4, 5, 6), data);
+        assertEquals(2, input.reads);
+        assertEquals(0, stream.getHits());
+        assertEquals(2, stream.getMisses());
+        final byte[] more = new byte[2];
+        assertEquals(2, stream.read(4, more));
+        assertArrayEquals(toByteArray(4, 5), more);
+        assertEquals(2, input.reads);
+        assertEquals(1, stream.getHits());
+    }
+
+    @Test
+    public void readBeyondEnd() throws IOException {
+        final CachingByteStream stream = new CachingByteStream(new InMemoryByteStream(toByteArray(0, 1, 2, 3, 4, 5)), 4, 2);
+        final byte[] data = new byte[4];
+        assertEquals(2, stream.read(4, data));
+        assertEquals(4, data[0]);
+        assertEquals(5, data[1]);
+        assertEquals(0, stream.read(8, data));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        final CountingByteStream input = new CountingByteStream(toByteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        final CachingByteStream stream = new CachingByteStream(input, 2, 2);
+        final byte[] data = new byte[1];
+        stream.read(0, data);
+        stream.read(2, data);
+        stream.read(0, data);
+        stream.read(4, data); // evicts the page at offset 2
+        stream.read(0, data);
+        assertEquals(3, input.reads);
+        stream.read(2, data);
+        assertEquals(4, input.reads);
+        assertEquals(2, stream.getHits());
+        assertEquals(4, stream.getMisses());
+    }
+
+    @Test
+    public void parseWithBacktracking() throws IOException {
+        final CountingByteStream input = new CountingByteStream(toByteArray(1, 2, 3, 4, 5, 6, 7, 8));
+        final Token token =
+            cho(seq(def("a", con(2)), def("b", con(2)), def("c", con(1), eq(con(0)))),
+                seq(def("a", con(2)), def("b", con(2)), def("c", con(1), eq(con(5)))));
+        final Optional<Environment> result = token.parse(new Environment(new CachingByteStream(input)), enc());
+        assertTrue(result.isPresent());
+        assertEquals(5, result.get().offset);
+        assertEquals(1, input.reads);
+    }
+
+    @Test
+    public void lazySlicesOnMappedFile() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, toByteArray(1, 2, 3, 4, 5, 6, 7, 8));
+        try (final MappedFileByteStream input = new MappedFileByteStream(file)) {
+            final CachingByteStream stream = new CachingByteStream(input);
+            assertTrue(stream.isAvailable(0, 8));
+            assertFalse(stream.isAvailable(4, 5));
+            final Optional<Environment> result = def("a", con(4)).parse(new Environment(stream), enc());
+            assertTrue(result.isPresent());
+            assertEquals(0, stream.getMisses());
+            assertArrayEquals(toByteArray(1, 2, 3, 4), getValue(result.get().order, "a").getValue());
+            assertEquals(1, stream.getMisses());
+        }
+    }
+
+    @Test
+    public void eagerSlicesOnStream() throws IOException {
+        final StreamingByteStream input = new StreamingByteStream(new ByteArrayInputStream(toByteArray(1, 2, 3, 4, 5, 6, 7, 8)));
+        final CachingByteStream stream = new CachingByteStream(input);
+        assertFalse(stream.isAvailable(0, 8));
+        final Optional<Environment> result = def("a", con(4)).parse(new Environment(stream), enc());
+        assertTrue(result.isPresent());
+        assertEquals(1, stream.getMisses());
+        assertArrayEquals(toByteArray(1, 2, 3, 4), getValue(result.get().order, "a").getValue());
+        assertEquals(1, stream.getMisses());
+    }
+
+    @Test
+    public void invalidPageSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument pageSize must be positive.");
+        new CachingByteStream(new InMemoryByteStream(new byte[0]), 0, 1);
+    }
+
+    @Test
+    public void invalidMaxPages() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument maxPages must be positive.");
+        new CachingByteStream(new InMemoryByteStream(new byte[0]), 1, 0);
+    }
+
+}
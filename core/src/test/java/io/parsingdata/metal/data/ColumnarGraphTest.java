@@ -0,0 +1,407 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+import static io.parsingdata.metal.util.TokenDefinitions.any;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class ColumnarGraphTest {
+
+    private static final String SOURCE_KEY = "input";
+
+    private static final Token STRUCT =
+        seq("struct",
+            def("header", con(1), eq(con(0))),
+            def("next", con(1)),
+            opt(sub(token("struct"), last(ref("next")))));
+
+    private static final Token TOKEN = seq(rep(def("a", con(1), gtNum(con(0)))), STRUCT);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ParseGraph parse(final Environment environment) throws IOException {
+        final Optional<Environment> result = TOKEN.parse(environment, enc());
+        assertTrue(result.isPresent());
+        return result.get().order;
+    }
+
+    private static void assertSameValues(final ImmutableList<Value> expected, final ImmutableList<ParseValue> actual) {
+        assertEquals(expected.size, actual.size);
+        ImmutableList<ParseValue> current = actual;
+        for (ImmutableList<Value> value = expected; !value.isEmpty(); value = value.tail, current = current.tail) {
+            assertEquals(value.head, current.head);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final ParseGraph graph = parse(stream(1, 2, 0, 4, 0, 4));
+        final ColumnarGraph columns = ColumnarGraph.create(graph);
+        assertEquals(graph, columns.toGraph());
+        final ParseReference reference = columns.getReference(columns.size - 1);
+        assertEquals(4, reference.location);
+        assertEquals(STRUCT, reference.definition);
+        assertEquals(reverse(graph), ColumnarGraph.create(reverse(graph)).toGraph());
+        assertSameValues(getAllValues(graph, "a"), columns.getAllValues("a"));
+        assertSameValues(getAllValues(graph, "struct.next"), columns.getAllValues("struct.next"));
+        assertSameValues(getAllValues(graph, "header"), columns.getAllValues("header"));
+        assertEquals(0, columns.getAllValues("ader").size);
+    }
+
+    @Test
+    public void findRootAtOffset() throws IOException {
+        final Environment environment = stream(1, 2, 0, 4, 0, 4);
+        final ParseGraph graph = parse(environment);
+        final ColumnarGraph columns = ColumnarGraph.create(graph);
+        for (long offset = 0; offset < 6; offset++) {
+            for (final Token definition : new Token[] { STRUCT, TOKEN, any("a") }) {
+                final ParseItem expected = graph.getRoots().get(definition, offset, environment.source);
+                final int row = columns.findRootAtOffset(definition, offset, environment.source);
+                assertEquals(expected, row == ColumnarGraph.NO_ROW ? null : columns.get(row));
+            }
+        }
+        assertEquals(ColumnarGraph.NO_ROW, columns.findRootAtOffset(STRUCT, 2, new ConstantSource(new byte[] { 0 })));
+        assertTrue(columns.findRootAtOffset(STRUCT, 4, environment.source) != ColumnarGraph.NO_ROW);
+    }
+
+    @Test
+    public void openBranch() throws IOException {
+        final Environment environment = stream(0, 1);
+        final ParseGraph graph = environment.addBranch(TOKEN).addBranch(STRUCT).add(new ParseValue("header", STRUCT, environment.slice(1), enc())).order;
+        final ColumnarGraph columns = ColumnarGraph.create(graph);
+        assertEquals(graph, columns.toGraph());
+        assertEquals(ColumnarGraph.BRANCH, columns.getKind(1));
+        assertEquals(ColumnarGraph.BRANCH, columns.getKind(2));
+        assertEquals(ColumnarGraph.VALUE, columns.getKind(3));
+    }
+
+    @Test
+    public void rows() throws IOException {
+        final Token token = seq(any("a"), rep(any("b")));
+        final Optional<Environment> result = token.parse(stream(1, 2, 3), enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph columns = ColumnarGraph.create(result.get().order);
+        // graph, seq, a, rep, b, b
+        assertEquals(6, columns.size);
+        assertEquals(6, columns.getEnd(0));
+        assertEquals(6, columns.getEnd(1));
+        assertEquals(6, columns.getEnd(3));
+        assertEquals(token, columns.getDefinition(1));
+        assertEquals(ColumnarGraph.VALUE, columns.getKind(2));
+        assertEquals("a", columns.getName(2));
+        assertEquals(0, columns.getOffset(2));
+        assertEquals(1, columns.getSize(2));
+        assertEquals(1, columns.getParent(2));
+        assertEquals(3, columns.next(2));
+        assertEquals(6, columns.next(3));
+        assertEquals(ColumnarGraph.GRAPH, columns.getKind(3));
+        assertEquals(3, columns.getParent(5));
+        assertEquals(2, columns.getOffset(5));
+        assertEquals(-1, columns.getParent(0));
+    }
+
+    @Test
+    public void retainUnavailableValues() throws IOException {
+        final Token token = seq(rep(def("a", con(1), gtNum(con(0)))), any("z"));
+        final Optional<Environment> result = token.parse(new Environment(new StreamingByteStream(new ByteArrayInputStream(toByteArray(1, 2, 3, 0)), 2)), enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph columns = ColumnarGraph.create(result.get().order);
+        // Data read from a StreamingByteStream cannot be read again, so the data of the values is retained.
+        assertEquals(getAllValues(result.get().order, "a").tail.tail.head, columns.getValue(4));
+        assertArrayEquals(toByteArray(1), columns.getValue(4).getValue());
+        assertArrayEquals(toByteArray(0), columns.getValue(columns.size - 1).getValue());
+        assertEquals(result.get().order, columns.toGraph());
+    }
+
+    @Test
+    public void rereadValues() throws IOException {
+        final int[] reads = new int[1];
+        final InMemoryByteStream input = new InMemoryByteStream(toByteArray(1, 2, 3, 0)) {
+            @Override
+            public int read(final long offset, final byte[] data) throws IOException {
+                reads[0]++;
+                return super.read(offset, data);
+            }
+        };
+        final Token token = seq(rep(def("a", con(1), gtNum(con(0)))), any("z"));
+        final Optional<Environment> result = token.parse(new Environment(input), enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph columns = ColumnarGraph.create(result.get().order);
+        // Data of an InMemoryByteStream can be read again, so it is not retained, even though its slices are not lazy.
+        final int parseReads = reads[0];
+        assertArrayEquals(toByteArray(1), columns.getValue(4).getValue());
+        assertEquals(parseReads + 1, reads[0]);
+    }
+
+    @Test
+    public void truncateRetainedData() {
+        final ColumnarGraph.RetainedData data = new ColumnarGraph.RetainedData();
+        data.add(1, toByteArray(1, 2));
+        data.add(3, toByteArray(3));
+        data.truncate(2);
+        data.add(2, toByteArray(4, 5, 6));
+        assertArrayEquals(toByteArray(1, 2), data.get(1));
+        assertArrayEquals(toByteArray(4, 5, 6), data.get(2));
+        assertNull(data.get(3));
+        assertNull(data.get(0));
+    }
+
+    @Test
+    public void queriesOnlyVisitMatchingRows() throws IOException {
+        final Token token = seq(rep(def("a", con(1), gtNum(con(0)))), any("b"));
+        final Optional<Environment> result = token.parse(stream(1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0), enc());
+        assertTrue(result.isPresent());
+        final CountingColumnStore store = new CountingColumnStore();
+        final ColumnarGraph columns = ColumnarGraph.create(result.get().order, store);
+        store.reads = 0;
+        assertEquals(1, columns.getAllValues("b").size);
+        assertTrue(store.reads < 10);
+        store.reads = 0;
+        assertEquals(1, columns.getAllValues(((ParseValue)getAllValues(result.get().order, "b").head).definition).size);
+        assertTrue(store.reads < 10);
+        store.reads = 0;
+        final int row = columns.findRootAtOffset(any("b"), 20, result.get().order.current().slice.source);
+        assertTrue(store.reads < 20);
+        assertEquals("b", columns.getName(row));
+        assertEquals(20, columns.getAllValues("a").size);
+    }
+
+    private static class CountingColumnStore extends ColumnStore {
+
+        final ColumnStore store = new HeapColumnStore();
+        int reads;
+
+        @Override void ensureCapacity(final int rows) { store.ensureCapacity(rows); }
+
+        @Override byte getKind(final int row) { reads++; return store.getKind(row); }
+        @Override void setKind(final int row, final byte kind) { store.setKind(row, kind); }
+
+        @Override long getOffset(final int row) { reads++; return store.getOffset(row); }
+        @Override void setOffset(final int row, final long offset) { store.setOffset(row, offset); }
+
+        @Override int getInt(final int row, final int column) { reads++; return store.getInt(row, column); }
+        @Override void setInt(final int row, final int column, final int value) { store.setInt(row, column, value); }
+
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        final Environment environment = stream(1, 2, 0, 4, 0, 4);
+        final ParseGraph graph = parse(environment);
+        final ColumnarGraph columns = ColumnarGraph.create(graph);
+        final ColumnarGraph loaded = load(save(columns, TOKEN), TOKEN, environment);
+        assertEquals(columns.size, loaded.size);
+        assertEquals(graph, loaded.toGraph());
+        assertSameValues(getAllValues(graph, "struct.next"), loaded.getAllValues("struct.next"));
+        assertSameValues(getAllValues(graph, "a"), loaded.getAllValues(((ParseValue)getAllValues(graph, "a").head).definition));
+        for (long offset = 0; offset < 6; offset++) {
+            assertEquals(columns.findRootAtOffset(STRUCT, offset, environment.source), loaded.findRootAtOffset(STRUCT, offset, environment.source));
+        }
+        assertEquals(reverse(graph), load(save(ColumnarGraph.create(reverse(graph)), TOKEN), TOKEN, environment).toGraph());
+        assertEquals(ParseGraph.EMPTY, load(save(ColumnarGraph.create(ParseGraph.EMPTY), TOKEN), TOKEN, environment).toGraph());
+    }
+
+    @Test
+    public void saveAndLoadLarge() throws IOException {
+        final Token token = rep(any("a"));
+        final Environment environment = stream(new int[OffHeapColumnStore.DEFAULT_ROWS_PER_BUFFER + 1]);
+        final Optional<Environment> result = token.parse(environment, enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph loaded = load(save(ColumnarGraph.create(result.get().order), token), token, environment);
+        assertEquals(OffHeapColumnStore.DEFAULT_ROWS_PER_BUFFER + 3, loaded.size);
+        assertEquals(OffHeapColumnStore.DEFAULT_ROWS_PER_BUFFER, loaded.getOffset(loaded.size - 1));
+        assertEquals(OffHeapColumnStore.DEFAULT_ROWS_PER_BUFFER + 1, loaded.getAllValues("a").size);
+    }
+
+    @Test
+    public void saveAndLoadEqualDefinitions() throws IOException {
+        final Token first = def("a", con(1));
+        final Token second = def("a", con(1));
+        final Token token = seq(first, second);
+        final Environment environment = stream(1, 2);
+        final Optional<Environment> result = token.parse(environment, enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph loaded = load(save(ColumnarGraph.create(result.get().order), token), token, environment);
+        final ImmutableList<ParseValue> values = loaded.getAllValues("a");
+        assertEquals(2, values.size);
+        assertSame(second, values.head.definition);
+        assertSame(first, values.tail.head.definition);
+        assertEquals(2, values.head.asNumeric().intValueExact());
+    }
+
+    @Test
+    public void saveAndLoadTie() throws IOException {
+        final Token token = seq(def("data", con(2)), tie(def("b", con(1)), last(ref("data"))));
+        final Environment environment = stream(1, 2);
+        final Optional<Environment> result = token.parse(environment, enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph loaded = load(save(ColumnarGraph.create(result.get().order), token), token, environment);
+        assertEquals(1, loaded.getAllValues("data").head.getValue()[0]);
+        final ImmutableList<ParseValue> values = loaded.getAllValues("b");
+        assertEquals(1, values.size);
+        assertEquals(0, values.head.slice.offset);
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("Data of source DataExpressionSource(Last(NameRef(data))[0]) was not saved.");
+        values.head.getValue();
+    }
+
+    private Path save(final ColumnarGraph columns, final Token format) throws IOException {
+        final Path file = folder.newFile().toPath();
+        columns.save(file, format, source -> SOURCE_KEY);
+        return file;
+    }
+
+    private static ColumnarGraph load(final Path file, final Token format, final Environment environment) throws IOException {
+        return ColumnarGraph.load(file, format, key -> SOURCE_KEY.equals(key) ? environment.source : null);
+    }
+
+    @Test
+    public void saveWithoutSourceKey() throws IOException {
+        final ColumnarGraph columns = ColumnarGraph.create(parse(stream(1, 2, 0, 4, 0, 4)));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument sourceKeys must return a key for source ");
+        columns.save(folder.newFile().toPath(), TOKEN, source -> null);
+    }
+
+    @Test
+    public void saveWithOtherFormat() throws IOException {
+        final ColumnarGraph columns = ColumnarGraph.create(parse(stream(1, 2, 0, 4, 0, 4)));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument format must contain definition ");
+        save(columns, STRUCT);
+    }
+
+    @Test
+    public void saveWithHiddenToken() throws IOException {
+        final Token token = def("a", con(1), eq(new HiddenToken(def("b", con(1)))));
+        final Environment environment = stream(1);
+        final Optional<Environment> result = token.parse(environment, enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph columns = ColumnarGraph.create(result.get().order);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument format must refer to tokens through public fields only, but field private final io.parsingdata.metal.token.Token io.parsingdata.metal.data.ColumnarGraphTest$HiddenToken.token is not public.");
+        save(columns, token);
+    }
+
+    private static class HiddenToken implements ValueExpression {
+
+        private final Token token;
+
+        HiddenToken(final Token token) {
+            this.token = token;
+        }
+
+        @Override
+        public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+            return con(1).eval(graph, encoding);
+        }
+
+    }
+
+    @Test
+    public void loadOtherFile() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, new byte[16]);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("does not contain a saved ColumnarGraph.");
+        load(file, TOKEN, stream(0));
+    }
+
+    @Test
+    public void loadWithOtherFormat() throws IOException {
+        final Environment environment = stream(1, 2, 0, 4, 0, 4);
+        final Path file = save(ColumnarGraph.create(parse(environment)), TOKEN);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("tokens, like the format the graph was saved with.");
+        load(file, seq(rep(def("a", con(1), gtNum(con(0)))), def("b", con(1)), STRUCT), environment);
+    }
+
+    @Test
+    public void loadWithOtherSources() throws IOException {
+        final Path file = save(ColumnarGraph.create(parse(stream(1, 2, 0, 4, 0, 4))), TOKEN);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument sources must return a source for key input.");
+        ColumnarGraph.load(file, TOKEN, key -> null);
+    }
+
+    @Test
+    public void loadWithOtherTokens() throws IOException {
+        final Environment environment = stream(1, 2, 0, 4, 0, 4);
+        final Path file = save(ColumnarGraph.create(parse(environment)), TOKEN);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument format must contain a io.parsingdata.metal.token.Rep as token 1, like the format the graph was saved with.");
+        load(file, seq(opt(def("a", con(1), gtNum(con(0)))), STRUCT), environment);
+    }
+
+    @Test
+    public void rowOutOfRange() throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument row must be at least 0 and less than 1.");
+        ColumnarGraph.create(ParseGraph.EMPTY).getKind(1);
+    }
+
+    @Test
+    public void rowOfWrongKind() throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument row must refer to a value.");
+        ColumnarGraph.create(ParseGraph.EMPTY).getValue(0);
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class ColumnarRecorderTest {
+
+    private static final Token STRUCT =
+        seq("struct",
+            def("header", con(1), eq(con(0))),
+            def("next", con(1)),
+            opt(sub(token("struct"), last(ref("next")))));
+
+    // The repetition and the optional struct end with an alternative that fails after adding items.
+    private static final Token TOKEN = seq(rep(def("a", con(1), gtNum(con(0)))), STRUCT);
+
+    private static final Token CHOICE =
+        seq(cho(seq(def("a", con(1)), def("b", con(1), eq(con(9)))),
+                seq(def("c", con(1)), def("d", con(1)))),
+            def("e", con(1)));
+
+    private static final Token TIE = seq(def("data", con(2)), tie(rep(def("t", con(1))), last(ref("data"))));
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static Environment record(final Token token, final ColumnarRecorder recorder, final int... data) throws IOException {
+        final Optional<Environment> result = token.parse(new Environment(new InMemoryByteStream(toByteArray(data)), Pruner.NONE, recorder), enc());
+        assertTrue(result.isPresent());
+        return result.get();
+    }
+
+    private static void assertSameRows(final ColumnarGraph expected, final ColumnarGraph actual, final Source source) {
+        assertEquals(expected.size, actual.size);
+        assertEquals(expected.toGraph(), actual.toGraph());
+        for (int row = 0; row < expected.size; row++) {
+            assertEquals(expected.getKind(row), actual.getKind(row));
+            assertEquals(expected.getParent(row), actual.getParent(row));
+            assertEquals(expected.getDefinition(row), actual.getDefinition(row));
+            if (expected.getKind(row) == ColumnarGraph.GRAPH || expected.getKind(row) == ColumnarGraph.BRANCH) {
+                assertEquals(expected.getEnd(row), actual.getEnd(row));
+            }
+            // The lowest value of each graph determines its location as a root.
+            for (long offset = 0; offset < 8; offset++) {
+                assertEquals(expected.findRootAtOffset(expected.getDefinition(row), offset, source), actual.findRootAtOffset(expected.getDefinition(row), offset, source));
+            }
+        }
+    }
+
+    @Test
+    public void sameAsCopy() throws IOException {
+        final Environment token = record(TOKEN, ColumnarRecorder.create(), 1, 2, 0, 4, 0, 4);
+        assertSameRows(ColumnarGraph.create(token.order), token.recorder.getGraph(), token.source);
+        final Environment choice = record(CHOICE, ColumnarRecorder.create(), 1, 2, 3);
+        assertSameRows(ColumnarGraph.create(choice.order), choice.recorder.getGraph(), choice.source);
+        assertEquals(0, choice.recorder.getGraph().getAllValues("a").size);
+        final Environment tie = record(TIE, ColumnarRecorder.create(new OffHeapColumnStore(2)), 1, 2);
+        assertSameRows(ColumnarGraph.create(tie.order), tie.recorder.getGraph(), tie.source);
+        assertEquals(2, tie.recorder.getGraph().getAllValues("t").size);
+    }
+
+    @Test
+    public void retainDataOfStreamedValues() throws IOException {
+        final Token token =
+            seq(cho(seq(def("a", con(2)), def("b", con(1), eq(con(9)))),
+                    seq(def("c", con(1)), def("d", con(1)))),
+                def("e", con(1)));
+        final StreamingByteStream input = new StreamingByteStream(new ByteArrayInputStream(toByteArray(1, 2, 3)), 4);
+        final Optional<Environment> result = token.parse(new Environment(input, Pruner.NONE, ColumnarRecorder.create()), enc());
+        assertTrue(result.isPresent());
+        final ColumnarGraph graph = result.get().recorder.getGraph();
+        assertSameRows(ColumnarGraph.create(result.get().order), graph, result.get().source);
+        // The data of the values of the failed alternative is removed with their rows, so each value keeps its own data.
+        assertArrayEquals(toByteArray(1), graph.getAllValues("c").head.getValue());
+        assertArrayEquals(toByteArray(2), graph.getAllValues("d").head.getValue());
+        assertArrayEquals(toByteArray(3), graph.getAllValues("e").head.getValue());
+    }
+
+    @Test
+    public void openBranchesWhileParsing() throws IOException {
+        final List<Environment> states = new ArrayList<>();
+        final Callbacks callbacks = Callbacks.create().add((token, before, after) -> {
+            if (after.isPresent()) {
+                final ColumnarGraph expected = ColumnarGraph.create(after.get().order);
+                assertSameRows(expected, after.get().recorder.getGraph(), after.get().source);
+                states.add(after.get());
+            }
+        });
+        final Environment environment = new Environment(ParseGraph.EMPTY, new ByteStreamSource(new InMemoryByteStream(toByteArray(1, 2, 0, 4, 0, 4))), 0, callbacks, Pruner.NONE, EvaluationCache.NONE, ColumnarRecorder.create());
+        final Optional<Environment> result = TOKEN.parse(environment, enc());
+        assertTrue(result.isPresent());
+        assertTrue(states.size() > 5);
+        assertSameRows(ColumnarGraph.create(result.get().order), result.get().recorder.getGraph(), environment.source);
+    }
+
+    @Test
+    public void recordPrunedBranches() throws IOException {
+        final Token record = seq("record", def("a", con(1)), def("b", con(1)));
+        final Token format = rep(record);
+        final Pruner pruner = Pruner.create(format, branch -> {});
+        assertTrue(pruner.enabled);
+        final Optional<Environment> result = format.parse(new Environment(new InMemoryByteStream(new byte[1000]), pruner, ColumnarRecorder.create(new OffHeapColumnStore())), enc());
+        assertTrue(result.isPresent());
+        // The parse state only holds the branches that can still be observed, the recorder holds all of them.
+        assertTrue(getAllValues(result.get().order, "a").size < 2);
+        final ColumnarGraph graph = result.get().recorder.getGraph();
+        assertEquals(500, graph.getAllValues("record.a").size);
+        assertEquals(2 + 500 * 3, graph.size);
+        assertEquals(999, graph.getOffset(graph.size - 1));
+    }
+
+    @Test
+    public void disabled() {
+        assertFalse(ColumnarRecorder.NONE.enabled);
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("Recorder is not enabled.");
+        ColumnarRecorder.NONE.getGraph();
+    }
+
+}
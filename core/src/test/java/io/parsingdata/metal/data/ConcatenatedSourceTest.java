@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cat;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.fold;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.data.ConcatenatedSource.concatenate;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.expression.comparison.Eq;
+import io.parsingdata.metal.expression.value.Value;
+
+public class ConcatenatedSourceTest {
+
+    private static final Slice FIRST = new Slice(new ConstantSource(new byte[] { 1, 2, 3 }), 0, 3);
+    private static final Slice SECOND = new Slice(new ConstantSource(new byte[] { 0, 4, 5 }), 1, 2);
+    private static final Slice THIRD = new Slice(new ConstantSource(new byte[] { 6 }), 0, new byte[] { 6 });
+
+    @Test
+    public void concatenateWithoutCopying() throws IOException {
+        final Slice slice = concatenate(concatenate(FIRST, SECOND), THIRD);
+        assertEquals(6, slice.size);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, slice.getData());
+        assertArrayEquals(new byte[] { 3, 4, 5 }, slice.source.getData(2, 3));
+        assertArrayEquals(new byte[] { 5, 6 }, slice.source.getData(4, 10));
+        assertEquals(0, slice.source.getData(6, 1).length);
+        final ByteBuffer[] buffers = slice.getBuffers();
+        assertEquals(3, buffers.length);
+        assertEquals(ByteBuffer.wrap(new byte[] { 4, 5 }), buffers[1]);
+        assertTrue(buffers[1].isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[] { 4 }), slice.source.getBuffer(3, 1));
+        assertEquals(2, slice.source.getBuffers(2, 2).length);
+    }
+
+    @Test
+    public void flattenSegments() {
+        final Slice nested = concatenate(FIRST, concatenate(SECOND, concatenate(THIRD, FIRST)));
+        assertEquals(concatenate(concatenate(concatenate(FIRST, SECOND), THIRD), FIRST), nested);
+        assertEquals(4, nested.getBuffers().length);
+        final Slice empty = new Slice(new ConstantSource(new byte[0]), 0, 0);
+        assertEquals(concatenate(FIRST, SECOND), concatenate(concatenate(empty, FIRST), concatenate(SECOND, empty)));
+        assertEquals(0, concatenate(empty, empty).getData().length);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void tooLarge() {
+        concatenate(new Slice(new ConstantSource(new byte[0]), 0, Integer.MAX_VALUE), FIRST);
+    }
+
+    @Test
+    public void compareParts() throws IOException {
+        final Eq eq = new Eq(con(0), con(0));
+        final Value parts = new Value(concatenate(concatenate(FIRST, SECOND), THIRD), enc());
+        final Value otherParts = new Value(concatenate(new Slice(new ConstantSource(new byte[] { 1, 2, 3, 4 }), 0, 4), concatenate(SECOND, THIRD).source.slice(1, 2)), enc());
+        final Value whole = new Value(new Slice(new ConstantSource(new byte[] { 1, 2, 3, 4, 5, 6 }), 0, 6), enc());
+        assertTrue(eq.compare(parts, otherParts));
+        assertTrue(eq.compare(parts, whole));
+        assertTrue(eq.compare(whole, parts));
+        assertFalse(eq.compare(parts, new Value(concatenate(FIRST, concatenate(THIRD, SECOND)), enc())));
+        assertFalse(eq.compare(parts, new Value(concatenate(FIRST, SECOND), enc())));
+    }
+
+    @Test
+    public void catAndTie() throws IOException {
+        final Optional<Environment> result =
+            seq(rep(def("part", con(2), not(eq(con(0, 0))))), def("end", con(2)),
+                tie(seq(def("x", con(3)), def("y", con(3))), fold(ref("part"), Shorthand::cat)),
+                def("copy", con(6), eq(cat(ref("x"), ref("y"))))).parse(stream(1, 2, 3, 4, 5, 6, 0, 0, 1, 2, 3, 4, 5, 6), enc());
+        assertTrue(result.isPresent());
+        final ParseValue x = getValue(result.get().order, "x");
+        assertArrayEquals(new byte[] { 1, 2, 3 }, x.getValue());
+        assertEquals(2, x.slice.getBuffers().length);
+        assertSame(ConcatenatedSource.class, fold(ref("part"), Shorthand::cat).eval(result.get().order, enc()).head.get().slice.source.getClass());
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.parsingdata.metal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -8,6 +9,7 @@ import static io.parsingdata.metal.Shorthand.def;
 import static io.parsingdata.metal.Shorthand.ref;
 import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.toByteArray;
 import static io.parsingdata.metal.data.selection.ByName.getValue;
 import static io.parsingdata.metal.util.EncodingFactory.enc;
 import static io.parsingdata.metal.util.EnvironmentFactory.stream;
@@ -19,6 +21,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
 import io.parsingdata.metal.token.Token;
 
 public class DataExpressionSourceTest {
@@ -55,4 +60,34 @@ public class DataExpressionSourceTest {
         source.getData(0, 4);
     }
 
+    private static class CountingValueExpression implements ValueExpression {
+
+        final ValueExpression operand;
+        int evaluations = 0;
+
+        CountingValueExpression(final ValueExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+            evaluations++;
+            return operand.eval(graph, encoding);
+        }
+
+    }
+
+    @Test
+    public void dataExpressionIsEvaluatedOnce() throws IOException {
+        final CountingValueExpression dataExpression = new CountingValueExpression(ref("a"));
+        final Token token =
+            seq(def("a", con(4)),
+                tie(seq(def("b", con(1)), def("c", con(1)), def("d", con(2))), dataExpression));
+        final Optional<Environment> result = token.parse(stream(1, 2, 3, 4), enc());
+        assertTrue(result.isPresent());
+        assertArrayEquals(toByteArray(3, 4), getValue(result.get().order, "d").getValue());
+        // Once by Tie to determine the amount of values and once by the DataExpressionSource.
+        assertEquals(2, dataExpression.evaluations);
+    }
+
 }
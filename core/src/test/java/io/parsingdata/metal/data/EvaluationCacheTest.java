@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.pre;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.expression.value.ConstantFactory;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class EvaluationCacheTest {
+
+    private static final Optional<Value> VALUE = Optional.of(ConstantFactory.createFromNumeric(1, enc()));
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private final ValueExpression counted = (graph, encoding) -> {
+        evaluations.incrementAndGet();
+        return last(ref("header")).eval(graph, encoding);
+    };
+
+    private Optional<Environment> parse(final Token format, final EvaluationCache cache, final int... data) throws IOException {
+        return format.parse(new Environment(new InMemoryByteStream(toByteArray(data)), cache), enc());
+    }
+
+    @Test
+    public void create() {
+        assertEquals(1, EvaluationCache.create(1).size);
+        assertEquals(4, EvaluationCache.create(3).size);
+        assertEquals(4, EvaluationCache.create(4).size);
+        assertTrue(EvaluationCache.create(1).enabled);
+        assertFalse(EvaluationCache.NONE.enabled);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createEmpty() {
+        EvaluationCache.create(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createTooLarge() {
+        EvaluationCache.create(EvaluationCache.MAX_SIZE + 1);
+    }
+
+    @Test
+    public void getAndPut() {
+        final EvaluationCache cache = EvaluationCache.create(16);
+        final ValueExpression expression = con(1);
+        final ParseGraph graph = ParseGraph.EMPTY.addBranch(def("a", 1));
+        assertNull(cache.get(expression, graph, enc()));
+        cache.put(expression, graph, enc(), VALUE);
+        assertSame(VALUE, cache.get(expression, graph, enc()));
+        assertNull(cache.get(con(1), graph, enc()));
+        assertNull(cache.get(expression, ParseGraph.EMPTY.addBranch(def("a", 1)), enc()));
+        assertNull(cache.get(expression, graph, signed()));
+    }
+
+    @Test
+    public void replaceInSlot() {
+        final EvaluationCache cache = EvaluationCache.create(1);
+        final ValueExpression first = con(1);
+        final ValueExpression second = con(2);
+        cache.put(first, ParseGraph.EMPTY, enc(), VALUE);
+        cache.put(second, ParseGraph.EMPTY, enc(), Optional.empty());
+        assertNull(cache.get(first, ParseGraph.EMPTY, enc()));
+        assertEquals(Optional.empty(), cache.get(second, ParseGraph.EMPTY, enc()));
+    }
+
+    @Test
+    public void noneStoresNothing() {
+        EvaluationCache.NONE.put(con(1), ParseGraph.EMPTY, enc(), VALUE);
+        assertNull(EvaluationCache.NONE.get(con(1), ParseGraph.EMPTY, enc()));
+    }
+
+    @Test
+    public void separateInstancesNotShared() {
+        final EvaluationCache cache = EvaluationCache.create(16);
+        final ParseGraph graph = ParseGraph.EMPTY.addBranch(def("x", 1));
+        cache.put(last(ref("x")), graph, enc(), VALUE);
+        assertNull(cache.get(last(ref("x")), graph, enc()));
+    }
+
+    @Test
+    public void releaseCollectedGraph() {
+        final EvaluationCache cache = EvaluationCache.create(16);
+        ParseGraph graph = ParseGraph.EMPTY.addBranch(def("a", 1));
+        Optional<Value> result = Optional.of(ConstantFactory.createFromNumeric(2, enc()));
+        cache.put(con(1), graph, enc(), result);
+        final WeakReference<ParseGraph> graphReference = new WeakReference<>(graph);
+        final WeakReference<Optional<Value>> resultReference = new WeakReference<>(result);
+        graph = null;
+        result = null;
+        for (int i = 0; i < 100 && resultReference.get() != null; i++) {
+            System.gc();
+            // Any access to the cache clears the slots of collected graphs.
+            cache.get(con(1), ParseGraph.EMPTY, enc());
+        }
+        assertNull(graphReference.get());
+        assertNull(resultReference.get());
+    }
+
+    @Test
+    public void sharedSubexpression() throws IOException {
+        // Both alternatives evaluate their predicate on the same parse state. The cache is large, so that the results
+        // of the few expressions in the format are very unlikely to be stored in the same slot.
+        final Token format =
+            seq(def("header", 1),
+                cho(pre(def("a", 1), eqNum(add(counted, con(1)), con(3))),
+                    pre(def("b", 1), eqNum(add(counted, con(1)), con(2)))));
+        final Optional<Environment> uncached = parse(format, EvaluationCache.NONE, 1, 2);
+        assertTrue(uncached.isPresent());
+        assertEquals(2, evaluations.getAndSet(0));
+        final Optional<Environment> cached = parse(format, EvaluationCache.create(1 << 16), 1, 2);
+        assertTrue(cached.isPresent());
+        assertEquals(1, evaluations.get());
+        assertEquals(uncached.get().order, cached.get().order);
+    }
+
+    @Test
+    public void sameResult() throws IOException {
+        final Token struct =
+            seq("struct",
+                def("header", con(1), eq(con(0))),
+                def("next", con(1)),
+                opt(sub(token("struct"), last(ref("next")))));
+        final EvaluationCache cache = EvaluationCache.create(2);
+        final Optional<Environment> result = parse(struct, cache, 0, 2, 0, 4, 0, 0);
+        assertTrue(result.isPresent());
+        assertSame(cache, result.get().cache);
+        assertEquals(parse(struct, EvaluationCache.NONE, 0, 2, 0, 4, 0, 0).get().order, result.get().order);
+    }
+
+}
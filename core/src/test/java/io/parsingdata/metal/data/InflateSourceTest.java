@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Util.createFromBytes;
+import static io.parsingdata.metal.Util.inflate;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class InflateSourceTest {
+
+    private static final byte[] DATA = new byte[1000];
+    static {
+        for (int i = 0; i < DATA.length; i++) {
+            DATA[i] = (byte) (i % 7);
+        }
+    }
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        final byte[] buffer = new byte[data.length + 64];
+        final int size = deflater.deflate(buffer);
+        deflater.end();
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private static byte[] deflate(final byte[] data, final int flushInterval, final int flushMode) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] buffer = new byte[data.length + data.length / 8 + 1024];
+        int size = 0;
+        for (int offset = 0; offset < data.length; offset += flushInterval) {
+            deflater.setInput(data, offset, Math.min(flushInterval, data.length - offset));
+            while (!deflater.needsInput()) {
+                size += deflater.deflate(buffer, size, buffer.length - size, Deflater.NO_FLUSH);
+            }
+            size += deflater.deflate(buffer, size, buffer.length - size, flushMode);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        deflater.end();
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private static class CountingSource extends Source {
+
+        final byte[] data;
+        long bytesRead = 0;
+
+        CountingSource(final byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        protected byte[] getData(final long offset, final int size) {
+            bytesRead += size;
+            return Arrays.copyOfRange(data, (int) offset, (int) offset + size);
+        }
+
+        @Override
+        protected boolean isAvailable(final long offset, final int size) {
+            return true;
+        }
+
+    }
+
+    private static long bytesReadForBackwardRead(final int flushMode) throws IOException {
+        final byte[] data = new byte[2 * 1024 * 1024];
+        final Random random = new Random(0);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(16);
+        }
+        final CountingSource input = new CountingSource(deflate(data, 64 * 1024, flushMode));
+        final InflateSource source = new InflateSource(new Slice(input, 0, input.data.length), 4096, 4);
+        assertEquals(Optional.of((long) data.length), source.getSize());
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 100, data.length), source.getData(data.length - 100, 100));
+        input.bytesRead = 0;
+        assertArrayEquals(Arrays.copyOfRange(data, 1500000, 1500100), source.getData(1500000, 100));
+        // Return the amount read as a fraction of the compressed size.
+        return input.bytesRead * 100 / input.data.length;
+    }
+
+    @Test
+    public void restartAtFlushPoint() throws IOException {
+        assertTrue(bytesReadForBackwardRead(Deflater.FULL_FLUSH) < 25);
+        assertTrue(bytesReadForBackwardRead(Deflater.SYNC_FLUSH) < 25);
+    }
+
+    @Test
+    public void restartAtStartWithoutFlushPoints() throws IOException {
+        assertTrue(bytesReadForBackwardRead(Deflater.NO_FLUSH) > 50);
+    }
+
+    @Test
+    public void readAcrossPages() throws IOException {
+        final InflateSource source = new InflateSource(createFromBytes(deflate(DATA)), 16, 4);
+        assertEquals(Optional.of((long) DATA.length), source.getSize());
+        assertArrayEquals(Arrays.copyOfRange(DATA, 10, 50), source.getData(10, 40));
+        assertArrayEquals(Arrays.copyOfRange(DATA, 990, 1000), source.getData(990, 20));
+        assertEquals(0, source.getData(1000, 1).length);
+    }
+
+    @Test
+    public void readBackwardsAfterEviction() throws IOException {
+        final InflateSource source = new InflateSource(createFromBytes(deflate(DATA)), 16, 2);
+        for (int offset = 0; offset < DATA.length; offset += 100) {
+            assertArrayEquals(Arrays.copyOfRange(DATA, offset, offset + 20), source.getData(offset, 20));
+        }
+        assertArrayEquals(Arrays.copyOfRange(DATA, 500, 520), source.getData(500, 20));
+        assertArrayEquals(Arrays.copyOfRange(DATA, 0, 20), source.getData(0, 20));
+    }
+
+    @Test
+    public void availability() throws IOException {
+        final InflateSource source = new InflateSource(createFromBytes(deflate(DATA)));
+        assertTrue(source.isAvailable(0, DATA.length));
+        assertFalse(source.isAvailable(1, DATA.length));
+        assertFalse(source.isAvailable(-1, 1));
+    }
+
+    @Test
+    public void invalidInput() throws IOException {
+        final InflateSource source = new InflateSource(createFromBytes(new byte[] { -1, -1, -1, -1 }));
+        assertFalse(source.getSize().isPresent());
+        assertEquals(0, source.getData(0, 4).length);
+    }
+
+    @Test
+    public void truncatedInput() {
+        final byte[] compressed = deflate(DATA);
+        assertFalse(new InflateSource(createFromBytes(Arrays.copyOf(compressed, compressed.length - 1))).getSize().isPresent());
+    }
+
+    @Test
+    public void parseInflatedData() throws IOException {
+        final byte[] compressed = deflate(DATA);
+        final Optional<Environment> result =
+            seq(def("data", con(compressed.length)),
+                tie(rep(def("value", con(100))), inflate(ref("data"))))
+                .parse(new Environment(new InMemoryByteStream(compressed)), enc());
+        assertTrue(result.isPresent());
+        final ImmutableList<Value> values = getAllValues(result.get().order, "value");
+        assertEquals(10, values.size);
+        assertTrue(values.head.slice.source instanceof DataExpressionSource);
+        assertArrayEquals(Arrays.copyOfRange(DATA, 900, 1000), values.head.getValue());
+    }
+
+    @Test
+    public void invalidPageSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument pageSize must be positive.");
+        new InflateSource(createFromBytes(new byte[0]), 0, 1);
+    }
+
+    @Test
+    public void invalidMaxPages() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument maxPages must be positive.");
+        new InflateSource(createFromBytes(new byte[0]), 1, 0);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileByteStreamTest {
+
+    private static final byte[] DATA = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile().toPath();
+        Files.write(file, DATA);
+    }
+
+    @Test
+    public void readWithinWindow() throws IOException {
+        try (final MappedFileByteStream stream = new MappedFileByteStream(file)) {
+            final byte[] data = new byte[4];
+            assertEquals(4, stream.read(3, data));
+            assertArrayEquals(new byte[] { 3, 4, 5, 6 }, data);
+        }
+    }
+
+    @Test
+    public void readAcrossWindows() throws IOException {
+        try (final MappedFileByteStream stream = new MappedFileByteStream(file, 3, 2)) {
+            final byte[] data = new byte[8];
+            assertEquals(8, stream.read(1, data));
+            assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, data);
+            final byte[] start = new byte[2];
+            assertEquals(2, stream.read(0, start));
+            assertArrayEquals(new byte[] { 0, 1 }, start);
+        }
+    }
+
+    @Test
+    public void readBeyondEnd() throws IOException {
+        try (final MappedFileByteStream stream = new MappedFileByteStream(file, 4, 1)) {
+            final byte[] data = new byte[4];
+            assertEquals(2, stream.read(8, data));
+            assertEquals(8, data[0]);
+            assertEquals(9, data[1]);
+            assertEquals(0, stream.read(10, data));
+            assertEquals(0, stream.read(-1, data));
+        }
+    }
+
+    @Test
+    public void parse() throws IOException {
+        try (final MappedFileByteStream stream = new MappedFileByteStream(file, 4, 2)) {
+            final Optional<Environment> result = rep(def("value", con(1), eq(con(1)))).parse(new Environment(stream, 1), enc());
+            assertTrue(result.isPresent());
+            assertEquals(1, getAllValues(result.get().order, "value").size);
+            assertEquals(2, result.get().offset);
+        }
+    }
+
+    @Test
+    public void invalidWindowSize() throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument windowSize must be positive.");
+        new MappedFileByteStream(file, 0, 1);
+    }
+
+    @Test
+    public void invalidMaxWindows() throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument maxWindows must be positive.");
+        new MappedFileByteStream(file, 1, 0);
+    }
+
+}
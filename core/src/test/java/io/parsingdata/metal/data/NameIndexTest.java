@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.TokenDefinitions.any;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.token.Token;
+
+public class NameIndexTest {
+
+    private static final Token DEFINITION = any("a");
+
+    private static ParseValue value(final String name, final int offset) {
+        return new ParseValue(name, DEFINITION, new Slice(new ConstantSource(new byte[] { (byte) offset }), offset, 1), enc());
+    }
+
+    private static void assertValues(final ImmutableList<Optional<Value>> values, final ParseValue... expected) {
+        assertEquals(expected.length, values.size);
+        ImmutableList<Optional<Value>> current = values;
+        for (final ParseValue value : expected) {
+            assertTrue(current.head.get() == value);
+            current = current.tail;
+        }
+    }
+
+    @Test
+    public void partialNames() {
+        final ParseValue a = value("foo.bar.baz", 0);
+        final ParseValue b = value("bar.baz", 1);
+        final ParseValue c = value("foo.barbaz", 2);
+        final NameIndex index = NameIndex.EMPTY.add(a).add(b).add(c);
+        assertValues(index.get("foo.bar.baz"), a);
+        assertValues(index.get("bar.baz"), b, a);
+        assertValues(index.get("baz"), b, a);
+        assertValues(index.get("barbaz"), c);
+        assertValues(index.get("foo"));
+        assertValues(index.get("az"));
+    }
+
+    @Test
+    public void sharedLists() {
+        final ParseValue a = value("foo.bar", 0);
+        final ParseValue b = value("bar", 1);
+        final NameIndex index = NameIndex.EMPTY.add(a);
+        final ImmutableList<Optional<Value>> values = index.get("bar");
+        assertSame(values, index.get("bar"));
+        assertSame(values, index.add(b).get("bar").tail);
+        assertSame(values, index.add(NameIndex.EMPTY.add(b)).get("bar").tail);
+    }
+
+    @Test
+    public void hashCollisions() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        final ParseValue a = value("Aa", 0);
+        final ParseValue b = value("BB", 1);
+        final ParseValue c = value("Aa", 2);
+        final NameIndex index = NameIndex.EMPTY.add(a).add(b).add(c);
+        assertValues(index.get("Aa"), c, a);
+        assertValues(index.get("BB"), b);
+    }
+
+    @Test
+    public void manyNames() {
+        NameIndex index = NameIndex.EMPTY;
+        final ParseValue[] values = new ParseValue[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value("x.n" + i, i);
+            index = index.add(values[i]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertValues(index.get("n" + i), values[i]);
+        }
+        assertValues(index.get("x.n0"), values[0]);
+    }
+
+    @Test
+    public void indexFollowsGraph() {
+        final ParseValue a = value("a", 0);
+        final ParseValue b = value("s.a", 1);
+        final ParseValue c = value("a", 2);
+        final ParseGraph graph = ParseGraph.EMPTY.add(a).addBranch(DEFINITION).add(b).addBranch(DEFINITION).closeBranch().closeBranch().add(c);
+        assertValues(graph.getNames().get("a"), c, b, a);
+        assertValues(graph.tail.getNames().get("a"), b, a);
+        assertValues(graph.tail.head.asGraph().getNames().get("a"), b);
+        assertValues(reverse(graph).getNames().get("a"), a, b, c);
+    }
+
+    @Test
+    public void branchIndexRequestedWhileOpen() {
+        final ParseValue a = value("a", 0);
+        final ParseValue b = value("a", 1);
+        final ParseGraph open = ParseGraph.EMPTY.add(a).addBranch(DEFINITION).addBranch(DEFINITION).add(b);
+        assertValues(open.head.asGraph().getNames().get("a"), b);
+        final ParseValue c = value("a", 2);
+        final ParseGraph graph = open.add(c);
+        assertValues(graph.getNames().get("a"), c, b, a);
+        assertValues(graph.head.asGraph().getNames().get("a"), c, b);
+        assertValues(graph.head.asGraph().head.asGraph().getNames().get("a"), c, b);
+        assertValues(graph.closeBranch().closeBranch().getNames().get("a"), c, b, a);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import io.parsingdata.metal.token.Token;
+
+public class OffHeapColumnStoreTest {
+
+    private static final Token TOKEN = seq(def("a", con(1)), rep(seq(def("b", con(1)), def("c", con(2)))));
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ParseGraph parse() throws IOException {
+        final Optional<Environment> result = TOKEN.parse(stream(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), enc());
+        assertTrue(result.isPresent());
+        return result.get().order;
+    }
+
+    private static void assertSameRows(final ColumnarGraph expected, final ColumnarGraph actual) {
+        assertEquals(expected.size, actual.size);
+        for (int row = 0; row < expected.size; row++) {
+            assertEquals(expected.getKind(row), actual.getKind(row));
+            assertEquals(expected.getParent(row), actual.getParent(row));
+            assertEquals(expected.get(row), actual.get(row));
+        }
+    }
+
+    @Test
+    public void direct() throws IOException {
+        final ParseGraph graph = parse();
+        final ColumnarGraph columns = ColumnarGraph.create(graph, new OffHeapColumnStore(3));
+        assertEquals(graph, columns.toGraph());
+        assertSameRows(ColumnarGraph.create(graph), columns);
+        assertEquals(3, columns.getAllValues("c").size);
+    }
+
+    @Test
+    public void mapped() throws IOException {
+        final ParseGraph graph = parse();
+        final Path file = folder.newFile().toPath();
+        final ColumnarGraph columns = ColumnarGraph.create(graph, new OffHeapColumnStore(file, 4));
+        assertEquals(graph, columns.toGraph());
+        assertSameRows(ColumnarGraph.create(graph), columns);
+        assertEquals(4 * OffHeapColumnStore.ROW_SIZE * ((columns.size + 3) / 4), Files.size(file));
+    }
+
+    @Test
+    public void defaultBufferSize() throws IOException {
+        final ParseGraph graph = parse();
+        assertEquals(graph, ColumnarGraph.create(graph, new OffHeapColumnStore()).toGraph());
+    }
+
+    @Test
+    public void rowsPerBufferNotPositive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument rowsPerBuffer must be positive and at most " + Integer.MAX_VALUE / OffHeapColumnStore.ROW_SIZE + ".");
+        new OffHeapColumnStore(0);
+    }
+
+    @Test
+    public void rowsPerBufferTooLarge() {
+        thrown.expect(IllegalArgumentException.class);
+        new OffHeapColumnStore(folder.getRoot().toPath().resolve("rows"), Integer.MAX_VALUE / OffHeapColumnStore.ROW_SIZE + 1);
+    }
+
+}
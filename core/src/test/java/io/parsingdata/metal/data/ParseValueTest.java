@@ -64,6 +64,19 @@ public class ParseValueTest {
         assertFalse(value.matches(".value"));
     }
 
+    @Test
+    public void matchingPartialNames() {
+        final ParseValue scoped = new ParseValue("outer.inner.value", definition, createFromBytes(new byte[] { 1 }), enc());
+        assertTrue(scoped.matches("outer.inner.value"));
+        assertTrue(scoped.matches("inner.value"));
+        assertTrue(scoped.matches("value"));
+
+        assertFalse(scoped.matches("er.inner.value"));
+        assertFalse(scoped.matches("inner"));
+        assertFalse(scoped.matches("x.outer.inner.value"));
+        assertFalse(scoped.matches(""));
+    }
+
     @Test
     public void toStringTest() {
         assertThat(value.toString(), is("value(0x01)"));
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.fold;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.Shorthand.transform;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.TokenDefinitions.any;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Reducer;
+import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class PrunerTest {
+
+    private static final int RECORDS = 1000;
+
+    private final List<ParseGraph> pruned = new ArrayList<>();
+
+    private static byte[] records(final int... record) {
+        final int[] bytes = new int[RECORDS * record.length];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = record[index % record.length];
+        }
+        return toByteArray(bytes);
+    }
+
+    private ParseGraph parse(final Token format, final byte[] data, final boolean prune) throws IOException {
+        final Pruner pruner = prune ? Pruner.create(format, pruned::add) : Pruner.NONE;
+        final Optional<Environment> result = format.parse(new Environment(new InMemoryByteStream(data), pruner), enc());
+        assertTrue(result.isPresent());
+        return result.get().order;
+    }
+
+    private static ParseGraph records(final ParseGraph order) {
+        // The root contains the graph of the rep, which contains the records.
+        return order.head.asGraph();
+    }
+
+    @Test
+    public void unreferenced() throws IOException {
+        final Token format = rep(seq(any("a"), any("b")));
+        assertEquals(0, records(parse(format, records(1, 2), true)).size);
+        assertEquals(RECORDS, pruned.size());
+        assertEquals(2, pruned.get(0).size);
+    }
+
+    @Test
+    public void lastReference() throws IOException {
+        final Token format = rep(seq(def("size", con(1)), def("data", last(ref("size")))));
+        final byte[] data = records(2, 0, 0);
+        final ParseGraph graph = records(parse(format, data, true));
+        assertEquals(1, graph.size);
+        assertEquals(records(parse(format, data, false)).head, graph.head);
+        assertEquals(RECORDS - 1, pruned.size());
+    }
+
+    @Test
+    public void firstReference() throws IOException {
+        final Token format = rep(seq(def("size", con(1)), def("data", first(ref("size")))));
+        final byte[] data = records(1, 0);
+        final ParseGraph graph = records(parse(format, data, true));
+        assertEquals(1, graph.size);
+        ParseGraph expected = records(parse(format, data, false));
+        while (!expected.tail.isEmpty()) {
+            expected = expected.tail;
+        }
+        assertEquals(expected.head, graph.head);
+        assertEquals(RECORDS - 1, pruned.size());
+    }
+
+    @Test
+    public void allReference() throws IOException {
+        final Token format = seq(rep(seq(def("a", con(1), gtNum(con(0))), any("b"))), def("c", count(ref("a"))));
+        final byte[] data = toByteArray(1, 2, 1, 2, 0, 0);
+        assertEquals(parse(format, data, false), parse(format, data, true));
+        assertTrue(pruned.isEmpty());
+    }
+
+    @Test
+    public void lastValue() throws IOException {
+        final Token format = seq(rep(seq(any("a"), def("b", con(1), eq(con(2))))), any("c"));
+        final ParseGraph graph = parse(format, toByteArray(1, 2, 1, 2, 1, 2, 3), true);
+        // The predicate of b refers to the last value, so the last record is kept until it is superseded by c.
+        assertEquals(1, getAllValues(graph, "a").size);
+        assertEquals(2, pruned.size());
+    }
+
+    @Test
+    public void subReference() throws IOException {
+        final Token struct = seq("struct", def("header", con(1), eq(con(0))), def("next", con(1)), opt(sub(token("struct"), last(ref("next")))));
+        final byte[] data = toByteArray(0, 2, 0, 4, 0, 2);
+        assertEquals(parse(struct, data, false), parse(struct, data, true));
+        assertTrue(pruned.isEmpty());
+    }
+
+    @Test
+    public void unknownExpression() throws IOException {
+        final ValueExpression unknown = (graph, encoding) -> getAllValues(graph, "a").isEmpty() ? con(1).eval(graph, encoding) : con(0).eval(graph, encoding);
+        final Token format = rep(seq(any("a"), def("b", unknown)));
+        final Pruner pruner = Pruner.create(format, pruned::add);
+        assertFalse(pruner.enabled);
+        final byte[] data = toByteArray(1, 2, 3);
+        assertEquals(parse(format, data, false), parse(format, data, true));
+        assertTrue(pruned.isEmpty());
+    }
+
+    @Test
+    public void foldReducer() throws IOException {
+        // Reducers are opaque, whether they are a method reference or a Reducer.
+        for (final Token format : new Token[] {
+            rep(seq(def("a", con(1)), def("b", con(1), eqNum(fold(last(ref("a")), Shorthand::add))))),
+            rep(seq(def("a", con(1)), def("b", con(1), eqNum(fold(last(ref("a")), Reducer.SUM))))) }) {
+            pruned.clear();
+            assertTrue(Pruner.create(format, pruned::add).enabled);
+            assertEquals(1, records(parse(format, records(3, 3), true)).size);
+            assertEquals(RECORDS - 1, pruned.size());
+        }
+    }
+
+    @Test
+    public void transformFunction() throws IOException {
+        final Token format = rep(seq(def("a", con(1)), def("b", con(1), eqNum(transform(last(ref("a")), (value, encoding) -> Optional.of(value))))));
+        assertTrue(Pruner.create(format, pruned::add).enabled);
+        assertEquals(1, records(parse(format, records(3, 3), true)).size);
+        assertEquals(RECORDS - 1, pruned.size());
+    }
+
+    @Test
+    public void unknownUnaryValueExpression() {
+        final ValueExpression unknown = new UnaryValueExpression(last(ref("a"))) {
+            @Override
+            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(value);
+            }
+        };
+        assertFalse(Pruner.create(rep(seq(def("a", con(1)), def("b", con(1), eqNum(unknown)))), pruned::add).enabled);
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class SliceTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static class CountingByteStream extends InMemoryByteStream {
+
+        final int size;
+        final boolean checksAvailability;
+        int bytesRead = 0;
+
+        CountingByteStream(final byte[] data, final boolean checksAvailability) {
+            super(data);
+            this.size = data.length;
+            this.checksAvailability = checksAvailability;
+        }
+
+        @Override
+        public boolean isAvailable(final long offset, final int length) {
+            return checksAvailability && offset >= 0 && length >= 0 && offset + length <= size;
+        }
+
+        @Override
+        public int read(final long offset, final byte[] data) throws IOException {
+            final int read = super.read(offset, data);
+            bytesRead += read;
+            return read;
+        }
+
+    }
+
+    @Test
+    public void lazySliceReadsOnDemand() throws IOException {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(1, 2, 3, 4, 5, 6), true);
+        final Optional<Environment> result = def("value", con(4)).parse(new Environment(stream, 1), enc());
+        assertTrue(result.isPresent());
+        final int bytesReadDuringParse = stream.bytesRead;
+        assertEquals(0, bytesReadDuringParse);
+        final ParseValue value = getValue(result.get().order, "value");
+        assertEquals(4, value.slice.size);
+        assertArrayEquals(toByteArray(2, 3, 4, 5), value.getValue());
+        assertEquals(bytesReadDuringParse + 4, stream.bytesRead);
+    }
+
+    @Test
+    public void eagerSliceReadsOnce() throws IOException {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(1, 2, 3, 4, 5, 6), false);
+        final Optional<Environment> result = def("value", con(4)).parse(new Environment(stream, 1), enc());
+        assertTrue(result.isPresent());
+        assertEquals(4, stream.bytesRead);
+        final ParseValue value = getValue(result.get().order, "value");
+        assertArrayEquals(toByteArray(2, 3, 4, 5), value.getValue());
+        assertArrayEquals(toByteArray(2, 3, 4, 5), value.getValue());
+        assertEquals(4, stream.bytesRead);
+    }
+
+    @Test
+    public void unavailableSliceIsTruncated() throws IOException {
+        final Source source = new ByteStreamSource(new InMemoryByteStream(toByteArray(1, 2, 3)));
+        final Slice slice = source.slice(1, 4);
+        assertEquals(2, slice.size);
+        assertArrayEquals(toByteArray(2, 3), slice.getData());
+        assertFalse(def("value", con(4)).parse(new Environment(new InMemoryByteStream(toByteArray(1, 2, 3))), enc()).isPresent());
+    }
+
+    @Test
+    public void bufferIsReadOnlyView() {
+        final byte[] data = toByteArray(1, 2, 3, 4);
+        final Slice slice = new Slice(new ConstantSource(data), 1, 2);
+        final ByteBuffer buffer = slice.getBuffer();
+        assertEquals(2, buffer.remaining());
+        assertEquals(2, buffer.get(0));
+        assertEquals(3, buffer.get(1));
+        thrown.expect(ReadOnlyBufferException.class);
+        buffer.put(0, (byte) 0);
+    }
+
+    @Test
+    public void eagerSliceBuffer() {
+        final Slice slice = new Slice(new ConstantSource(new byte[0]), 0, toByteArray(5, 6));
+        assertEquals(ByteBuffer.wrap(toByteArray(5, 6)), slice.getBuffer());
+        assertTrue(slice.getBuffer().isReadOnly());
+    }
+
+    @Test
+    public void negativeSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument size may not be negative.");
+        new Slice(new ConstantSource(new byte[0]), 0, -1);
+    }
+
+    @Test
+    public void readErrorIsUnchecked() {
+        final Slice slice = new Slice(new ByteStreamSource((offset, data) -> { throw new IOException("read error"); }), 0, 1);
+        thrown.expect(UncheckedIOException.class);
+        thrown.expectMessage("read error");
+        slice.getData();
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.token.Token;
+
+public class StreamingByteStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static InputStream input(final int... bytes) {
+        return new ByteArrayInputStream(toByteArray(bytes)) {
+            @Override
+            public synchronized int read(final byte[] data, final int offset, final int length) {
+                // Return a single byte per read, like a slow pipe.
+                return super.read(data, offset, Math.min(1, length));
+            }
+        };
+    }
+
+    @Test
+    public void readForward() throws IOException {
+        final StreamingByteStream stream = new StreamingByteStream(input(0, 1, 2, 3, 4, 5, 6, 7), 4);
+        final byte[] data = new byte[3];
+        assertEquals(3, stream.read(0, data));
+        assertArrayEquals(toByteArray(0, 1, 2), data);
+        assertEquals(3, stream.read(5, data));
+        assertArrayEquals(toByteArray(5, 6, 7), data);
+        assertEquals(0, stream.read(8, data));
+    }
+
+    @Test
+    public void readLargerThanBuffer() throws IOException {
+        final StreamingByteStream stream = new StreamingByteStream(input(0, 1, 2, 3, 4, 5), 2);
+        final byte[] data = new byte[8];
+        assertEquals(6, stream.read(0, data));
+        assertEquals(5, data[5]);
+    }
+
+    @Test
+    public void readBeforeRetainedData() throws IOException {
+        final StreamingByteStream stream = new StreamingByteStream(input(0, 1, 2, 3, 4, 5, 6, 7), 4);
+        stream.read(0, new byte[8]);
+        assertEquals(1, stream.read(4, new byte[1]));
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Data at offset 3 is no longer retained (retained data starts at offset 4, buffer size is 4).");
+        stream.read(3, new byte[1]);
+    }
+
+    @Test
+    public void parseWithBacktracking() throws IOException {
+        final Token token =
+            rep(cho(seq(def("a", con(1), eq(con(1))), def("b", con(1), eq(con(2)))),
+                    seq(def("a", con(1), eq(con(1))), def("c", con(1), eq(con(3))))));
+        final Optional<Environment> result = token.parse(new Environment(new StreamingByteStream(input(1, 2, 1, 3, 1, 3, 1, 2), 2)), enc());
+        assertTrue(result.isPresent());
+        assertEquals(8, result.get().offset);
+        final ImmutableList<Value> values = getAllValues(result.get().order, "c");
+        assertEquals(2, values.size);
+        assertArrayEquals(toByteArray(3), values.head.getValue());
+    }
+
+    @Test
+    public void backtrackBeyondRetainedData() throws IOException {
+        final Token token =
+            cho(seq(def("a", con(4)), def("b", con(1), eq(con(0)))),
+                def("c", con(5)));
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Data at offset 0 is no longer retained");
+        token.parse(new Environment(new StreamingByteStream(input(1, 2, 3, 4, 5), 2)), enc());
+    }
+
+    @Test
+    public void slicesRetainData() throws IOException {
+        final StreamingByteStream stream = new StreamingByteStream(input(1, 2, 3, 4), 1);
+        assertFalse(stream.isAvailable(0, 1));
+        final Optional<Environment> result = rep(def("value", con(1))).parse(new Environment(stream), enc());
+        assertTrue(result.isPresent());
+        assertArrayEquals(toByteArray(4), getAllValues(result.get().order, "value").head.getValue());
+        assertArrayEquals(toByteArray(1), getAllValues(result.get().order, "value").tail.tail.tail.head.getValue());
+    }
+
+    @Test
+    public void readWithoutProgress() throws IOException {
+        final ReadableByteChannel input = new ReadableByteChannel() {
+            @Override public int read(final ByteBuffer destination) { return 0; }
+            @Override public boolean isOpen() { return true; }
+            @Override public void close() {}
+            @Override public String toString() { return "empty"; }
+        };
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Input empty returned no data before its end, so it is not a blocking channel.");
+        new StreamingByteStream(input).read(0, new byte[1]);
+    }
+
+    @Test
+    public void nonBlockingChannel() throws IOException {
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            thrown.expect(IllegalArgumentException.class);
+            thrown.expectMessage("Argument input must be a blocking channel.");
+            new StreamingByteStream(pipe.source());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    @Test
+    public void invalidBufferSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument bufferSize must be positive.");
+        new StreamingByteStream(input(), 0);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.data.selection.ByOffset.findItemAtOffset;
+import static io.parsingdata.metal.data.selection.ByOffset.findRootAtOffset;
+import static io.parsingdata.metal.data.selection.ByOffset.hasRootAtOffset;
+import static io.parsingdata.metal.data.selection.ByToken.getAllRoots;
+import static io.parsingdata.metal.data.selection.ByType.getReferences;
+import static io.parsingdata.metal.data.transformation.Reversal.reverse;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ConstantSource;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseItem;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.data.Source;
+import io.parsingdata.metal.token.Token;
+
+public class ByOffsetTest {
+
+    private static final Token HEADER = def("header", con(1), eq(con(0)));
+
+    private static final Token STRUCT =
+        seq("struct",
+            HEADER,
+            def("next", con(1)),
+            opt(sub(token("struct"), last(ref("next")))));
+
+    private static void assertSameAsTraversal(final ParseGraph graph, final Token definition, final long offset, final Source source) {
+        assertSame(findItemAtOffset(getAllRoots(graph, definition), offset, source), findRootAtOffset(graph, definition, offset, source));
+    }
+
+    @Test
+    public void completedRoots() throws IOException {
+        final Environment environment = stream(0, 2, 0, 4, 0, 0);
+        final Optional<Environment> result = STRUCT.parse(environment, enc());
+        assertTrue(result.isPresent());
+        final ParseGraph graph = result.get().order;
+        for (long offset = 0; offset < 6; offset++) {
+            assertSameAsTraversal(graph, STRUCT, offset, environment.source);
+            assertSameAsTraversal(graph, HEADER, offset, environment.source);
+            assertSameAsTraversal(reverse(graph), STRUCT, offset, environment.source);
+        }
+        assertTrue(hasRootAtOffset(graph, STRUCT, 4, environment.source));
+        assertFalse(hasRootAtOffset(graph, STRUCT, 1, environment.source));
+        assertFalse(hasRootAtOffset(graph, STRUCT, 0, new ConstantSource(new byte[] { 0 })));
+    }
+
+    @Test
+    public void cycle() throws IOException {
+        final Optional<Environment> result = STRUCT.parse(stream(0, 2, 0, 0), enc());
+        assertTrue(result.isPresent());
+        final ImmutableList<ParseItem> references = getReferences(result.get().order);
+        assertEquals(1, references.size);
+        assertEquals(0, references.head.asGraph().getLowestOffsetValue().slice.offset);
+    }
+
+    @Test
+    public void openBranch() throws IOException {
+        final Environment environment = stream(0, 1);
+        final Environment open = environment.addBranch(STRUCT).add(new ParseValue("header", HEADER, environment.slice(1), enc()));
+        assertSame(open.order.head, findRootAtOffset(open.order, STRUCT, 0, environment.source));
+        assertNull(findRootAtOffset(open.order, STRUCT, 1, environment.source));
+        assertSameAsTraversal(open.order, HEADER, 0, environment.source);
+        final Environment closed = open.closeBranch();
+        assertSame(closed.order.head, findRootAtOffset(closed.order, STRUCT, 0, environment.source));
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.cat;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.elvis;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.exp;
+import static io.parsingdata.metal.Shorthand.expTrue;
+import static io.parsingdata.metal.Shorthand.foldLeft;
+import static io.parsingdata.metal.Shorthand.foldRight;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.neg;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.or;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.self;
+import static io.parsingdata.metal.expression.ConstantFolding.result;
+import static io.parsingdata.metal.expression.ConstantFolding.values;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+public class ConstantFoldingTest {
+
+    private static void assertFolded(final ValueExpression expression) {
+        final ImmutableList<Optional<Value>> folded = values(expression, enc());
+        assertEquals(expression.toString(), expression.eval(ParseGraph.EMPTY, enc()), folded);
+    }
+
+    @Test
+    public void constants() {
+        assertFolded(con(1));
+        assertFolded(add(con(1), con(2)));
+        assertFolded(cat(cat(con(0x50), con(0x4b)), cat(con(3), con(4))));
+        assertFolded(div(con(1), con(0)));
+        assertFolded(exp(con(1), con(3)));
+        assertNull(values(ref("a"), enc()));
+        assertNull(values(add(ref("a"), con(1)), enc()));
+        assertNull(values(add(con(1), self), enc()));
+    }
+
+    @Test
+    public void foldedForEncoding() {
+        final ValueExpression expression = add(con(1), con(2));
+        assertEquals(enc(), values(expression, enc()).head.get().encoding);
+        assertEquals(signed(), values(expression, signed()).head.get().encoding);
+    }
+
+    @Test
+    public void failingConstant() {
+        assertNull(values(neg(con(new byte[0], signed())), signed()));
+    }
+
+    @Test
+    public void elvisWithConstant() {
+        assertEquals(values(con(1), enc()), values(elvis(con(1), last(ref("a"))), enc()));
+        assertEquals(values(con(1), enc()), values(elvis(con(1), add(self, last(ref("a")))), enc()));
+        assertFolded(elvis(div(con(1), con(0)), con(2)));
+        assertNull(values(elvis(con(1), ref("a")), enc()));
+        assertNull(values(elvis(div(con(1), con(0)), last(ref("a"))), enc()));
+        assertNull(values(elvis(last(ref("a")), con(1)), enc()));
+    }
+
+    @Test
+    public void singleElementFold() {
+        assertFolded(foldLeft(con(1), Shorthand::add));
+        assertFolded(foldRight(con(1), Shorthand::add));
+        assertFolded(foldLeft(exp(con(1), con(0)), Shorthand::add, con(2)));
+        assertNull(values(foldLeft(exp(con(1), con(2)), Shorthand::add), enc()));
+        assertNull(values(foldLeft(con(1), Shorthand::add, con(2)), enc()));
+        assertNull(values(foldLeft(ref("a"), Shorthand::add), enc()));
+    }
+
+    @Test
+    public void expressions() {
+        assertTrue(result(expTrue(), enc()));
+        assertFalse(result(not(expTrue()), enc()));
+        assertTrue(result(eqNum(con(1), add(con(0), con(1))), enc()));
+        assertFalse(result(gtNum(con(1), con(1)), enc()));
+        assertFalse(result(and(eqNum(con(0)), not(expTrue())), enc()));
+        assertTrue(result(or(eqNum(con(0)), expTrue()), enc()));
+        assertNull(result(and(eqNum(con(0)), expTrue()), enc()));
+        assertNull(result(or(eqNum(con(0)), not(expTrue())), enc()));
+        assertNull(result(eqNum(con(1)), enc()));
+        assertNull(result(eqNum(ref("a"), con(1)), enc()));
+        assertNull(result((graph, encoding) -> true, enc()));
+    }
+
+}
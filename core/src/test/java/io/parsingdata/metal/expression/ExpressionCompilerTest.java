@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.cat;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.elvis;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.eqStr;
+import static io.parsingdata.metal.Shorthand.expTrue;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.mul;
+import static io.parsingdata.metal.Shorthand.neg;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.or;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.self;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.shl;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.eval;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.EvaluationCache;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+public class ExpressionCompilerTest {
+
+    private static final ValueExpression[] VALUE_EXPRESSIONS = {
+        con(5), self, ref("b"), ref("a"), ref("x"), last(ref("a")), first(ref("a")), last(ref("x")),
+        add(last(ref("a")), con(1)), add(ref("a"), con(1)), add(ref("a"), ref("a")), mul(ref("b"), ref("x")),
+        div(ref("b"), ref("c")), neg(div(ref("b"), ref("c"))), sub(neg(last(ref("a"))), shl(ref("b"), con(60))),
+        elvis(div(ref("b"), ref("c")), con(7)), cat(ref("b"), last(ref("a"))), count(ref("a")),
+        add(count(ref("a")), mul(self, con(3)))
+    };
+
+    private static final Expression[] EXPRESSIONS = {
+        expTrue(), eqNum(con(0)), eqNum(con(1)), eqNum(ref("b"), con(3)), eqNum(ref("a"), con(1)),
+        eqNum(ref("a"), ref("a")), eqNum(ref("x"), ref("x")), eqNum(div(ref("b"), ref("c")), con(0)),
+        gtNum(last(ref("a")), ref("c")), ltNum(last(ref("a")), ref("c")), eq(cat(ref("b"), ref("b")), con(0x0303)),
+        eqStr(ref("b"), ref("b")), and(eqNum(con(0)), gtNum(ref("b"), con(2))), and(eqNum(con(1)), eqNum(ref("a"), ref("a"))),
+        or(eqNum(con(1)), ltNum(ref("b"), con(2))), or(eqNum(con(0)), eqNum(ref("x"), con(0))), not(eqNum(ref("a"), con(2))),
+        not(and(expTrue(), or(not(expTrue()), eqNum(ref("b"), add(con(1), con(2))))))
+    };
+
+    private static ParseGraph parse() throws IOException {
+        final Optional<Environment> result = seq(def("a", 1), def("a", 1), def("b", 1), def("c", 1)).parse(stream(1, 2, 3, 0), enc());
+        assertTrue(result.isPresent());
+        return result.get().order;
+    }
+
+    @Test
+    public void valueExpressions() throws IOException {
+        final ParseGraph graph = parse();
+        final Encoding encoding = enc();
+        for (final ValueExpression expression : VALUE_EXPRESSIONS) {
+            final ValueExpression compiled = compile(expression);
+            final ImmutableList<Optional<Value>> expected = expression.eval(graph, encoding);
+            // The second evaluation uses the handle compiled in the first.
+            assertEquals(expression.toString(), expected, compiled.eval(graph, encoding));
+            assertEquals(expression.toString(), expected, compiled.eval(graph, encoding));
+        }
+    }
+
+    @Test
+    public void expressions() throws IOException {
+        final ParseGraph graph = parse();
+        final Encoding encoding = enc();
+        for (final Expression expression : EXPRESSIONS) {
+            final Expression compiled = compile(expression);
+            final boolean expected = expression.eval(graph, encoding);
+            assertEquals(expression.toString(), expected, compiled.eval(graph, encoding));
+            assertEquals(expression.toString(), expected, compiled.eval(graph, encoding));
+        }
+    }
+
+    @Test
+    public void cached() throws IOException {
+        final ParseGraph graph = parse();
+        final Encoding encoding = enc();
+        final EvaluationCache cache = EvaluationCache.create(8);
+        for (final ValueExpression expression : VALUE_EXPRESSIONS) {
+            final ValueExpression compiled = compile(expression);
+            final ImmutableList<Optional<Value>> expected = expression.eval(graph, encoding);
+            assertEquals(expression.toString(), expected, eval(compiled, graph, encoding, cache));
+            assertEquals(expression.toString(), expected, eval(compiled, graph, encoding, cache));
+            assertEquals(expression.toString(), expected, eval(expression, graph, encoding, cache));
+        }
+        for (final Expression expression : EXPRESSIONS) {
+            final Expression compiled = compile(expression);
+            final boolean expected = expression.eval(graph, encoding);
+            assertEquals(expression.toString(), expected, eval(compiled, graph, encoding, cache));
+            assertEquals(expression.toString(), expected, eval(compiled, graph, encoding, cache));
+            assertEquals(expression.toString(), expected, eval(expression, graph, encoding, cache));
+        }
+    }
+
+    @Test
+    public void unknownExpressions() throws IOException {
+        final ParseGraph graph = parse();
+        final Expression lastIsZero = (g, e) -> g.current().asNumeric().signum() == 0;
+        assertTrue(compile(and(lastIsZero, eqNum(ref("c")))).eval(graph, enc()));
+        final ValueExpression values = (g, e) -> ImmutableList.create(Optional.<Value>of(g.current())).add(Optional.empty());
+        assertEquals(values.eval(graph, enc()), compile(values).eval(graph, enc()));
+        assertEquals(add(values, con(1)).eval(graph, enc()), compile(add(values, con(1))).eval(graph, enc()));
+    }
+
+    @Test
+    public void otherEncoding() throws IOException {
+        final ParseGraph graph = parse();
+        final ValueExpression expression = add(add(con(1), con(2)), last(ref("a")));
+        final ValueExpression compiled = compile(expression);
+        assertEquals(expression.eval(graph, enc()), compiled.eval(graph, enc()));
+        assertEquals(expression.eval(graph, signed()), compiled.eval(graph, signed()));
+        assertEquals(signed(), compiled.eval(graph, signed()).head.get().encoding);
+        assertEquals(enc(), compiled.eval(graph, enc()).head.get().encoding);
+    }
+
+    @Test
+    public void compileOnce() {
+        final ValueExpression compiledValue = compile(ref("a"));
+        assertSame(compiledValue, compile(compiledValue));
+        final Expression compiled = compile(eqNum(con(1)));
+        assertSame(compiled, compile(compiled));
+    }
+
+    @Test
+    public void equalityAndToString() {
+        assertEquals(compile(ref("a")), compile(ref("a")));
+        assertEquals(compile(ref("a")).hashCode(), compile(ref("a")).hashCode());
+        assertNotEquals(compile(ref("a")), compile(ref("b")));
+        assertNotEquals(compile(ref("a")), ref("a"));
+        assertEquals(ref("a").toString(), compile(ref("a")).toString());
+        assertEquals(compile(eqNum(con(1))), compile(eqNum(con(1))));
+        assertEquals(compile(eqNum(con(1))).hashCode(), compile(eqNum(con(1))).hashCode());
+        assertNotEquals(compile(eqNum(con(1))), compile(eqNum(con(2))));
+        assertEquals(eqNum(con(1)).toString(), compile(eqNum(con(1))).toString());
+    }
+
+}
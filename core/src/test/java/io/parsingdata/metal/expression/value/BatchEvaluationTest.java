@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.cat;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.exp;
+import static io.parsingdata.metal.Shorthand.mapLeft;
+import static io.parsingdata.metal.Shorthand.mapRight;
+import static io.parsingdata.metal.Shorthand.mul;
+import static io.parsingdata.metal.Shorthand.neg;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.data.transformation.Wrapping.wrap;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+
+public class BatchEvaluationTest {
+
+    // a = [1, 2, 3], b = [4, 0] and c is empty. Arrays list the most recent value first, with null for an empty value.
+    private static final ParseGraph GRAPH = parse();
+
+    private static ParseGraph parse() {
+        try {
+            return seq(rep(def("a", con(1), not(eq(con(0))))), def("zero", con(1)), rep(def("b", con(1)))).parse(stream(1, 2, 3, 0, 4, 0), signed()).get().order;
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void assertValues(final ValueExpression expression, final Integer... expected) {
+        final Value[] values = expression.evalArray(GRAPH, signed());
+        final Integer[] actual = new Integer[values.length];
+        for (int index = 0; index < values.length; index++) {
+            actual[index] = values[index] == null ? null : values[index].asNumeric().intValue();
+        }
+        assertArrayEquals(expression.toString(), expected, actual);
+        assertEquals(expression.toString(), expression.eval(GRAPH, signed()), wrap(values));
+    }
+
+    @Test
+    public void references() {
+        assertValues(ref("a"), 3, 2, 1);
+        assertValues(ref("b"), 0, 4);
+        assertValues(ref("c"));
+    }
+
+    @Test
+    public void binaryPadsShortestOperand() {
+        assertValues(add(ref("a"), ref("b")), 3, 6, null);
+        assertValues(sub(ref("b"), ref("a")), -3, 2, null);
+        assertValues(add(ref("a"), ref("c")), null, null, null);
+        assertValues(div(ref("a"), ref("b")), null, 0, null);
+    }
+
+    @Test
+    public void nested() {
+        assertValues(neg(div(ref("b"), ref("a"))), 0, -2, null);
+        assertValues(mul(neg(ref("a")), add(ref("b"), con(1))), -3, null, null);
+        assertValues(cat(ref("a"), exp(ref("b"), con(2))), 0x0300, 0x0204, 0x0100, null);
+    }
+
+    @Test
+    public void expand() {
+        assertValues(exp(ref("b"), con(3)), 0, 4, 0, 4, 0, 4);
+        assertValues(exp(ref("b"), con(0)));
+        assertValues(exp(ref("c"), con(2)));
+        assertValues(mapLeft(Shorthand::add, ref("a"), con(10)), 13, 12, 11);
+        assertValues(mapRight(Shorthand::sub, con(10), ref("b")), 10, 6);
+        assertValues(mapLeft(Shorthand::add, ref("c"), con(1)));
+    }
+
+    @Test
+    public void overriddenEval() {
+        // Subclasses that implement their own list semantics, by only evaluating the most recent values.
+        final ValueExpression binary = new BinaryValueExpression(ref("a"), ref("b")) {
+            @Override
+            public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+                return ImmutableList.create(super.eval(graph, encoding).head);
+            }
+            @Override
+            public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(ConstantFactory.createFromNumeric(left.asNumeric().add(right.asNumeric()), encoding));
+            }
+        };
+        final ValueExpression unary = new UnaryValueExpression(ref("a")) {
+            @Override
+            public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+                return ImmutableList.create(super.eval(graph, encoding).head);
+            }
+            @Override
+            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(value);
+            }
+        };
+        assertValues(binary, 3);
+        assertValues(unary, 3);
+        assertValues(neg(binary), -3);
+        assertValues(add(unary, ref("b")), 3, null);
+        assertValues(add(binary, unary), 6);
+    }
+
+    @Test
+    public void emptyValues() {
+        final Value one = ConstantFactory.createFromNumeric(1, enc());
+        final Value[] results = add(con(0), con(0)).eval(new Value[] { one, null, one }, new Value[] { one, one }, ParseGraph.EMPTY, enc());
+        assertEquals(3, results.length);
+        assertEquals(2, results[0].asNumeric().intValue());
+        assertNull(results[1]);
+        assertNull(results[2]);
+        final Value[] negated = neg(con(0)).eval(new Value[] { null, one }, ParseGraph.EMPTY, signed());
+        assertNull(negated[0]);
+        assertEquals(-1, negated[1].asNumeric().intValue());
+        assertNull(div(con(0), con(0)).eval(new Value[] { one }, new Value[] { ConstantFactory.createFromNumeric(0, enc()) }, ParseGraph.EMPTY, enc())[0]);
+    }
+
+}
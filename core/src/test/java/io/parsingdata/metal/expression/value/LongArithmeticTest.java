@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+
+import static io.parsingdata.metal.Shorthand.con;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.ByteOrder;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.value.arithmetic.Add;
+import io.parsingdata.metal.expression.value.arithmetic.Div;
+import io.parsingdata.metal.expression.value.arithmetic.Mod;
+import io.parsingdata.metal.expression.value.arithmetic.Mul;
+import io.parsingdata.metal.expression.value.arithmetic.Neg;
+import io.parsingdata.metal.expression.value.arithmetic.Sub;
+import io.parsingdata.metal.expression.value.bitwise.And;
+import io.parsingdata.metal.expression.value.bitwise.Not;
+import io.parsingdata.metal.expression.value.bitwise.Or;
+import io.parsingdata.metal.expression.value.bitwise.ShiftLeft;
+import io.parsingdata.metal.expression.value.bitwise.ShiftRight;
+
+/**
+ * Compares the results of arithmetic and bitwise expressions on values that
+ * fit in a long to those computed with {@link BigInteger} and {@link BitSet}.
+ */
+public class LongArithmeticTest {
+
+    private static final Encoding[] ENCODINGS = {
+        new Encoding(Sign.UNSIGNED, StandardCharsets.US_ASCII, ByteOrder.BIG_ENDIAN),
+        new Encoding(Sign.SIGNED, StandardCharsets.US_ASCII, ByteOrder.BIG_ENDIAN),
+        new Encoding(Sign.UNSIGNED, StandardCharsets.US_ASCII, ByteOrder.LITTLE_ENDIAN),
+        new Encoding(Sign.SIGNED, StandardCharsets.US_ASCII, ByteOrder.LITTLE_ENDIAN)
+    };
+
+    private static final ValueExpression X = con(0);
+
+    private final Random random = new Random(0);
+
+    private Value random(final Encoding encoding) {
+        final byte[] data = new byte[1 + random.nextInt(9)];
+        random.nextBytes(data);
+        // Include small values and the boundaries of long.
+        switch (random.nextInt(4)) {
+            case 0: return ConstantFactory.createFromNumeric(random.nextInt(5) - 2, encoding);
+            case 1: return ConstantFactory.createFromNumeric(random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE, encoding);
+            default: return ConstantFactory.createFromBytes(data, encoding);
+        }
+    }
+
+    private static Value numeric(final BigInteger value, final Encoding encoding) {
+        return ConstantFactory.createFromNumeric(value, encoding);
+    }
+
+    private static Value bits(final BitSet value, final int minSize, final Encoding encoding) {
+        return ConstantFactory.createFromBitSet(value, minSize, encoding);
+    }
+
+    private static void assertSameValue(final Value expected, final Optional<Value> actual) {
+        assertEquals(expected, actual.get());
+        // A signed value without data has no numeric value.
+        if (expected.slice.size == 0) { return; }
+        assertEquals(expected.asNumeric(), actual.get().asNumeric());
+        assertEquals(expected.fitsInLong(), actual.get().fitsInLong());
+    }
+
+    @Test
+    public void sameAsBigIntegerAndBitSet() {
+        final ParseGraph graph = ParseGraph.EMPTY;
+        for (int sample = 0; sample < 2000; sample++) {
+            final Encoding encoding = ENCODINGS[random.nextInt(ENCODINGS.length)];
+            final Value left = random(encoding);
+            final Value right = random(ENCODINGS[random.nextInt(ENCODINGS.length)]);
+            final BigInteger l = new Value(left.slice, left.encoding).asNumeric();
+            final BigInteger r = new Value(right.slice, right.encoding).asNumeric();
+            assertSameValue(numeric(l.add(r), encoding), new Add(X, X).eval(left, right, graph, encoding));
+            assertSameValue(numeric(l.subtract(r), encoding), new Sub(X, X).eval(left, right, graph, encoding));
+            assertSameValue(numeric(l.multiply(r), encoding), new Mul(X, X).eval(left, right, graph, encoding));
+            assertSameValue(numeric(l.negate(), encoding), new Neg(X).eval(left, graph, encoding));
+            if (r.signum() != 0) {
+                assertSameValue(numeric(l.divide(r), encoding), new Div(X, X).eval(left, right, graph, encoding));
+            }
+            if (r.signum() > 0) {
+                assertSameValue(numeric(l.mod(r), encoding), new Mod(X, X).eval(left, right, graph, encoding));
+            }
+            final BitSet and = left.asBitSet();
+            and.and(right.asBitSet());
+            assertSameValue(bits(and, left.slice.size, encoding), new And(X, X).eval(left, right, graph, encoding));
+            final BitSet or = left.asBitSet();
+            or.or(right.asBitSet());
+            assertSameValue(bits(or, Math.max(left.slice.size, right.slice.size), encoding), new Or(X, X).eval(left, right, graph, encoding));
+            final BitSet not = left.asBitSet();
+            not.flip(0, left.slice.size * 8);
+            assertSameValue(bits(not, left.slice.size, encoding), new Not(X).eval(left, graph, encoding));
+            final int shift = random.nextInt(72);
+            final Value positions = ConstantFactory.createFromNumeric(shift, encoding);
+            final BitSet leftBits = left.asBitSet();
+            final BitSet shifted = new BitSet();
+            for (int i = leftBits.nextSetBit(0); i >= 0; i = leftBits.nextSetBit(i + 1)) {
+                shifted.set(i + shift);
+            }
+            assertSameValue(bits(shifted, (leftBits.length() + shift + 7) / 8, encoding), new ShiftLeft(X, X).eval(left, positions, graph, encoding));
+            assertSameValue(bits(leftBits.get(shift, Math.max(shift, leftBits.length())), left.slice.size, encoding), new ShiftRight(X, X).eval(left, positions, graph, encoding));
+        }
+    }
+
+    @Test
+    public void createFromNumeric() {
+        for (final Encoding encoding : ENCODINGS) {
+            for (final long value : new long[] { 0, 1, -1, 127, 128, 255, 256, -128, -129, 65535, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1 }) {
+                final Value expected = numeric(BigInteger.valueOf(value), encoding);
+                final Value actual = ConstantFactory.createFromNumeric(value, encoding);
+                assertEquals(expected, actual);
+                assertEquals(expected.asNumeric(), actual.asNumeric());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.foldLeft;
+import static io.parsingdata.metal.Shorthand.foldRight;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BinaryOperator;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.Slice;
+import io.parsingdata.metal.data.Source;
+import io.parsingdata.metal.encoding.Encoding;
+
+public class ReducerTest {
+
+    private static final Reducer SUB = new Reducer(Shorthand::sub, false);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(2);
+
+    private static final Reducer[] REDUCERS = { Reducer.SUM, Reducer.XOR, Reducer.MIN, Reducer.MAX, Reducer.CONCAT, SUB, Reducer.SUM.inParallel(POOL), Reducer.CONCAT.inParallel(POOL) };
+
+    @Test
+    public void sameAsExpressions() {
+        for (final Reducer reducer : REDUCERS) {
+            for (final int size : new int[] { 0, 1, 2, 7, Fold.PARALLEL_THRESHOLD + 3 }) {
+                final ValueExpression values = values(size);
+                final BinaryOperator<ValueExpression> expressions = reducer.operation::apply;
+                for (final Encoding encoding : new Encoding[] { enc(), signed() }) {
+                    assertEquals(foldLeft(values, expressions).eval(ParseGraph.EMPTY, encoding), foldLeft(values, reducer).eval(ParseGraph.EMPTY, encoding));
+                    assertEquals(foldRight(values, expressions).eval(ParseGraph.EMPTY, encoding), foldRight(values, reducer).eval(ParseGraph.EMPTY, encoding));
+                    assertEquals(foldLeft(values, expressions, con(5)).eval(ParseGraph.EMPTY, encoding), foldLeft(values, reducer, con(5)).eval(ParseGraph.EMPTY, encoding));
+                    assertEquals(foldRight(values, expressions, con(5)).eval(ParseGraph.EMPTY, encoding), foldRight(values, reducer, con(5)).eval(ParseGraph.EMPTY, encoding));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void order() {
+        final ValueExpression values = values(3);
+        assertEquals(-3, foldLeft(values, SUB).eval(ParseGraph.EMPTY, signed()).head.get().asNumeric().intValue());
+        assertEquals(-4, foldRight(values, SUB, con(5)).eval(ParseGraph.EMPTY, signed()).head.get().asNumeric().intValue());
+        assertEquals("0x000102", foldLeft(values, Reducer.CONCAT).eval(ParseGraph.EMPTY, enc()).head.get().toString());
+        assertEquals("0x000102", foldRight(values, Reducer.CONCAT).eval(ParseGraph.EMPTY, enc()).head.get().toString());
+    }
+
+    @Test
+    public void emptyValues() {
+        assertTrue(foldLeft(div(con(1), con(0)), Reducer.SUM).eval(ParseGraph.EMPTY, enc()).isEmpty());
+        assertEquals(ImmutableList.create(Optional.empty()), foldRight(values(3), Reducer.SUM, div(con(1), con(0))).eval(ParseGraph.EMPTY, enc()));
+        final ValueExpression emptyReducer = foldLeft(values(Fold.PARALLEL_THRESHOLD), new Reducer(Shorthand::div, true), con(1));
+        assertEquals(ImmutableList.create(Optional.empty()), emptyReducer.eval(ParseGraph.EMPTY, enc()));
+        final ValueExpression parallelEmptyReducer = foldLeft(values(Fold.PARALLEL_THRESHOLD), new Reducer(Shorthand::div, true).inParallel(POOL), con(1));
+        assertEquals(ImmutableList.create(Optional.empty()), parallelEmptyReducer.eval(ParseGraph.EMPTY, enc()));
+    }
+
+    @Test
+    public void parallelOnRequest() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final Reducer reducer = new Reducer((left, right) -> new BinaryValueExpression(left, right) {
+            @Override
+            public Optional<Value> eval(final Value leftValue, final Value rightValue, final ParseGraph graph, final Encoding encoding) {
+                threads.add(Thread.currentThread());
+                return Optional.of(leftValue);
+            }
+        }, true);
+        foldLeft(values(Fold.PARALLEL_THRESHOLD), reducer).eval(ParseGraph.EMPTY, enc());
+        assertEquals(1, threads.size());
+        assertTrue(threads.contains(Thread.currentThread()));
+        threads.clear();
+        foldLeft(values(Fold.PARALLEL_THRESHOLD), reducer.inParallel(POOL)).eval(ParseGraph.EMPTY, enc());
+        for (final Thread thread : threads) {
+            assertTrue(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread)thread).getPool() == POOL);
+        }
+    }
+
+    @Test
+    public void readOperandsBeforeParallel() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final Source source = new Source() {
+            @Override
+            protected byte[] getData(final long offset, final int size) {
+                threads.add(Thread.currentThread());
+                return new byte[] { (byte)(offset == 100 ? 0 : 1) };
+            }
+
+            @Override
+            protected boolean isAvailable(final long offset, final int size) {
+                return true;
+            }
+        };
+        ImmutableList<Optional<Value>> list = new ImmutableList<>();
+        for (int index = 0; index < Fold.PARALLEL_THRESHOLD; index++) {
+            list = list.add(Optional.of(new Value(new Slice(source, index + 1, 1), enc())));
+        }
+        final ImmutableList<Optional<Value>> values = list;
+        // The data of lazy values is read by the calling thread, since sources do not have to support concurrent reads.
+        final Optional<Value> minimum = foldLeft((graph, encoding) -> values, Reducer.MIN.inParallel(POOL)).eval(ParseGraph.EMPTY, enc()).head;
+        assertEquals(Thread.currentThread(), threads.iterator().next());
+        assertEquals(1, threads.size());
+        // The result is the original value, not the copy with its data.
+        Value expected = null;
+        for (ImmutableList<Optional<Value>> current = values; !current.isEmpty(); current = current.tail) {
+            if (current.head.get().slice.offset == 100) { expected = current.head.get(); }
+        }
+        assertSame(expected, minimum.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parallelRequiresAssociative() {
+        SUB.inParallel(POOL);
+    }
+
+    @Test
+    public void applyBuildsOperation() {
+        assertEquals(Shorthand.add(con(1), con(2)), Reducer.SUM.apply(con(1), con(2)));
+        assertEquals("Reducer(Xor)", Reducer.XOR.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noOperationResult() {
+        new Reducer((left, right) -> null, true);
+    }
+
+    // The values 0 to size-1 modulo 251, with the first value at the bottom.
+    private static ValueExpression values(final int size) {
+        ImmutableList<Optional<Value>> values = new ImmutableList<>();
+        for (int index = 0; index < size; index++) {
+            values = values.add(Optional.of(ConstantFactory.createFromNumeric(index % 251, enc())));
+        }
+        final ImmutableList<Optional<Value>> result = values;
+        return (graph, encoding) -> result;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.neg;
+import static io.parsingdata.metal.Shorthand.nth;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.encoding.Encoding;
+
+public class ValueSequenceTest {
+
+    private static final ValueExpression[] EXPRESSIONS = {
+        ref("a"), ref("b"), ref("c"), add(ref("a"), ref("b")), add(ref("b"), ref("a")), add(ref("a"), ref("c")),
+        neg(ref("a")), neg(add(ref("a"), con(1))), con(1)
+    };
+
+    private ParseGraph graph;
+    private int evaluations;
+
+    @Before
+    public void setUp() throws IOException {
+        graph = seq(def("a", con(1)), def("a", con(1)), def("a", con(1)), def("b", con(2)), def("b", con(2))).parse(stream(1, 2, 3, 0, 4, 0, 5), enc()).get().order;
+        evaluations = 0;
+    }
+
+    @Test
+    public void sameAsEval() {
+        for (final ValueExpression expression : EXPRESSIONS) {
+            final ImmutableList<Optional<Value>> expected = expression.eval(graph, enc());
+            final ValueSequence values = expression.sequence(graph, enc());
+            assertEquals(expected.size, values.size());
+            for (ImmutableList<Optional<Value>> list = expected; !list.isEmpty(); list = list.tail) {
+                assertEquals(list.head, values.next());
+            }
+            assertFalse(values.hasNext());
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhausted() {
+        final ValueSequence values = ref("c").sequence(graph, enc());
+        assertFalse(values.hasNext());
+        values.next();
+    }
+
+    @Test
+    public void skipReferences() {
+        final ValueSequence values = ref("a").sequence(graph, enc());
+        values.skip(2);
+        assertEquals(1, values.size());
+        assertEquals(1, values.next().get().asNumeric().intValue());
+        final ValueSequence negated = neg(ref("a")).sequence(graph, enc());
+        negated.skip(1);
+        assertEquals(neg(ref("a")).eval(graph, enc()).tail.head, negated.next());
+        assertEquals(2, nth(ref("a"), con(1)).eval(graph, enc()).head.get().asNumeric().intValue());
+    }
+
+    @Test
+    public void firstSkipsAtOnce() {
+        final ValueExpression expression = new UnaryValueExpression(ref("a")) {
+
+            @Override
+            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(value);
+            }
+
+            @Override
+            public ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+                final ValueSequence values = ref("a").sequence(graph, encoding);
+                return new ValueSequence() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return values.hasNext();
+                    }
+
+                    @Override
+                    public Optional<Value> next() {
+                        return values.next();
+                    }
+
+                    @Override
+                    public void skip() {
+                        evaluations++;
+                        values.skip();
+                    }
+
+                    @Override
+                    public void skip(final long count) {
+                        values.skip(count);
+                    }
+
+                    @Override
+                    public long size() {
+                        return values.size();
+                    }
+
+                };
+            }
+
+        };
+        assertEquals(1, first(expression).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(0, evaluations);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void skipPastEnd() {
+        ref("a").sequence(graph, enc()).skip(4);
+    }
+
+    @Test
+    public void unknownSize() {
+        final ValueExpression expression = counting(ref("a"), false);
+        assertEquals(-1, add(expression, ref("b")).sequence(graph, enc()).size());
+        assertEquals(3, count(add(expression, ref("b"))).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(4, nth(add(expression, ref("a")), con(1)).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(3 + 3, evaluations);
+    }
+
+    @Test
+    public void computeOnlyRequiredValues() {
+        final ValueExpression values = add(counting(ref("a"), true), ref("a"));
+        assertEquals(6, last(values).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(1, evaluations);
+        assertEquals(2, first(values).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(2, evaluations);
+        assertEquals(4, nth(values, con(1)).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(3, evaluations);
+        assertEquals(3, count(values).eval(graph, enc()).head.get().asNumeric().intValue());
+        assertEquals(3, evaluations);
+        assertEquals(Optional.empty(), nth(values, con(3)).eval(graph, enc()).head);
+        assertEquals(3, evaluations);
+        assertEquals(3, nth(values, ref("a")).eval(graph, enc()).size);
+        assertEquals(3 + 3, evaluations);
+    }
+
+    @Test
+    public void overriddenEval() {
+        // Subclasses that implement their own list semantics, by only evaluating the most recent values.
+        final ValueExpression unary = new UnaryValueExpression(ref("a")) {
+
+            @Override
+            public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+                return ImmutableList.create(super.eval(graph, encoding).head);
+            }
+
+            @Override
+            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(value);
+            }
+
+        };
+        final ValueExpression binary = new BinaryValueExpression(ref("a"), ref("a")) {
+
+            @Override
+            public ImmutableList<Optional<Value>> eval(final ParseGraph graph, final Encoding encoding) {
+                return ImmutableList.create(super.eval(graph, encoding).head);
+            }
+
+            @Override
+            public Optional<Value> eval(final Value left, final Value right, final ParseGraph graph, final Encoding encoding) {
+                return Optional.of(left);
+            }
+
+        };
+        for (final ValueExpression expression : new ValueExpression[] { unary, binary }) {
+            assertEquals(1, count(expression).eval(graph, enc()).head.get().asNumeric().intValue());
+            assertEquals(3, first(expression).eval(graph, enc()).head.get().asNumeric().intValue());
+            assertEquals(3, last(expression).eval(graph, enc()).head.get().asNumeric().intValue());
+            assertEquals(4, first(add(expression, con(1))).eval(graph, enc()).head.get().asNumeric().intValue());
+            assertEquals(3, count(add(expression, ref("a"))).eval(graph, enc()).head.get().asNumeric().intValue());
+        }
+    }
+
+    private ValueExpression counting(final ValueExpression operand, final boolean knownSize) {
+        return new UnaryValueExpression(operand) {
+
+            @Override
+            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
+                evaluations++;
+                return Optional.of(value);
+            }
+
+            @Override
+            public ValueSequence sequence(final ParseGraph graph, final Encoding encoding) {
+                final ValueSequence values = super.sequence(graph, encoding);
+                return knownSize ? values : new ValueSequence() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return values.hasNext();
+                    }
+
+                    @Override
+                    public Optional<Value> next() {
+                        return values.next();
+                    }
+
+                };
+            }
+
+        };
+    }
+
+}
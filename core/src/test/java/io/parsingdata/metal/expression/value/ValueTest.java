@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.toByteArray;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.encoding.ByteOrder;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.encoding.Sign;
+
+public class ValueTest {
+
+    private static final Encoding[] ENCODINGS = {
+        new Encoding(Sign.UNSIGNED, StandardCharsets.US_ASCII, ByteOrder.BIG_ENDIAN),
+        new Encoding(Sign.SIGNED, StandardCharsets.US_ASCII, ByteOrder.BIG_ENDIAN),
+        new Encoding(Sign.UNSIGNED, StandardCharsets.US_ASCII, ByteOrder.LITTLE_ENDIAN),
+        new Encoding(Sign.SIGNED, StandardCharsets.US_ASCII, ByteOrder.LITTLE_ENDIAN)
+    };
+
+    private static BigInteger decode(final byte[] data, final Encoding encoding) {
+        return encoding.sign == Sign.SIGNED ? new BigInteger(encoding.byteOrder.apply(data)) : new BigInteger(1, encoding.byteOrder.apply(data));
+    }
+
+    @Test
+    public void longMatchesBigInteger() {
+        final Random random = new Random(0);
+        for (int size = 1; size <= 9; size++) {
+            for (int sample = 0; sample < 100; sample++) {
+                final byte[] data = new byte[size];
+                random.nextBytes(data);
+                for (final Encoding encoding : ENCODINGS) {
+                    final Value value = ConstantFactory.createFromBytes(data, encoding);
+                    final BigInteger expected = decode(data, encoding);
+                    assertEquals(size <= Long.BYTES && expected.bitLength() < Long.SIZE, value.fitsInLong());
+                    assertEquals(expected, value.asNumeric());
+                    assertEquals(expected.longValue(), value.asLong());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void boundaries() {
+        final Value unsignedMax = ConstantFactory.createFromBytes(toByteArray(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff), ENCODINGS[0]);
+        assertFalse(unsignedMax.fitsInLong());
+        assertEquals(BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE), unsignedMax.asNumeric());
+        assertEquals(-1, unsignedMax.asLong());
+
+        final Value signedMin = ConstantFactory.createFromBytes(toByteArray(0x80, 0, 0, 0, 0, 0, 0, 0), ENCODINGS[1]);
+        assertTrue(signedMin.fitsInLong());
+        assertEquals(Long.MIN_VALUE, signedMin.asLong());
+
+        final Value littleEndian = ConstantFactory.createFromBytes(toByteArray(0x01, 0x80), ENCODINGS[3]);
+        assertEquals(-32767, littleEndian.asLong());
+    }
+
+    @Test
+    public void empty() {
+        final Value empty = ConstantFactory.createFromBytes(new byte[0], ENCODINGS[0]);
+        assertFalse(empty.fitsInLong());
+        assertEquals(BigInteger.ZERO, empty.asNumeric());
+    }
+
+}
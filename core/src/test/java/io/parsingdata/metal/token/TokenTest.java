@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.stream;
+import static io.parsingdata.metal.util.TokenDefinitions.any;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.expression.value.Value;
+
+public class TokenTest {
+
+    @Test
+    public void scopesAreShared() throws IOException {
+        final Optional<Environment> result = rep(seq("outer", any("header"), seq("inner", any("value"), any("footer")))).parse(stream(1, 2, 3, 4, 5, 6, 7, 8, 9), enc());
+        assertTrue(result.isPresent());
+        final ImmutableList<Value> values = getAllValues(result.get().order, "value");
+        assertEquals(3, values.size);
+        for (ImmutableList<Value> current = values; !current.isEmpty(); current = current.tail) {
+            assertEquals("outer.inner.value", ((ParseValue)current.head).name);
+            assertSame(((ParseValue)values.head).name, ((ParseValue)current.head).name);
+        }
+    }
+
+    @Test
+    public void tokenAtManyPositions() throws IOException {
+        final Token shared = any("value");
+        final Token[] scopes = new Token[20];
+        for (int index = 0; index < scopes.length; index++) {
+            scopes[index] = seq("s" + index, shared, shared);
+        }
+        final Token format = seq("format", scopes[0], scopes[1], scopes[2], scopes[3], scopes[4], scopes[5], scopes[6], scopes[7], scopes[8], scopes[9],
+                                 scopes[10], scopes[11], scopes[12], scopes[13], scopes[14], scopes[15], scopes[16], scopes[17], scopes[18], scopes[19]);
+        for (int parse = 0; parse < 2; parse++) {
+            final Optional<Environment> result = format.parse(stream(new int[scopes.length * 2]), enc());
+            assertTrue(result.isPresent());
+            for (int index = 0; index < scopes.length; index++) {
+                final ImmutableList<Value> values = getAllValues(result.get().order, "s" + index + ".value");
+                assertEquals(2, values.size);
+                assertEquals("format.s" + index + ".value", ((ParseValue)values.head).name);
+                assertSame(((ParseValue)values.head).name, ((ParseValue)values.tail.head).name);
+            }
+        }
+    }
+
+    @Test
+    public void partialNamesAreShared() throws IOException {
+        final Token value = any("value");
+        final Optional<Environment> result = seq("outer", any("header"), seq("inner", value, value)).parse(stream(1, 2, 3), enc());
+        assertTrue(result.isPresent());
+        final ImmutableList<Value> values = getAllValues(result.get().order, "value");
+        assertEquals(2, values.size);
+        final ImmutableList<String> partialNames = value.getPartialNames(((ParseValue)values.head).name);
+        assertEquals(2, partialNames.size);
+        assertEquals("value", partialNames.head);
+        assertEquals("inner.value", partialNames.tail.head);
+        assertSame(partialNames, value.getPartialNames(((ParseValue)values.tail.head).name));
+        assertEquals(0, value.getPartialNames("value").size);
+    }
+
+}
@@ -16,14 +16,13 @@
 
 package io.parsingdata.metal.format;
 
+import static io.parsingdata.metal.Shorthand.transform;
 import static io.parsingdata.metal.Util.createFromBytes;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.zip.CRC32;
 
-import io.parsingdata.metal.data.ParseGraph;
-import io.parsingdata.metal.encoding.Encoding;
-import io.parsingdata.metal.expression.value.UnaryValueExpression;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
 
@@ -32,19 +31,18 @@ public final class Callback {
     private Callback() {}
 
     public static ValueExpression crc32(final ValueExpression target) {
-        return new UnaryValueExpression(target) {
-            @Override
-            public Optional<Value> eval(final Value value, final ParseGraph graph, final Encoding encoding) {
-                final CRC32 crc = new CRC32();
-                crc.update(value.getValue());
-                final long crcValue = crc.getValue();
-                return Optional.of(new Value(createFromBytes(encoding.byteOrder.apply(new byte[] {
-                    (byte)((crcValue & 0xff000000) >> 24),
-                    (byte)((crcValue & 0xff0000) >> 16),
-                    (byte)((crcValue & 0xff00) >> 8),
-                    (byte) (crcValue & 0xff) })), encoding));
+        return transform(target, (value, encoding) -> {
+            final CRC32 crc = new CRC32();
+            for (final ByteBuffer buffer : value.slice.getBuffers()) {
+                crc.update(buffer);
             }
-        };
+            final long crcValue = crc.getValue();
+            return Optional.of(new Value(createFromBytes(encoding.byteOrder.apply(new byte[] {
+                (byte)((crcValue & 0xff000000) >> 24),
+                (byte)((crcValue & 0xff0000) >> 16),
+                (byte)((crcValue & 0xff00) >> 8),
+                (byte) (crcValue & 0xff) })), encoding));
+        });
     }
 
 }
@@ -33,10 +33,6 @@ import static io.parsingdata.metal.Shorthand.sub;
 
 import io.parsingdata.metal.token.Token;
 
-/*
- * Since nearly every byte of the scan data is individually matched, this
- * approach will lead to stack overflow on files of realistic size.
- */
 public final class JPEG {
 
     private JPEG() {}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013-2016 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.format;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.Pruner;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class PruneTest {
+
+    private final List<ParseGraph> pruned = new ArrayList<>();
+
+    private Optional<Environment> parse(final Token format, final String path) throws IOException, URISyntaxException {
+        final Pruner pruner = Pruner.create(format, pruned::add);
+        assertTrue(pruner.enabled);
+        final byte[] data = Files.readAllBytes(Paths.get(PruneTest.class.getResource(path).toURI()));
+        return format.parse(new Environment(new InMemoryByteStream(data), pruner), enc());
+    }
+
+    @Test
+    public void prunePNG() throws IOException, URISyntaxException {
+        assertTrue(parse(PNG.FORMAT, "/test.png").isPresent());
+        assertFalse(pruned.isEmpty());
+    }
+
+    @Test
+    public void pruneZIP() throws IOException, URISyntaxException {
+        assertTrue(parse(ZIP.FORMAT, "/multifile-zip30-ubuntu.zip").isPresent());
+        assertFalse(pruned.isEmpty());
+    }
+
+}